@@ -0,0 +1,139 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Work done on {@link Goal} and {@link User} for every response: Jackson serialization with the
+ * mapper Spring builds for the REST controllers, and the {@code equals}/{@code hashCode} used by
+ * collections and the persistence context.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+  // Size of a typical /api/v1/goals response
+  private static final int GOALS_PER_USER = 50;
+
+  private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+  private Goal goal;
+  private Goal equalGoal;
+  private Goal otherGoal;
+  private List<Goal> goals;
+  private String goalJson;
+  private User user;
+
+  @Setup
+  public void setUp() throws JsonProcessingException {
+    goal = goal(1);
+    equalGoal = goal(1);
+    otherGoal = goal(2);
+    goals = new ArrayList<>(GOALS_PER_USER);
+    for (int i = 0; i < GOALS_PER_USER; i++) {
+      goals.add(goal(i));
+    }
+    goalJson = mapper.writeValueAsString(goal);
+
+    user = new User();
+    user.setUserId(1);
+    user.setUsername("benchmarkUser");
+    user.setEmail("benchmark@habicus.com");
+    user.setGender("female");
+    user.setDob(new Timestamp(0));
+    user.setPassword("$2a$10$3Y/2.kpjOCCGAW6Vkl8Ct./FQKrcJJQG553ZoqnrmS6djSlO4iXMC");
+  }
+
+  @Benchmark
+  public String serializeGoal() throws JsonProcessingException {
+    return mapper.writeValueAsString(goal);
+  }
+
+  @Benchmark
+  public byte[] serializeGoalList() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(goals);
+  }
+
+  @Benchmark
+  public Goal deserializeGoal() throws IOException {
+    return mapper.readValue(goalJson, Goal.class);
+  }
+
+  @Benchmark
+  public String serializeUser() throws JsonProcessingException {
+    return mapper.writeValueAsString(user);
+  }
+
+  @Benchmark
+  public int goalHashCode() {
+    return goal.hashCode();
+  }
+
+  @Benchmark
+  public boolean goalEqualsEqual() {
+    return goal.equals(equalGoal);
+  }
+
+  @Benchmark
+  public boolean goalEqualsDifferent() {
+    return goal.equals(otherGoal);
+  }
+
+  private static Goal goal(int goalId) {
+    Goal goal = new Goal();
+    goal.setGoalId(goalId);
+    goal.setUsersUserId(1);
+    goal.setTitle("Run a marathon " + goalId);
+    goal.setDescription("Train three times a week and track every run");
+    goal.setGoalInterval("weekly");
+    goal.setLabelColor("green");
+    goal.setPledgeAmount(5.0);
+    goal.setTaskUnitCount(3);
+    goal.setTaskUnitsDone(1);
+    goal.setDueDate(1_525_136_658L + goalId * 86_400L);
+    goal.setGoalComplete(Goal.GOAL_INCOMPLETE);
+    return goal;
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.security;
+
+import static com.habicus.core.security.SecurityConstants.SECRET_KEY;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the bearer token on every request: the parse and HS512 check done by {@link
+ * JWTTokenVerifier} for {@link JWTAuthorizationFilter}, with and without its verified token cache,
+ * and building the token {@link JWTTokenIssuer} hands out after a login.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+  private final JwtParser parser = Jwts.parser().setSigningKey(SECRET_KEY);
+
+  private JWTTokenVerifier uncachedVerifier;
+  private JWTTokenVerifier cachedVerifier;
+
+  // Only createAccessToken is measured, it does not touch the refresh token service
+  private JWTTokenIssuer issuer;
+
+  private String token;
+
+  @Setup
+  public void setUp() {
+    uncachedVerifier = new JWTTokenVerifier(0);
+    cachedVerifier = new JWTTokenVerifier(10_000);
+    issuer = new JWTTokenIssuer(null);
+    token = issuer.createAccessToken("benchmarkUser", 42);
+    cachedVerifier.verify(token);
+  }
+
+  @Benchmark
+  public Object parseClaims() {
+    return parser.parseClaimsJws(token).getBody();
+  }
+
+  @Benchmark
+  public AuthenticatedUser verifyUncached() {
+    return uncachedVerifier.verify(token);
+  }
+
+  @Benchmark
+  public AuthenticatedUser verifyCached() {
+    return cachedVerifier.verify(token);
+  }
+
+  @Benchmark
+  public String createAccessToken() {
+    return issuer.createAccessToken("benchmarkUser", 42);
+  }
+}
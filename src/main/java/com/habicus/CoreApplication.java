@@ -24,8 +24,10 @@ package com.habicus;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class CoreApplication {
   public static void main(String[] args) {
     SpringApplication.run(CoreApplication.class, args);
@@ -0,0 +1,88 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.configuration.CacheConfiguration;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.function.ToDoubleFunction;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Publishes Hibernate second-level and query cache statistics so region sizes and TTLs in
+ * ehcache.xml can be tuned against real hit ratios. Requires {@code
+ * hibernate.generate_statistics=true}.
+ */
+@Configuration
+public class CacheConfig {
+
+  @Bean
+  public MeterBinder hibernateCacheMetrics(EntityManagerFactory entityManagerFactory) {
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    return registry -> {
+      for (String region : statistics.getSecondLevelCacheRegionNames()) {
+        regionCounter(
+            registry, statistics, region, "hits", SecondLevelCacheStatistics::getHitCount);
+        regionCounter(
+            registry, statistics, region, "misses", SecondLevelCacheStatistics::getMissCount);
+        regionCounter(
+            registry, statistics, region, "puts", SecondLevelCacheStatistics::getPutCount);
+        Gauge.builder(
+                "habicus.hibernate.cache.region.size",
+                statistics,
+                s -> s.getSecondLevelCacheStatistics(region).getElementCountInMemory())
+            .tags(Tags.of("region", region))
+            .register(registry);
+      }
+      FunctionCounter.builder(
+              "habicus.hibernate.cache.query.hits", statistics, Statistics::getQueryCacheHitCount)
+          .register(registry);
+      FunctionCounter.builder(
+              "habicus.hibernate.cache.query.misses",
+              statistics,
+              Statistics::getQueryCacheMissCount)
+          .register(registry);
+    };
+  }
+
+  private static void regionCounter(
+      MeterRegistry registry,
+      Statistics statistics,
+      String region,
+      String name,
+      ToDoubleFunction<SecondLevelCacheStatistics> count) {
+    FunctionCounter.builder(
+            "habicus.hibernate.cache.region." + name,
+            statistics,
+            s -> count.applyAsDouble(s.getSecondLevelCacheStatistics(region)))
+        .tags(Tags.of("region", region))
+        .register(registry);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.configuration.LoggingConfiguration;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.LayoutBase;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Writes each record as one JSON object per line: {@code ts}, {@code level}, {@code thread},
+ * {@code logger}, {@code msg}, every MDC entry (such as {@code requestId}) and {@code error} with
+ * the stack trace. Used behind the async appender in logback-spring.xml, so formatting runs on the
+ * appender's worker thread rather than the request thread.
+ */
+public class JsonLineLayout extends LayoutBase<ILoggingEvent> {
+
+  @Override
+  public String doLayout(ILoggingEvent event) {
+    StringBuilder line = new StringBuilder(256);
+    line.append('{');
+    field(line, "ts", Instant.ofEpochMilli(event.getTimeStamp()).toString());
+    line.append(',');
+    field(line, "level", event.getLevel().toString());
+    line.append(',');
+    field(line, "thread", event.getThreadName());
+    line.append(',');
+    field(line, "logger", event.getLoggerName());
+    line.append(',');
+    field(line, "msg", event.getFormattedMessage());
+    Map<String, String> mdc = event.getMDCPropertyMap();
+    if (mdc != null) {
+      for (Map.Entry<String, String> entry : mdc.entrySet()) {
+        line.append(',');
+        field(line, entry.getKey(), entry.getValue());
+      }
+    }
+    IThrowableProxy error = event.getThrowableProxy();
+    if (error != null) {
+      line.append(',');
+      field(line, "error", ThrowableProxyUtil.asString(error));
+    }
+    return line.append('}').append(CoreConstants.LINE_SEPARATOR).toString();
+  }
+
+  private static void field(StringBuilder line, String name, String value) {
+    quote(line, name);
+    line.append(':');
+    if (value == null) {
+      line.append("null");
+    } else {
+      quote(line, value);
+    }
+  }
+
+  static void quote(StringBuilder line, String value) {
+    line.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          line.append("\\\"");
+          break;
+        case '\\':
+          line.append("\\\\");
+          break;
+        case '\n':
+          line.append("\\n");
+          break;
+        case '\r':
+          line.append("\\r");
+          break;
+        case '\t':
+          line.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            line.append(String.format("\\u%04x", (int) c));
+          } else {
+            line.append(c);
+          }
+      }
+    }
+    line.append('"');
+  }
+}
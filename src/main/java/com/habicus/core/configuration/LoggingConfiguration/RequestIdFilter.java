@@ -0,0 +1,92 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.configuration.LoggingConfiguration;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Tags every log record of a request with a request id through the MDC and returns the id in the
+ * {@code X-Request-Id} response header. A well formed id sent by the client or a proxy is kept so
+ * records can be followed across services, anything else is replaced.
+ */
+public class RequestIdFilter extends OncePerRequestFilter {
+
+  public static final String HEADER = "X-Request-Id";
+
+  public static final String MDC_REQUEST_ID = "requestId";
+
+  public static final String MDC_USER_ID = "userId";
+
+  private static final int MAX_LENGTH = 64;
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+      throws IOException, ServletException {
+    String requestId = req.getHeader(HEADER);
+    if (!isWellFormed(requestId)) {
+      requestId = newRequestId();
+    }
+    MDC.put(MDC_REQUEST_ID, requestId);
+    res.setHeader(HEADER, requestId);
+    try {
+      chain.doFilter(req, res);
+    } finally {
+      MDC.clear();
+    }
+  }
+
+  // Random rather than UUID.randomUUID(), which contends on a shared SecureRandom
+  private static String newRequestId() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    return Long.toHexString(random.nextLong() | Long.MIN_VALUE)
+        + Long.toHexString(random.nextLong() | Long.MIN_VALUE);
+  }
+
+  static boolean isWellFormed(String requestId) {
+    if (requestId == null || requestId.isEmpty() || requestId.length() > MAX_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < requestId.length(); i++) {
+      char c = requestId.charAt(i);
+      boolean allowed =
+          (c >= 'a' && c <= 'z')
+              || (c >= 'A' && c <= 'Z')
+              || (c >= '0' && c <= '9')
+              || c == '-'
+              || c == '_'
+              || c == '.';
+      if (!allowed) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
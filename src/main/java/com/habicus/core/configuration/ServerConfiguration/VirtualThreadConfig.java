@@ -0,0 +1,77 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.configuration.ServerConfiguration;
+
+import java.util.concurrent.ExecutorService;
+import javax.annotation.PreDestroy;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * With {@code habicus.server.virtual-threads=true} Tomcat runs every request on its own virtual
+ * thread instead of its fixed worker pool, so requests blocked on JDBC, including the JPA calls of
+ * the goal and user services, no longer hold a scarce platform thread. Concurrency is then bounded
+ * by the connection pool and {@code server.tomcat.max-connections} rather than {@code
+ * server.tomcat.max-threads}. Password checks stay on the platform threads of {@link
+ * com.habicus.core.security.LoginExecutor}, BCrypt is CPU bound.
+ *
+ * <p>Needs a Java 21 runtime, startup fails on older ones rather than quietly keeping the worker
+ * pool. Experimental: Spring Boot 2.0 on Java 21 and the throughput against the worker pool are
+ * not verified yet, see the README.
+ */
+@Configuration
+@ConditionalOnProperty(name = "habicus.server.virtual-threads", havingValue = "true")
+public class VirtualThreadConfig {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+  private final ExecutorService requestExecutor = VirtualThreads.newExecutor("http-vt-");
+
+  @Bean
+  public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadRequests() {
+    return factory ->
+        factory.addConnectorCustomizers(
+            connector -> {
+              ProtocolHandler handler = connector.getProtocolHandler();
+              if (!(handler instanceof AbstractProtocol)) {
+                throw new IllegalStateException(
+                    "Cannot run " + handler.getClass().getName() + " on virtual threads");
+              }
+              ((AbstractProtocol<?>) handler).setExecutor(requestExecutor);
+              LOGGER.warn("Serving requests on virtual threads, an unverified experimental mode");
+            });
+  }
+
+  // Tomcat leaves executors it did not create running
+  @PreDestroy
+  public void shutdown() {
+    requestExecutor.shutdown();
+  }
+}
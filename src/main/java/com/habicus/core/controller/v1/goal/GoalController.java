@@ -25,30 +25,60 @@ package com.habicus.core.controller.v1.goal;
 import com.habicus.core.exception.API.InvalidRequestException;
 import com.habicus.core.exception.NoGoalsFoundException;
 import com.habicus.core.model.Goal;
+import com.habicus.core.service.Goal.GoalBulkResult;
+import com.habicus.core.service.Goal.GoalBulkService;
+import com.habicus.core.service.Goal.GoalExportService;
+import com.habicus.core.service.Goal.GoalFilter;
+import com.habicus.core.service.Goal.GoalOccurrence;
+import com.habicus.core.service.Goal.GoalPage;
 import com.habicus.core.service.Goal.GoalService;
+import com.habicus.core.service.Goal.GoalVersionTracker;
+import com.habicus.core.service.Goal.RecurrenceService;
 import com.habicus.core.service.User.UserService;
+import com.habicus.core.service.checkin.CheckInService;
+import com.habicus.core.service.progress.ProgressService;
+import com.habicus.core.service.progress.UserProgress;
+import com.habicus.core.service.search.GoalSearchService;
+import java.io.IOException;
 import java.security.Principal;
 import java.util.List;
 import java.util.Optional;
-import java.util.logging.Logger;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @ControllerAdvice
 @RequestMapping("/api/v1")
 public class GoalController {
 
-  private static final Logger LOGGER = Logger.getLogger(GoalController.class.getName());
+  private static final Logger LOGGER = LoggerFactory.getLogger(GoalController.class);
+
+  private static final int MAX_PAGE_SIZE = 200;
 
   private GoalService goalService;
   private UserService userService;
+  private GoalExportService goalExportService;
+  private GoalVersionTracker goalVersionTracker;
+  private RecurrenceService recurrenceService;
+  private CheckInService checkInService;
+  private ProgressService progressService;
+  private GoalSearchService goalSearchService;
+  private GoalBulkService goalBulkService;
 
   @Autowired
   public void setGoalService(GoalService goalService) {
@@ -60,19 +90,61 @@ public class GoalController {
     this.userService = userService;
   }
 
+  @Autowired
+  public void setGoalExportService(GoalExportService goalExportService) {
+    this.goalExportService = goalExportService;
+  }
+
+  @Autowired
+  public void setGoalVersionTracker(GoalVersionTracker goalVersionTracker) {
+    this.goalVersionTracker = goalVersionTracker;
+  }
+
+  @Autowired
+  public void setRecurrenceService(RecurrenceService recurrenceService) {
+    this.recurrenceService = recurrenceService;
+  }
+
+  @Autowired
+  public void setCheckInService(CheckInService checkInService) {
+    this.checkInService = checkInService;
+  }
+
+  @Autowired
+  public void setProgressService(ProgressService progressService) {
+    this.progressService = progressService;
+  }
+
+  @Autowired
+  public void setGoalSearchService(GoalSearchService goalSearchService) {
+    this.goalSearchService = goalSearchService;
+  }
+
+  @Autowired
+  public void setGoalBulkService(GoalBulkService goalBulkService) {
+    this.goalBulkService = goalBulkService;
+  }
+
   /**
-   * Allows retrieval of user goals based on sec. token
+   * Allows retrieval of user goals based on sec. token. Responses carry an ETag, a request whose
+   * If-None-Match still matches gets a 304 without the goals being loaded.
    *
    * @return
    * @throws NoGoalsFoundException
    */
   @ExceptionHandler(NoGoalsFoundException.class)
   @GetMapping("/goals")
-  public ResponseEntity<List<Goal>> retrieveUserGoals(Principal principal)
+  public ResponseEntity<List<Goal>> retrieveUserGoals(Principal principal, WebRequest request)
       throws NoGoalsFoundException {
-    LOGGER.info("Current querying for all goals on user: " + principal.getName());
+    LOGGER.debug("Querying for all goals of user {}", principal.getName());
 
     int userId = userService.verifyAndRetrieveUser(principal);
+
+    // Sets the ETag header, and the 304 status when the client copy is current
+    if (request.checkNotModified(goalVersionTracker.etagFor(userId))) {
+      return null;
+    }
+
     Optional<List<Goal>> goalList = goalService.retrieveGoalsByUserId(userId);
     if (!goalList.isPresent()) {
       throw new InvalidRequestException(
@@ -82,4 +154,180 @@ public class GoalController {
     }
     return new ResponseEntity<>(goalList.get(), HttpStatus.OK);
   }
+
+  /**
+   * Allows paging through user goals based on sec. token, ordered by due date. Pass the returned
+   * {@link GoalPage#getNextCursor()} back as {@code cursor} to get the following page.
+   *
+   * @return
+   */
+  @GetMapping("/goals/page")
+  public ResponseEntity<GoalPage> retrieveUserGoalPage(
+      Principal principal,
+      @RequestParam(value = "cursor", required = false) String cursor,
+      @RequestParam(value = "limit", defaultValue = "50") int limit,
+      @RequestParam(value = "goalComplete", required = false) String goalComplete,
+      @RequestParam(value = "goalInterval", required = false) String goalInterval,
+      @RequestParam(value = "dueAfter", required = false) Long dueAfter,
+      @RequestParam(value = "dueBefore", required = false) Long dueBefore) {
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new InvalidRequestException(
+          "Page limit must be between 1 and " + MAX_PAGE_SIZE, HttpStatus.BAD_REQUEST);
+    }
+
+    GoalFilter filter = new GoalFilter();
+    filter.setGoalComplete(goalComplete);
+    filter.setGoalInterval(goalInterval);
+    filter.setDueAfter(dueAfter);
+    filter.setDueBefore(dueBefore);
+
+    int userId = userService.verifyAndRetrieveUser(principal);
+    return new ResponseEntity<>(
+        goalService.retrieveGoalPageByUserId(userId, filter, cursor, limit), HttpStatus.OK);
+  }
+
+  /**
+   * Calendar of the user behind the sec. token: every occurrence due within {@code [from, to)},
+   * with recurring goals expanded per interval
+   *
+   * @param principal
+   * @param from UTC Time
+   * @param to UTC Time
+   * @return
+   */
+  @GetMapping("/goals/calendar")
+  public ResponseEntity<List<GoalOccurrence>> retrieveUserCalendar(
+      Principal principal, @RequestParam("from") long from, @RequestParam("to") long to) {
+    int userId = userService.verifyAndRetrieveUser(principal);
+    return new ResponseEntity<>(
+        recurrenceService.retrieveCalendar(userId, from, to), HttpStatus.OK);
+  }
+
+  /**
+   * Stores the occurrence of a recurring goal due at {@code dueDate} so progress can be recorded
+   * against it. Returns the existing goal when it is already stored.
+   *
+   * @param principal
+   * @param goalId goal id of the series template
+   * @param dueDate UTC Time
+   * @return
+   */
+  @PostMapping("/goals/{goalId}/occurrences")
+  public ResponseEntity<Goal> materializeOccurrence(
+      Principal principal,
+      @PathVariable("goalId") int goalId,
+      @RequestParam("dueDate") long dueDate) {
+    int userId = userService.verifyAndRetrieveUser(principal);
+    return new ResponseEntity<>(
+        recurrenceService.materialize(userId, goalId, dueDate), HttpStatus.OK);
+  }
+
+  /**
+   * Creates and updates goals of the user behind the sec. token in one transaction. Goals without
+   * a goal id are created, the others update the goal of that id. Each goal gets its own result,
+   * a rejected goal does not stop the rest from being written.
+   *
+   * @param principal
+   * @param goals
+   * @return
+   */
+  @PostMapping("/goals/bulk")
+  public ResponseEntity<GoalBulkResult> saveGoals(
+      Principal principal, @RequestBody List<Goal> goals) {
+    int userId = userService.verifyAndRetrieveUser(principal);
+    return new ResponseEntity<>(goalBulkService.save(userId, goals), HttpStatus.OK);
+  }
+
+  /**
+   * Records units done on a goal of the user behind the sec. token. The check-in is durable once
+   * accepted and written to the goal shortly after, the returned goal already includes it.
+   *
+   * @param principal
+   * @param goalId
+   * @param units
+   * @param dueDate UTC Time, selects the occurrence of a recurring goal
+   * @return
+   */
+  @PostMapping("/goals/{goalId}/check-ins")
+  public ResponseEntity<Goal> checkIn(
+      Principal principal,
+      @PathVariable("goalId") int goalId,
+      @RequestParam(value = "units", defaultValue = "1") int units,
+      @RequestParam(value = "dueDate", required = false) Long dueDate) {
+    int userId = userService.verifyAndRetrieveUser(principal);
+    return new ResponseEntity<>(
+        checkInService.checkIn(userId, goalId, dueDate, units), HttpStatus.ACCEPTED);
+  }
+
+  /**
+   * Progress of every goal of the user behind the sec. token, folded from the goal event log.
+   * Check-ins still waiting for their flush are not included.
+   *
+   * @param principal
+   * @return
+   */
+  @GetMapping("/goals/progress")
+  public ResponseEntity<UserProgress> retrieveUserProgress(Principal principal) {
+    int userId = userService.verifyAndRetrieveUser(principal);
+    return new ResponseEntity<>(progressService.retrieveProgress(userId), HttpStatus.OK);
+  }
+
+  /**
+   * Searches the titles and descriptions of the goals of the user behind the sec. token, best
+   * match first. With {@code all} set, admin users search every goal in the system.
+   *
+   * @param principal
+   * @param query
+   * @param limit
+   * @param all
+   * @return
+   */
+  @GetMapping("/goals/search")
+  public ResponseEntity<List<Goal>> searchGoals(
+      Principal principal,
+      @RequestParam("q") String query,
+      @RequestParam(value = "limit", defaultValue = "20") int limit,
+      @RequestParam(value = "all", defaultValue = "false") boolean all) {
+    Integer userId = null;
+    if (!all) {
+      userId = userService.verifyAndRetrieveUser(principal);
+    } else if (!userService.isAdmin(principal)) {
+      throw new InvalidRequestException(
+          "Searching all goals requires an admin user", HttpStatus.FORBIDDEN);
+    }
+    return new ResponseEntity<>(goalSearchService.search(query, userId, limit), HttpStatus.OK);
+  }
+
+  /**
+   * Streams every goal of the user behind the sec. token as a JSON array
+   *
+   * @param principal
+   * @param response
+   * @throws IOException
+   */
+  @GetMapping("/goals/export")
+  public void exportUserGoals(Principal principal, HttpServletResponse response)
+      throws IOException {
+    int userId = userService.verifyAndRetrieveUser(principal);
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    goalExportService.exportGoalsByUserId(userId, response.getOutputStream());
+  }
+
+  /**
+   * Streams every goal in the system as a JSON array, restricted to admin users
+   *
+   * @param principal
+   * @param response
+   * @throws IOException
+   */
+  @GetMapping("/goals/export/all")
+  public void exportAllGoals(Principal principal, HttpServletResponse response)
+      throws IOException {
+    if (!userService.isAdmin(principal)) {
+      throw new InvalidRequestException(
+          "Exporting all goals requires an admin user", HttpStatus.FORBIDDEN);
+    }
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    goalExportService.exportAllGoals(response.getOutputStream());
+  }
 }
@@ -0,0 +1,100 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.controller.v1.goal;
+
+import com.habicus.core.exception.API.InvalidRequestException;
+import com.habicus.core.service.User.UserService;
+import com.habicus.core.service.leaderboard.LeaderboardEntry;
+import com.habicus.core.service.leaderboard.LeaderboardService;
+import com.habicus.core.service.leaderboard.LeaderboardType;
+import java.security.Principal;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/leaderboards")
+public class LeaderboardController {
+
+  private LeaderboardService leaderboardService;
+  private UserService userService;
+
+  @Autowired
+  public void setLeaderboardService(LeaderboardService leaderboardService) {
+    this.leaderboardService = leaderboardService;
+  }
+
+  @Autowired
+  public void setUserService(UserService userService) {
+    this.userService = userService;
+  }
+
+  /**
+   * Highest ranked users of a week
+   *
+   * @param type {@code completed} or {@code money-kept}
+   * @param weeksAgo 0 for the current week
+   * @param limit
+   * @return
+   */
+  @GetMapping("/{type}")
+  public ResponseEntity<List<LeaderboardEntry>> retrieveTop(
+      @PathVariable("type") String type,
+      @RequestParam(value = "weeksAgo", defaultValue = "0") int weeksAgo,
+      @RequestParam(value = "limit", defaultValue = "10") int limit) {
+    return new ResponseEntity<>(
+        leaderboardService.retrieveTop(parse(type), weeksAgo, limit), HttpStatus.OK);
+  }
+
+  /**
+   * Rank and score of the user behind the sec. token, rank 0 when they have no score that week
+   *
+   * @param principal
+   * @param type {@code completed} or {@code money-kept}
+   * @param weeksAgo 0 for the current week
+   * @return
+   */
+  @GetMapping("/{type}/me")
+  public ResponseEntity<LeaderboardEntry> retrieveUserEntry(
+      Principal principal,
+      @PathVariable("type") String type,
+      @RequestParam(value = "weeksAgo", defaultValue = "0") int weeksAgo) {
+    int userId = userService.verifyAndRetrieveUser(principal);
+    return new ResponseEntity<>(
+        leaderboardService.retrieveEntry(parse(type), weeksAgo, userId), HttpStatus.OK);
+  }
+
+  private static LeaderboardType parse(String type) {
+    return LeaderboardType.parse(type)
+        .orElseThrow(
+            () ->
+                new InvalidRequestException(
+                    "No leaderboard found for: " + type, HttpStatus.NOT_FOUND));
+  }
+}
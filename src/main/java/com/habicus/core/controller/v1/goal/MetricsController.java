@@ -0,0 +1,142 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.controller.v1.goal;
+
+import com.habicus.core.exception.API.InvalidRequestException;
+import com.habicus.core.model.GoalMetrics;
+import com.habicus.core.service.User.UserService;
+import com.habicus.core.service.metrics.MetricsRebuildReport;
+import com.habicus.core.service.metrics.MetricsService;
+import com.habicus.core.service.metrics.UserMetrics;
+import com.habicus.core.service.streak.SeriesStreak;
+import com.habicus.core.service.streak.StreakBackfillReport;
+import com.habicus.core.service.streak.StreakService;
+import java.security.Principal;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/metrics")
+public class MetricsController {
+
+  private MetricsService metricsService;
+  private UserService userService;
+  private StreakService streakService;
+
+  @Autowired
+  public void setMetricsService(MetricsService metricsService) {
+    this.metricsService = metricsService;
+  }
+
+  @Autowired
+  public void setUserService(UserService userService) {
+    this.userService = userService;
+  }
+
+  @Autowired
+  public void setStreakService(StreakService streakService) {
+    this.streakService = streakService;
+  }
+
+  /**
+   * Aggregated goal metrics for the user behind the sec. token
+   *
+   * @param principal
+   * @return
+   */
+  @GetMapping
+  public ResponseEntity<UserMetrics> retrieveUserMetrics(Principal principal) {
+    int userId = userService.verifyAndRetrieveUser(principal);
+    return new ResponseEntity<>(metricsService.retrieveUserMetrics(userId), HttpStatus.OK);
+  }
+
+  /**
+   * Metrics of a single goal owned by the user behind the sec. token
+   *
+   * @param principal
+   * @param goalId
+   * @return
+   */
+  @GetMapping("/goals/{goalId}")
+  public ResponseEntity<GoalMetrics> retrieveGoalMetrics(
+      Principal principal, @PathVariable("goalId") int goalId) {
+    int userId = userService.verifyAndRetrieveUser(principal);
+    GoalMetrics metrics =
+        metricsService
+            .retrieveGoalMetrics(userId, goalId)
+            .orElseThrow(
+                () ->
+                    new InvalidRequestException(
+                        "No metrics found for goal: " + goalId, HttpStatus.NOT_FOUND));
+    return new ResponseEntity<>(metrics, HttpStatus.OK);
+  }
+
+  /**
+   * Recomputes metrics for every user from the goal table, restricted to admin users
+   *
+   * @param principal
+   * @return
+   */
+  @PostMapping("/rebuild")
+  public ResponseEntity<MetricsRebuildReport> rebuildMetrics(Principal principal) {
+    if (!userService.isAdmin(principal)) {
+      throw new InvalidRequestException(
+          "Rebuilding metrics requires an admin user", HttpStatus.FORBIDDEN);
+    }
+    return new ResponseEntity<>(metricsService.rebuildAll(), HttpStatus.OK);
+  }
+
+  /**
+   * Current and longest streak of every recurring goal of the user behind the sec. token
+   *
+   * @param principal
+   * @return
+   */
+  @GetMapping("/streaks")
+  public ResponseEntity<List<SeriesStreak>> retrieveStreaks(Principal principal) {
+    int userId = userService.verifyAndRetrieveUser(principal);
+    return new ResponseEntity<>(streakService.retrieveStreaks(userId), HttpStatus.OK);
+  }
+
+  /**
+   * Recomputes the streaks of every recurring goal from the goal table, restricted to admin users
+   *
+   * @param principal
+   * @return
+   */
+  @PostMapping("/streaks/backfill")
+  public ResponseEntity<StreakBackfillReport> backfillStreaks(Principal principal) {
+    if (!userService.isAdmin(principal)) {
+      throw new InvalidRequestException(
+          "Backfilling streaks requires an admin user", HttpStatus.FORBIDDEN);
+    }
+    return new ResponseEntity<>(streakService.backfill(), HttpStatus.OK);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.controller.v1.goal;
+
+import com.habicus.core.dao.repository.PledgeLedgerRepository;
+import com.habicus.core.exception.API.InvalidRequestException;
+import com.habicus.core.model.PledgeLedgerEntry;
+import com.habicus.core.service.User.UserService;
+import com.habicus.core.service.settlement.PledgeSettlementReport;
+import com.habicus.core.service.settlement.PledgeSettlementService;
+import java.security.Principal;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/pledges")
+public class PledgeController {
+
+  private PledgeSettlementService pledgeSettlementService;
+  private PledgeLedgerRepository pledgeLedgerRepository;
+  private UserService userService;
+
+  @Autowired
+  public void setPledgeSettlementService(PledgeSettlementService pledgeSettlementService) {
+    this.pledgeSettlementService = pledgeSettlementService;
+  }
+
+  @Autowired
+  public void setPledgeLedgerRepository(PledgeLedgerRepository pledgeLedgerRepository) {
+    this.pledgeLedgerRepository = pledgeLedgerRepository;
+  }
+
+  @Autowired
+  public void setUserService(UserService userService) {
+    this.userService = userService;
+  }
+
+  /**
+   * Settled pledges of the user behind the sec. token, newest cycle first
+   *
+   * @param principal
+   * @return
+   */
+  @GetMapping("/ledger")
+  public ResponseEntity<List<PledgeLedgerEntry>> retrieveLedger(Principal principal) {
+    int userId = userService.verifyAndRetrieveUser(principal);
+    return new ResponseEntity<>(
+        pledgeLedgerRepository.findByUsersUserIdOrderByCycleDueDateDesc(userId), HttpStatus.OK);
+  }
+
+  /**
+   * Settles every missed goal in the lookback window right away, restricted to admin users
+   *
+   * @param principal
+   * @return
+   */
+  @PostMapping("/settle")
+  public ResponseEntity<PledgeSettlementReport> settleMissedGoals(Principal principal) {
+    if (!userService.isAdmin(principal)) {
+      throw new InvalidRequestException(
+          "Settling pledges requires an admin user", HttpStatus.FORBIDDEN);
+    }
+    return new ResponseEntity<>(pledgeSettlementService.settleMissed(), HttpStatus.OK);
+  }
+}
@@ -23,10 +23,16 @@
 package com.habicus.core.controller.v1.goal;
 
 import com.habicus.core.dao.repository.UserRepository;
+import com.habicus.core.exception.API.InvalidRequestException;
 import com.habicus.core.model.User;
+import com.habicus.core.security.JWTTokenIssuer;
 import com.habicus.core.service.User.UserService;
-import java.util.logging.Logger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -36,7 +42,7 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @RequestMapping("/api/v1/user")
 public class UserController {
-  private static final Logger LOGGER = Logger.getLogger(UserController.class.getName());
+  private static final Logger LOGGER = LoggerFactory.getLogger(UserController.class);
 
   private BCryptPasswordEncoder bCryptPasswordEncoder;
 
@@ -44,6 +50,8 @@ public class UserController {
 
   private UserRepository userRepository;
 
+  private JWTTokenIssuer tokenIssuer;
+
   @Autowired
   public UserController(UserService userService, BCryptPasswordEncoder bCryptPasswordEncoder) {
     this.userService = userService;
@@ -61,8 +69,28 @@ public class UserController {
     userRepository.save(user);
   }
 
+  /**
+   * Trades the refresh token sent in the Refresh-Token header for a new access and refresh token
+   * pair, avoiding another password check
+   *
+   * @param req
+   * @param res
+   */
+  @PostMapping("/token/refresh")
+  public void refreshToken(HttpServletRequest req, HttpServletResponse res) {
+    if (!tokenIssuer.refreshTokens(req, res)) {
+      throw new InvalidRequestException(
+          "Refresh token is invalid or expired", HttpStatus.UNAUTHORIZED);
+    }
+  }
+
   @Autowired
   public void setUserService(UserService userService) {
     this.userService = userService;
   }
+
+  @Autowired
+  public void setTokenIssuer(JWTTokenIssuer tokenIssuer) {
+    this.tokenIssuer = tokenIssuer;
+  }
 }
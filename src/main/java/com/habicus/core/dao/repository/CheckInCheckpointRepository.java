@@ -0,0 +1,49 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.dao.repository;
+
+import com.habicus.core.model.CheckInCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CheckInCheckpointRepository extends JpaRepository<CheckInCheckpoint, String> {
+
+  /**
+   * Records that every journal segment up to {@code segment} of a node has been applied
+   *
+   * @param nodeId
+   * @param segment
+   * @return
+   */
+  @Modifying
+  @Query(
+      value =
+          "INSERT INTO check_in_checkpoint (node_id, applied_segment) VALUES (:nodeId, :segment)"
+              + " ON DUPLICATE KEY UPDATE applied_segment = VALUES(applied_segment)",
+      nativeQuery = true)
+  int markApplied(@Param("nodeId") String nodeId, @Param("segment") long segment);
+}
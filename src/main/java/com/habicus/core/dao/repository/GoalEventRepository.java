@@ -0,0 +1,60 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.dao.repository;
+
+import com.habicus.core.model.GoalEvent;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface GoalEventRepository
+    extends JpaRepository<GoalEvent, Long>, GoalEventRepositoryCustom {
+
+  /**
+   * A user's events after {@code afterEventId} in append order
+   *
+   * @param userId
+   * @param afterEventId
+   * @param page
+   * @return
+   */
+  @Query(
+      "select e from GoalEvent e where e.usersUserId = :userId and e.eventId > :afterEventId"
+          + " order by e.eventId")
+  List<GoalEvent> findUserEventsAfter(
+      @Param("userId") int userId, @Param("afterEventId") long afterEventId, Pageable page);
+
+  /**
+   * Every event after {@code afterEventId} in append order, for rebuilding projections
+   *
+   * @param afterEventId
+   * @param page
+   * @return
+   */
+  @Query("select e from GoalEvent e where e.eventId > :afterEventId order by e.eventId")
+  List<GoalEvent> findEventsAfter(@Param("afterEventId") long afterEventId, Pageable page);
+}
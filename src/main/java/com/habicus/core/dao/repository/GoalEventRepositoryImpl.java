@@ -0,0 +1,72 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.dao.repository;
+
+import com.habicus.core.model.GoalEvent;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/** Picked up by Spring Data as the implementation of {@link GoalEventRepositoryCustom} */
+public class GoalEventRepositoryImpl implements GoalEventRepositoryCustom {
+
+  private static final String APPEND_SQL =
+      "INSERT INTO goal_event (users_user_id, goals_goal_id, event_type, due_date, units, amount,"
+          + " occurred_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+  private static final int[] APPEND_TYPES = {
+    Types.INTEGER,
+    Types.INTEGER,
+    Types.VARCHAR,
+    Types.BIGINT,
+    Types.INTEGER,
+    Types.DECIMAL,
+    Types.BIGINT
+  };
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Override
+  public int appendAll(List<GoalEvent> events) {
+    if (events.isEmpty()) {
+      return 0;
+    }
+    List<Object[]> rows = new ArrayList<>(events.size());
+    for (GoalEvent e : events) {
+      rows.add(
+          new Object[] {
+            e.getUsersUserId(),
+            e.getGoalGoalId(),
+            e.getEventType(),
+            e.getDueDate(),
+            e.getUnits(),
+            e.getAmount(),
+            e.getOccurredAt()
+          });
+    }
+    jdbcTemplate.batchUpdate(APPEND_SQL, rows, APPEND_TYPES);
+    return rows.size();
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.dao.repository;
+
+import com.habicus.core.model.GoalEventSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface GoalEventSnapshotRepository extends JpaRepository<GoalEventSnapshot, Integer> {
+
+  /**
+   * Stores a snapshot unless the stored one is already as recent, so concurrent writers can never
+   * move a user's snapshot backwards
+   *
+   * @param userId
+   * @param lastEventId
+   * @param state
+   * @param createdAt UTC Time
+   * @return
+   */
+  @Modifying
+  @Query(
+      value =
+          "INSERT INTO goal_event_snapshot (users_user_id, last_event_id, state, created_at)"
+              + " VALUES (:userId, :lastEventId, :state, :createdAt)"
+              + " ON DUPLICATE KEY UPDATE"
+              + " state = CASE WHEN VALUES(last_event_id) > last_event_id"
+              + " THEN VALUES(state) ELSE state END,"
+              + " created_at = CASE WHEN VALUES(last_event_id) > last_event_id"
+              + " THEN VALUES(created_at) ELSE created_at END,"
+              + " last_event_id = GREATEST(last_event_id, VALUES(last_event_id))",
+      nativeQuery = true)
+  int saveIfNewer(
+      @Param("userId") int userId,
+      @Param("lastEventId") long lastEventId,
+      @Param("state") String state,
+      @Param("createdAt") long createdAt);
+}
@@ -0,0 +1,86 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.dao.repository;
+
+import com.habicus.core.model.GoalMetrics;
+import com.habicus.core.service.streak.SeriesStreak;
+import com.habicus.core.service.streak.StreakOutcome;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/** Bulk writes on {@link GoalMetrics} that bypass the persistence context */
+public interface GoalMetricsRepositoryCustom {
+
+  /**
+   * Inserts or replaces every given {@link GoalMetrics} row using JDBC batches
+   *
+   * @param metrics
+   * @return number of rows sent
+   */
+  int upsertAll(Collection<GoalMetrics> metrics);
+
+  /**
+   * Overwrites {@code money_made_on_goal} of existing rows using JDBC batches. Goals without a
+   * metrics row are skipped, their row is written in full by the metrics service.
+   *
+   * @param moneyMadeByGoalId
+   * @return number of rows sent
+   */
+  int updateMoneyMade(Map<Integer, String> moneyMadeByGoalId);
+
+  /**
+   * Folds completed and missed cycles into the streak columns of each series' metrics row, in list
+   * order, creating the row when missing. Cycles due at or before the last one folded into a row
+   * are ignored, so replaying an outcome is harmless.
+   *
+   * @param outcomes ordered by due date within each series
+   * @return number of rows sent
+   */
+  int applyStreakOutcomes(List<StreakOutcome> outcomes);
+
+  /**
+   * Overwrites the streak columns of each series' metrics row, creating the row when missing
+   *
+   * @param streaks
+   * @return number of rows sent
+   */
+  int replaceStreaks(Collection<SeriesStreak> streaks);
+
+  /**
+   * Stored streaks of every recurring series of a user, series without any counted cycle included
+   *
+   * @param userId
+   * @param intervals recurring {@code goal_interval} values
+   * @return ordered by series goal id
+   */
+  List<SeriesStreak> findSeriesStreaks(int userId, Collection<String> intervals);
+
+  /**
+   * Stored streaks of the given series, series without any counted cycle included
+   *
+   * @param seriesGoalIds goal ids of the series templates
+   * @return by series goal id
+   */
+  Map<Integer, SeriesStreak> findStreaksBySeries(Collection<Integer> seriesGoalIds);
+}
@@ -0,0 +1,227 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.dao.repository;
+
+import com.habicus.core.model.GoalMetrics;
+import com.habicus.core.service.streak.SeriesStreak;
+import com.habicus.core.service.streak.StreakOutcome;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/** Picked up by Spring Data as the implementation of {@link GoalMetricsRepositoryCustom} */
+public class GoalMetricsRepositoryImpl implements GoalMetricsRepositoryCustom {
+
+  private static final String UPSERT_SQL =
+      "INSERT INTO goal_metrics (goal_metrics_id, goals_goal_id, goal_complete, goal_in_progress,"
+          + " money_made_on_goal, time_until_due_date) VALUES (?, ?, ?, ?, ?, ?)"
+          + " ON DUPLICATE KEY UPDATE goal_complete = VALUES(goal_complete),"
+          + " goal_in_progress = VALUES(goal_in_progress),"
+          + " money_made_on_goal = VALUES(money_made_on_goal),"
+          + " time_until_due_date = VALUES(time_until_due_date)";
+
+  private static final int[] UPSERT_TYPES = {
+    Types.INTEGER, Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.INTEGER
+  };
+
+  private static final String UPDATE_MONEY_SQL =
+      "UPDATE goal_metrics SET money_made_on_goal = ? WHERE goals_goal_id = ?";
+
+  private static final int[] UPDATE_MONEY_TYPES = {Types.VARCHAR, Types.INTEGER};
+
+  // Streak after folding a cycle into the stored row, CASE rather than IF so H2 runs it too
+  private static final String NEXT_STREAK =
+      "CASE WHEN streak_cycle_due >= VALUES(streak_cycle_due) THEN current_streak"
+          + " WHEN ? = 1 THEN CASE WHEN streak_cycle_due = ? THEN current_streak + 1 ELSE 1 END"
+          + " ELSE 0 END";
+
+  // MySQL lets an assignment see columns assigned before it and H2 does not, so every
+  // assignment only reads columns assigned after it
+  private static final String APPLY_STREAK_SQL =
+      "INSERT INTO goal_metrics (goal_metrics_id, goals_goal_id, current_streak, longest_streak,"
+          + " streak_cycle_due) VALUES (?, ?, ?, ?, ?)"
+          + " ON DUPLICATE KEY UPDATE longest_streak = GREATEST(longest_streak, "
+          + NEXT_STREAK
+          + "), current_streak = "
+          + NEXT_STREAK
+          + ", streak_cycle_due = GREATEST(streak_cycle_due, VALUES(streak_cycle_due))";
+
+  private static final int[] APPLY_STREAK_TYPES = {
+    Types.INTEGER,
+    Types.INTEGER,
+    Types.INTEGER,
+    Types.INTEGER,
+    Types.BIGINT,
+    Types.INTEGER,
+    Types.BIGINT,
+    Types.INTEGER,
+    Types.BIGINT
+  };
+
+  private static final String REPLACE_STREAK_SQL =
+      "INSERT INTO goal_metrics (goal_metrics_id, goals_goal_id, current_streak, longest_streak,"
+          + " streak_cycle_due) VALUES (?, ?, ?, ?, ?)"
+          + " ON DUPLICATE KEY UPDATE current_streak = VALUES(current_streak),"
+          + " longest_streak = VALUES(longest_streak),"
+          + " streak_cycle_due = VALUES(streak_cycle_due)";
+
+  private static final int[] REPLACE_STREAK_TYPES = {
+    Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.BIGINT
+  };
+
+  private static final String SERIES_STREAKS_SQL =
+      "SELECT g.goal_id, g.goal_interval, g.due_date, m.current_streak, m.longest_streak,"
+          + " m.streak_cycle_due FROM goal g"
+          + " LEFT JOIN goal_metrics m ON m.goals_goal_id = g.goal_id"
+          + " WHERE g.users_user_id = :userId AND g.parent_goal_id IS NULL"
+          + " AND g.goal_interval IN (:intervals) ORDER BY g.goal_id";
+
+  private static final String STREAKS_BY_SERIES_SQL =
+      "SELECT g.goal_id, g.goal_interval, g.due_date, m.current_streak, m.longest_streak,"
+          + " m.streak_cycle_due FROM goal g"
+          + " LEFT JOIN goal_metrics m ON m.goals_goal_id = g.goal_id"
+          + " WHERE g.goal_id IN (:seriesGoalIds)";
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+  @Autowired private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+  @Override
+  public int upsertAll(Collection<GoalMetrics> metrics) {
+    if (metrics.isEmpty()) {
+      return 0;
+    }
+    List<Object[]> rows = new ArrayList<>(metrics.size());
+    for (GoalMetrics m : metrics) {
+      rows.add(
+          new Object[] {
+            m.getGoalMetricsId(),
+            m.getGoalGoalId(),
+            m.getGoalComplete(),
+            m.getGoalInProgress(),
+            m.getMoneyMadeOnGoal(),
+            m.getTimeUntilDueDate()
+          });
+    }
+    jdbcTemplate.batchUpdate(UPSERT_SQL, rows, UPSERT_TYPES);
+    return rows.size();
+  }
+
+  @Override
+  public int updateMoneyMade(Map<Integer, String> moneyMadeByGoalId) {
+    if (moneyMadeByGoalId.isEmpty()) {
+      return 0;
+    }
+    List<Object[]> rows = new ArrayList<>(moneyMadeByGoalId.size());
+    moneyMadeByGoalId.forEach((goalId, money) -> rows.add(new Object[] {money, goalId}));
+    jdbcTemplate.batchUpdate(UPDATE_MONEY_SQL, rows, UPDATE_MONEY_TYPES);
+    return rows.size();
+  }
+
+  @Override
+  public int applyStreakOutcomes(List<StreakOutcome> outcomes) {
+    if (outcomes.isEmpty()) {
+      return 0;
+    }
+    List<Object[]> rows = new ArrayList<>(outcomes.size());
+    for (StreakOutcome o : outcomes) {
+      // A new row knows nothing of earlier cycles, a completion starts a streak of one
+      int streak = o.isCompleted() ? 1 : 0;
+      rows.add(
+          new Object[] {
+            o.getSeriesGoalId(),
+            o.getSeriesGoalId(),
+            streak,
+            streak,
+            o.getCycleDue(),
+            o.isCompleted() ? 1 : 0,
+            o.getPreviousCycleDue(),
+            o.isCompleted() ? 1 : 0,
+            o.getPreviousCycleDue()
+          });
+    }
+    jdbcTemplate.batchUpdate(APPLY_STREAK_SQL, rows, APPLY_STREAK_TYPES);
+    return rows.size();
+  }
+
+  @Override
+  public int replaceStreaks(Collection<SeriesStreak> streaks) {
+    if (streaks.isEmpty()) {
+      return 0;
+    }
+    List<Object[]> rows = new ArrayList<>(streaks.size());
+    for (SeriesStreak s : streaks) {
+      rows.add(
+          new Object[] {
+            s.getSeriesGoalId(),
+            s.getSeriesGoalId(),
+            s.getCurrentStreak(),
+            s.getLongestStreak(),
+            s.getLastCycleDue()
+          });
+    }
+    jdbcTemplate.batchUpdate(REPLACE_STREAK_SQL, rows, REPLACE_STREAK_TYPES);
+    return rows.size();
+  }
+
+  @Override
+  public List<SeriesStreak> findSeriesStreaks(int userId, Collection<String> intervals) {
+    MapSqlParameterSource params =
+        new MapSqlParameterSource().addValue("userId", userId).addValue("intervals", intervals);
+    return namedJdbcTemplate.query(SERIES_STREAKS_SQL, params, (rs, row) -> seriesStreak(rs));
+  }
+
+  @Override
+  public Map<Integer, SeriesStreak> findStreaksBySeries(Collection<Integer> seriesGoalIds) {
+    Map<Integer, SeriesStreak> streaks = new HashMap<>();
+    if (seriesGoalIds.isEmpty()) {
+      return streaks;
+    }
+    namedJdbcTemplate.query(
+        STREAKS_BY_SERIES_SQL,
+        new MapSqlParameterSource("seriesGoalIds", seriesGoalIds),
+        rs -> {
+          streaks.put(rs.getInt("goal_id"), seriesStreak(rs));
+        });
+    return streaks;
+  }
+
+  // Columns of a missing metrics row read as 0
+  private static SeriesStreak seriesStreak(ResultSet rs) throws SQLException {
+    return new SeriesStreak(
+        rs.getInt("goal_id"),
+        rs.getString("goal_interval"),
+        rs.getLong("due_date"),
+        rs.getInt("current_streak"),
+        rs.getInt("longest_streak"),
+        rs.getLong("streak_cycle_due"));
+  }
+}
@@ -22,14 +22,41 @@
  */
 package com.habicus.core.dao.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 import com.habicus.core.model.Goal;
+import com.habicus.core.service.leaderboard.ScoredGoal;
+import com.habicus.core.service.schedule.DueGoal;
+import com.habicus.core.service.search.SearchableGoal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface GoalRepository extends JpaRepository<Goal, Long> {
+public interface GoalRepository extends JpaRepository<Goal, Long>, GoalRepositoryCustom {
+
+  /**
+   * Rows pulled from the driver per round trip when streaming. MySQL Connector/J only honours this
+   * when the connection URL sets {@code useCursorFetch=true}, otherwise it buffers the result set.
+   */
+  String STREAM_FETCH_SIZE = "500";
+
+  /** Query cache region for per-user goal lists, sized and expired in ehcache.xml */
+  String GOAL_QUERY_CACHE_REGION = "goal-queries";
 
   /**
    * Allows retrieval of all {@link Goal} that are associated with a particular {@link
@@ -38,6 +65,10 @@ public interface GoalRepository extends JpaRepository<Goal, Long> {
    * @param userId
    * @return
    */
+  @QueryHints({
+    @QueryHint(name = HINT_CACHEABLE, value = "true"),
+    @QueryHint(name = HINT_CACHE_REGION, value = GOAL_QUERY_CACHE_REGION)
+  })
   Optional<List<Goal>> getGoalsByUsersUserId(int userId);
 
   /**
@@ -47,4 +78,206 @@ public interface GoalRepository extends JpaRepository<Goal, Long> {
    * @return
    */
   Optional<Goal> getGoalsByGoalId(int goalId);
+
+  /**
+   * Forward only stream of every {@link Goal} for a user. Must be consumed inside a transaction and
+   * closed by the caller. Bypasses the second-level cache so bulk reads do not evict hot entries.
+   *
+   * @param userId
+   * @return
+   */
+  @QueryHints({
+    @QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+    @QueryHint(name = HINT_READONLY, value = "true"),
+    @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+  })
+  @Query("select g from Goal g where g.usersUserId = :userId order by g.dueDate, g.goalId")
+  Stream<Goal> streamGoalsByUsersUserId(@Param("userId") int userId);
+
+  /**
+   * Forward only stream of every {@link Goal} in the system. Must be consumed inside a transaction
+   * and closed by the caller. Bypasses the second-level cache so bulk reads do not evict hot
+   * entries.
+   *
+   * @return
+   */
+  @QueryHints({
+    @QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+    @QueryHint(name = HINT_READONLY, value = "true"),
+    @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+  })
+  @Query("select g from Goal g order by g.goalId")
+  Stream<Goal> streamAllGoals();
+
+  /**
+   * Every user id that owns at least one {@link Goal}
+   *
+   * @return
+   */
+  @Query("select distinct g.usersUserId from Goal g")
+  List<Integer> findDistinctUsersUserIds();
+
+  /**
+   * Incomplete goals due after the keyset position {@code (afterDue, afterGoalId)} and no later
+   * than {@code until}, ordered by due date then goal id. Pass {@link Integer#MAX_VALUE} as {@code
+   * afterGoalId} to start strictly after {@code afterDue}.
+   *
+   * @param afterDue UTC Time
+   * @param afterGoalId
+   * @param until UTC Time
+   * @param complete value of {@link Goal#GOAL_COMPLETE}
+   * @param page
+   * @return
+   */
+  @Query(
+      "select new com.habicus.core.service.schedule.DueGoal(g.goalId, g.usersUserId, g.dueDate)"
+          + " from Goal g where g.dueDate <= :until"
+          + " and (g.dueDate > :afterDue or (g.dueDate = :afterDue and g.goalId > :afterGoalId))"
+          + " and (g.goalComplete is null or g.goalComplete <> :complete)"
+          + " order by g.dueDate, g.goalId")
+  List<DueGoal> findIncompleteDueGoals(
+      @Param("afterDue") long afterDue,
+      @Param("afterGoalId") int afterGoalId,
+      @Param("until") long until,
+      @Param("complete") String complete,
+      Pageable page);
+
+  /**
+   * Every {@link Goal} row of a user due within {@code [from, to)}, ordered by due date. Covers
+   * one-off goals, series templates and materialized occurrences alike.
+   *
+   * @param userId
+   * @param from UTC Time
+   * @param to UTC Time
+   * @return
+   */
+  @Query(
+      "select g from Goal g where g.usersUserId = :userId and g.dueDate >= :from"
+          + " and g.dueDate < :to order by g.dueDate, g.goalId")
+  List<Goal> findGoalsDueBetween(
+      @Param("userId") int userId, @Param("from") long from, @Param("to") long to);
+
+  /**
+   * Templates of a user's recurring goals whose first occurrence is due before {@code to}
+   *
+   * @param userId
+   * @param intervals lower case values of {@link com.habicus.core.service.Goal.GoalInterval}
+   * @param to UTC Time
+   * @return
+   */
+  @Query(
+      "select g from Goal g where g.usersUserId = :userId and g.parentGoalId is null"
+          + " and lower(g.goalInterval) in :intervals and g.dueDate < :to")
+  List<Goal> findRecurringTemplates(
+      @Param("userId") int userId,
+      @Param("intervals") Collection<String> intervals,
+      @Param("to") long to);
+
+  /**
+   * Templates of recurring goals with a pledge, after {@code afterGoalId} in goal id order, whose
+   * first occurrence is due before {@code until}. Bypasses the second-level cache like the other
+   * bulk reads.
+   *
+   * @param afterGoalId
+   * @param intervals lower case values of {@link com.habicus.core.service.Goal.GoalInterval}
+   * @param until UTC Time
+   * @param page
+   * @return
+   */
+  @QueryHints({
+    @QueryHint(name = HINT_READONLY, value = "true"),
+    @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+  })
+  @Query(
+      "select g from Goal g where g.parentGoalId is null and lower(g.goalInterval) in :intervals"
+          + " and g.pledgeAmount > 0 and g.goalId > :afterGoalId and g.dueDate < :until"
+          + " order by g.goalId")
+  List<Goal> findPledgedTemplatesAfter(
+      @Param("afterGoalId") int afterGoalId,
+      @Param("intervals") Collection<String> intervals,
+      @Param("until") long until,
+      Pageable page);
+
+  /**
+   * Materialized occurrence of a recurring goal
+   *
+   * @param parentGoalId
+   * @param dueDate
+   * @return
+   */
+  Optional<Goal> findByParentGoalIdAndDueDate(Integer parentGoalId, long dueDate);
+
+  /**
+   * Materialized occurrence of a recurring goal through a locking read, which sees rows committed
+   * after the transaction's REPEATABLE READ snapshot was taken
+   *
+   * @param parentGoalId
+   * @param dueDate
+   * @return
+   */
+  @Lock(LockModeType.PESSIMISTIC_READ)
+  @Query("select g from Goal g where g.parentGoalId = :parentGoalId and g.dueDate = :dueDate")
+  Optional<Goal> findLockedByParentGoalIdAndDueDate(
+      @Param("parentGoalId") Integer parentGoalId, @Param("dueDate") long dueDate);
+
+  /**
+   * Goals by id, reading through to the database rather than the second-level cache
+   *
+   * @param goalIds
+   * @return
+   */
+  @QueryHints(@QueryHint(name = HINT_CACHE_MODE, value = "IGNORE"))
+  List<Goal> findByGoalIdIn(Collection<Integer> goalIds);
+
+  /**
+   * Completed templates and occurrences of recurring series, reading through to the database
+   *
+   * @param seriesGoalIds goal ids of the series templates
+   * @param complete value of {@link Goal#GOAL_COMPLETE}
+   * @return
+   */
+  @QueryHints(@QueryHint(name = HINT_CACHE_MODE, value = "IGNORE"))
+  @Query(
+      "select g from Goal g where (g.goalId in :seriesGoalIds or g.parentGoalId in :seriesGoalIds)"
+          + " and g.goalComplete = :complete")
+  List<Goal> findCompletedInSeries(
+      @Param("seriesGoalIds") Collection<Integer> seriesGoalIds,
+      @Param("complete") String complete);
+
+  /**
+   * Every completed goal due within {@code [from, to)} as it counts on the leaderboards. Must be
+   * consumed within a transaction and closed afterwards.
+   *
+   * @param from UTC Time
+   * @param to UTC Time
+   * @param complete value of {@link Goal#GOAL_COMPLETE}
+   * @return
+   */
+  @QueryHints({
+    @QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+    @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query(
+      "select new com.habicus.core.service.leaderboard.ScoredGoal("
+          + "g.goalId, g.usersUserId, g.pledgeAmount)"
+          + " from Goal g where g.dueDate >= :from and g.dueDate < :to"
+          + " and g.goalComplete = :complete")
+  Stream<ScoredGoal> streamCompletedGoalsDueBetween(
+      @Param("from") long from, @Param("to") long to, @Param("complete") String complete);
+
+  /**
+   * Title and description of every goal, as the search index loads them. Must be consumed within a
+   * transaction and closed afterwards.
+   *
+   * @return
+   */
+  @QueryHints({
+    @QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+    @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query(
+      "select new com.habicus.core.service.search.SearchableGoal("
+          + "g.goalId, g.usersUserId, g.title, g.description)"
+          + " from Goal g")
+  Stream<SearchableGoal> streamSearchableGoals();
 }
@@ -0,0 +1,84 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.dao.repository;
+
+import com.habicus.core.model.Goal;
+import com.habicus.core.service.Goal.GoalCursor;
+import com.habicus.core.service.Goal.GoalFilter;
+import java.util.List;
+import java.util.Map;
+
+/** Queries on {@link Goal} that cannot be expressed as derived Spring Data queries */
+public interface GoalRepositoryCustom {
+
+  /**
+   * Keyset page of a user's {@link Goal} ordered by {@code (dueDate, goalId)}
+   *
+   * @param userId
+   * @param filter optional restrictions, may be null
+   * @param after start strictly after this position, null for the first page
+   * @param limit maximum number of goals to return
+   * @return
+   */
+  List<Goal> findGoalPage(int userId, GoalFilter filter, GoalCursor after, int limit);
+
+  /**
+   * Inserts the occurrence of a recurring {@link Goal} due at {@code dueDate}, copying the
+   * template's attributes. Does nothing when that occurrence already exists.
+   *
+   * @param template
+   * @param dueDate UTC Time
+   * @param goalId id for the new row, see {@link #reserveGoalIds(int)}
+   * @return number of rows inserted
+   */
+  int insertOccurrence(Goal template, long dueDate, int goalId);
+
+  /**
+   * Adds checked in units to goals using JDBC batches, completing every goal whose units done
+   * reach its unit count. Bypasses the persistence context and second-level cache.
+   *
+   * @param unitsByGoalId
+   * @return number of rows sent
+   */
+  int applyCheckIns(Map<Integer, Integer> unitsByGoalId);
+
+  /**
+   * Reserves a block of goal ids no other caller or instance will be handed. Must run in a
+   * transaction, which holds the sequence row until it commits, so callers run it in a short
+   * transaction of its own.
+   *
+   * @param count
+   * @return first id of the block, the block is {@code [first, first + count)}
+   */
+  int reserveGoalIds(int count);
+
+  /**
+   * Persists new goals with assigned ids, flushing every {@code batchSize} goals so Hibernate
+   * sends each flush as one JDBC batch. Also flushes pending changes to goals already managed.
+   * Spring Data does not publish domain events for goals persisted this way.
+   *
+   * @param goals
+   * @param batchSize
+   */
+  void persistGoals(List<Goal> goals, int batchSize);
+}
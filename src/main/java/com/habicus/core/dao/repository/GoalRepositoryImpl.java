@@ -0,0 +1,182 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.dao.repository;
+
+import com.habicus.core.model.Goal;
+import com.habicus.core.service.Goal.GoalCursor;
+import com.habicus.core.service.Goal.GoalFilter;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/** Picked up by Spring Data as the implementation of {@link GoalRepositoryCustom} */
+public class GoalRepositoryImpl implements GoalRepositoryCustom {
+
+  // The unique (parent_goal_id, due_date) key turns a concurrent second insert into a no-op
+  private static final String INSERT_OCCURRENCE_SQL =
+      "INSERT IGNORE INTO goal (users_user_id, due_date, description, goal_complete,"
+          + " goal_interval, label_color, pledge_amount, task_unit_count, title, parent_goal_id,"
+          + " goal_id) VALUES (?1, ?2, ?3, ?4, ?5, ?6, ?7, ?8, ?9, ?10, ?11)";
+
+  // goal_complete is assigned first so it sees task_units_done before the increment
+  private static final String APPLY_CHECK_INS_SQL =
+      "UPDATE goal SET goal_complete = CASE"
+          + " WHEN task_units_done + ? >= COALESCE(task_unit_count, 0)"
+          + " THEN '" + Goal.GOAL_COMPLETE + "' ELSE goal_complete END,"
+          + " task_units_done = task_units_done + ? WHERE goal_id = ?";
+
+  private static final int[] APPLY_CHECK_INS_TYPES = {Types.INTEGER, Types.INTEGER, Types.INTEGER};
+
+  // GREATEST keeps the sequence ahead of goal ids written without it, such as the seed data. The
+  // row stays locked until the caller's transaction ends, so reading it back sees this block.
+  private static final String RESERVE_GOAL_IDS_SQL =
+      "UPDATE goal_id_sequence SET next_id ="
+          + " GREATEST(next_id, (SELECT COALESCE(MAX(goal_id), 0) + 1 FROM goal)) + ?"
+          + " WHERE sequence_id = 1";
+
+  private static final String NEXT_GOAL_ID_SQL =
+      "SELECT next_id FROM goal_id_sequence WHERE sequence_id = 1";
+
+  @PersistenceContext private EntityManager entityManager;
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Override
+  public List<Goal> findGoalPage(int userId, GoalFilter filter, GoalCursor after, int limit) {
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Goal> query = cb.createQuery(Goal.class);
+    Root<Goal> goal = query.from(Goal.class);
+    Path<Long> dueDate = goal.get("dueDate");
+    Path<Integer> goalId = goal.get("goalId");
+
+    List<Predicate> predicates = new ArrayList<>();
+    predicates.add(cb.equal(goal.get("usersUserId"), userId));
+    if (filter != null) {
+      if (filter.getGoalComplete() != null) {
+        predicates.add(cb.equal(goal.get("goalComplete"), filter.getGoalComplete()));
+      }
+      if (filter.getGoalInterval() != null) {
+        predicates.add(cb.equal(goal.get("goalInterval"), filter.getGoalInterval()));
+      }
+      if (filter.getDueAfter() != null) {
+        predicates.add(cb.greaterThanOrEqualTo(dueDate, filter.getDueAfter()));
+      }
+      if (filter.getDueBefore() != null) {
+        predicates.add(cb.lessThanOrEqualTo(dueDate, filter.getDueBefore()));
+      }
+    }
+    if (after != null) {
+      // (due_date, goal_id) > (:dueDate, :goalId) spelled out, JPQL has no row value comparison
+      predicates.add(
+          cb.or(
+              cb.greaterThan(dueDate, after.getDueDate()),
+              cb.and(
+                  cb.equal(dueDate, after.getDueDate()),
+                  cb.greaterThan(goalId, after.getGoalId()))));
+    }
+
+    query
+        .select(goal)
+        .where(predicates.toArray(new Predicate[0]))
+        .orderBy(cb.asc(dueDate), cb.asc(goalId));
+    return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+  }
+
+  @Override
+  public int insertOccurrence(Goal template, long dueDate, int goalId) {
+    return entityManager
+        .createNativeQuery(INSERT_OCCURRENCE_SQL)
+        .setParameter(1, template.getUsersUserId())
+        .setParameter(2, dueDate)
+        .setParameter(3, template.getDescription())
+        .setParameter(4, Goal.GOAL_INCOMPLETE)
+        .setParameter(5, template.getGoalInterval())
+        .setParameter(6, template.getLabelColor())
+        .setParameter(7, template.getPledgeAmount())
+        .setParameter(8, template.getTaskUnitCount())
+        .setParameter(9, template.getTitle())
+        .setParameter(10, template.getGoalId())
+        .setParameter(11, goalId)
+        // Only invalidates cached goal queries, an unsynchronized native write clears every region
+        .unwrap(NativeQuery.class)
+        .addSynchronizedEntityClass(Goal.class)
+        .executeUpdate();
+  }
+
+  @Override
+  public int applyCheckIns(Map<Integer, Integer> unitsByGoalId) {
+    if (unitsByGoalId.isEmpty()) {
+      return 0;
+    }
+    List<Object[]> rows = new ArrayList<>(unitsByGoalId.size());
+    unitsByGoalId.forEach((goalId, units) -> rows.add(new Object[] {units, units, goalId}));
+    jdbcTemplate.batchUpdate(APPLY_CHECK_INS_SQL, rows, APPLY_CHECK_INS_TYPES);
+    return rows.size();
+  }
+
+  @Override
+  public int reserveGoalIds(int count) {
+    return jdbcTemplate.execute(
+        (ConnectionCallback<Integer>)
+            connection -> {
+              try (PreparedStatement reserve = connection.prepareStatement(RESERVE_GOAL_IDS_SQL)) {
+                reserve.setInt(1, count);
+                if (reserve.executeUpdate() != 1) {
+                  throw new IllegalStateException("goal_id_sequence has not been seeded");
+                }
+              }
+              try (Statement select = connection.createStatement();
+                  ResultSet next = select.executeQuery(NEXT_GOAL_ID_SQL)) {
+                next.next();
+                return next.getInt(1) - count;
+              }
+            });
+  }
+
+  @Override
+  public void persistGoals(List<Goal> goals, int batchSize) {
+    for (int i = 0; i < goals.size(); i++) {
+      entityManager.persist(goals.get(i));
+      if ((i + 1) % batchSize == 0) {
+        // One JDBC batch per flush, clearing keeps the persistence context from growing
+        entityManager.flush();
+        entityManager.clear();
+      }
+    }
+    entityManager.flush();
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.dao.repository;
+
+import com.habicus.core.model.PledgeLedgerEntry;
+import com.habicus.core.service.settlement.UnsettledPledge;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Bulk reads and writes for pledge settlement that bypass the persistence context */
+public interface PledgeLedgerRepositoryCustom {
+
+  /**
+   * Stored incomplete goals with a pledge, due after the keyset position {@code (afterDue,
+   * afterGoalId)} and no later than {@code until}, that have no ledger entry for their current due
+   * date yet. Ordered by due date then goal id.
+   *
+   * @param afterDue UTC Time
+   * @param afterGoalId
+   * @param until UTC Time
+   * @param limit
+   * @return
+   */
+  List<UnsettledPledge> findUnsettled(long afterDue, int afterGoalId, long until, int limit);
+
+  /**
+   * Same as {@link #findUnsettled(long, int, long, int)} restricted to the given goals
+   *
+   * @param goalIds
+   * @param until UTC Time
+   * @return
+   */
+  List<UnsettledPledge> findUnsettledByGoalIds(Collection<Integer> goalIds, long until);
+
+  /**
+   * Due dates within {@code (from, until]} of the given recurring goal series that already have a
+   * ledger entry or a stored occurrence
+   *
+   * @param seriesGoalIds goal ids of series templates
+   * @param from UTC Time
+   * @param until UTC Time
+   * @return due dates by series goal id
+   */
+  Map<Integer, Set<Long>> findRecordedCycles(
+      Collection<Integer> seriesGoalIds, long from, long until);
+
+  /**
+   * Inserts ledger entries using JDBC batches, skipping any goal and cycle that already has one.
+   * Rewritten batches do not report per row counts, so the rows written are then read back by the
+   * entries' {@link PledgeLedgerEntry#getSettlementRun() settlement run}, which must be unique to
+   * the caller.
+   *
+   * @param entries
+   * @return per entry whether a row was written, in the order given
+   */
+  boolean[] insertIgnoringSettled(List<PledgeLedgerEntry> entries);
+}
@@ -0,0 +1,205 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.dao.repository;
+
+import com.habicus.core.model.Goal;
+import com.habicus.core.model.PledgeLedgerEntry;
+import com.habicus.core.service.settlement.UnsettledPledge;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/** Picked up by Spring Data as the implementation of {@link PledgeLedgerRepositoryCustom} */
+public class PledgeLedgerRepositoryImpl implements PledgeLedgerRepositoryCustom {
+
+  // Occurrences of a recurring goal are settled against the series template
+  private static final String UNSETTLED_SQL =
+      "SELECT g.goal_id, COALESCE(g.parent_goal_id, g.goal_id) AS series_goal_id,"
+          + " g.users_user_id, g.due_date, g.pledge_amount FROM goal g"
+          + " WHERE g.pledge_amount > 0"
+          + " AND (g.goal_complete IS NULL OR g.goal_complete <> :complete)"
+          + " AND g.due_date <= :until"
+          + " AND NOT EXISTS (SELECT 1 FROM pledge_ledger l"
+          + " WHERE l.goals_goal_id = COALESCE(g.parent_goal_id, g.goal_id)"
+          + " AND l.cycle_due_date = g.due_date)";
+
+  private static final String UNSETTLED_PAGE_SQL =
+      UNSETTLED_SQL
+          + " AND (g.due_date > :afterDue OR (g.due_date = :afterDue AND g.goal_id > :afterGoalId))"
+          + " ORDER BY g.due_date, g.goal_id LIMIT :limit";
+
+  private static final String UNSETTLED_BY_ID_SQL =
+      UNSETTLED_SQL + " AND g.goal_id IN (:goalIds) ORDER BY g.due_date, g.goal_id";
+
+  private static final String RECORDED_CYCLES_SQL =
+      "SELECT l.goals_goal_id AS series_goal_id, l.cycle_due_date AS due_date FROM pledge_ledger l"
+          + " WHERE l.goals_goal_id IN (:seriesGoalIds)"
+          + " AND l.cycle_due_date > :from AND l.cycle_due_date <= :until"
+          + " UNION SELECT g.parent_goal_id, g.due_date FROM goal g"
+          + " WHERE g.parent_goal_id IN (:seriesGoalIds)"
+          + " AND g.due_date > :from AND g.due_date <= :until";
+
+  // Duplicate (goal, cycle) rows are dropped by the unique key, which makes reruns safe
+  private static final String INSERT_SQL =
+      "INSERT IGNORE INTO pledge_ledger"
+          + " (goals_goal_id, users_user_id, cycle_due_date, amount, settled_at, settlement_run)"
+          + " VALUES (?, ?, ?, ?, ?, ?)";
+
+  private static final int[] INSERT_TYPES = {
+    Types.INTEGER, Types.INTEGER, Types.BIGINT, Types.DECIMAL, Types.BIGINT, Types.BIGINT
+  };
+
+  // Uses the unique key's goal prefix, a run only ever sees its own uncommitted rows
+  private static final String WRITTEN_BY_RUN_SQL =
+      "SELECT l.goals_goal_id, l.cycle_due_date, l.settlement_run FROM pledge_ledger l"
+          + " WHERE l.goals_goal_id IN (:goalIds) AND l.settlement_run IN (:runs)";
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+  @Autowired private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+  @Override
+  public List<UnsettledPledge> findUnsettled(
+      long afterDue, int afterGoalId, long until, int limit) {
+    MapSqlParameterSource params =
+        new MapSqlParameterSource("complete", Goal.GOAL_COMPLETE)
+            .addValue("until", until)
+            .addValue("afterDue", afterDue)
+            .addValue("afterGoalId", afterGoalId)
+            .addValue("limit", limit);
+    return namedJdbcTemplate.query(UNSETTLED_PAGE_SQL, params, this::mapUnsettled);
+  }
+
+  @Override
+  public List<UnsettledPledge> findUnsettledByGoalIds(Collection<Integer> goalIds, long until) {
+    if (goalIds.isEmpty()) {
+      return Collections.emptyList();
+    }
+    MapSqlParameterSource params =
+        new MapSqlParameterSource("complete", Goal.GOAL_COMPLETE)
+            .addValue("until", until)
+            .addValue("goalIds", goalIds);
+    return namedJdbcTemplate.query(UNSETTLED_BY_ID_SQL, params, this::mapUnsettled);
+  }
+
+  @Override
+  public Map<Integer, Set<Long>> findRecordedCycles(
+      Collection<Integer> seriesGoalIds, long from, long until) {
+    Map<Integer, Set<Long>> cycles = new HashMap<>();
+    if (seriesGoalIds.isEmpty()) {
+      return cycles;
+    }
+    MapSqlParameterSource params =
+        new MapSqlParameterSource("seriesGoalIds", seriesGoalIds)
+            .addValue("from", from)
+            .addValue("until", until);
+    namedJdbcTemplate.query(
+        RECORDED_CYCLES_SQL,
+        params,
+        rs -> {
+          cycles
+              .computeIfAbsent(rs.getInt("series_goal_id"), id -> new HashSet<>())
+              .add(rs.getLong("due_date"));
+        });
+    return cycles;
+  }
+
+  @Override
+  public boolean[] insertIgnoringSettled(List<PledgeLedgerEntry> entries) {
+    boolean[] written = new boolean[entries.size()];
+    if (entries.isEmpty()) {
+      return written;
+    }
+    List<Object[]> rows = new ArrayList<>(entries.size());
+    for (PledgeLedgerEntry e : entries) {
+      rows.add(
+          new Object[] {
+            e.getGoalGoalId(),
+            e.getUsersUserId(),
+            e.getCycleDueDate(),
+            e.getAmount(),
+            e.getSettledAt(),
+            e.getSettlementRun()
+          });
+    }
+    int[] counts = jdbcTemplate.batchUpdate(INSERT_SQL, rows, INSERT_TYPES);
+    boolean counted = true;
+    for (int i = 0; i < written.length; i++) {
+      // A rewritten batch reports SUCCESS_NO_INFO for inserted and ignored rows alike
+      counted &= counts[i] != Statement.SUCCESS_NO_INFO;
+      written[i] = counts[i] > 0;
+    }
+    return counted ? written : writtenByRun(entries);
+  }
+
+  private boolean[] writtenByRun(List<PledgeLedgerEntry> entries) {
+    Set<Integer> goalIds = new HashSet<>();
+    Set<Long> runs = new HashSet<>();
+    for (PledgeLedgerEntry e : entries) {
+      goalIds.add(e.getGoalGoalId());
+      runs.add(e.getSettlementRun());
+    }
+    Set<List<Long>> found = new HashSet<>();
+    namedJdbcTemplate.query(
+        WRITTEN_BY_RUN_SQL,
+        new MapSqlParameterSource("goalIds", goalIds).addValue("runs", runs),
+        rs -> {
+          found.add(
+              Arrays.asList(
+                  rs.getLong("goals_goal_id"),
+                  rs.getLong("cycle_due_date"),
+                  rs.getLong("settlement_run")));
+        });
+    boolean[] written = new boolean[entries.size()];
+    for (int i = 0; i < written.length; i++) {
+      PledgeLedgerEntry e = entries.get(i);
+      written[i] =
+          found.contains(
+              Arrays.asList((long) e.getGoalGoalId(), e.getCycleDueDate(), e.getSettlementRun()));
+    }
+    return written;
+  }
+
+  private UnsettledPledge mapUnsettled(ResultSet rs, int row) throws SQLException {
+    return new UnsettledPledge(
+        rs.getInt("goal_id"),
+        rs.getInt("series_goal_id"),
+        rs.getInt("users_user_id"),
+        rs.getLong("due_date"),
+        rs.getDouble("pledge_amount"),
+        true);
+  }
+}
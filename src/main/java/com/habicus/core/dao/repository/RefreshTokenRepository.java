@@ -0,0 +1,55 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.dao.repository;
+
+import com.habicus.core.model.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+
+  /**
+   * Removes a single {@link RefreshToken} by its digest. The returned row count lets callers detect
+   * that a concurrent request already consumed the token.
+   *
+   * @param tokenHash
+   * @return
+   */
+  @Modifying
+  @Query("delete from RefreshToken t where t.tokenHash = :tokenHash")
+  int deleteByTokenHash(@Param("tokenHash") String tokenHash);
+
+  /**
+   * Purges every {@link RefreshToken} that expired before the given time
+   *
+   * @param now UTC millis
+   * @return
+   */
+  @Modifying
+  @Query("delete from RefreshToken t where t.expiresAt < :now")
+  int deleteExpired(@Param("now") long now);
+}
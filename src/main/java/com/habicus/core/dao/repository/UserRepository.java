@@ -22,14 +22,27 @@
  */
 package com.habicus.core.dao.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+
 import com.habicus.core.model.User;
 import java.util.Optional;
+import javax.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+
+  /** Query cache region for username lookups, sized and expired in ehcache.xml */
+  String USER_QUERY_CACHE_REGION = "user-queries";
+
   Optional<User> findByEmail(String email);
 
+  @QueryHints({
+    @QueryHint(name = HINT_CACHEABLE, value = "true"),
+    @QueryHint(name = HINT_CACHE_REGION, value = USER_QUERY_CACHE_REGION)
+  })
   Optional<User> findUserByUsername(String userName);
 }
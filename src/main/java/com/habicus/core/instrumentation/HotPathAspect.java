@@ -0,0 +1,70 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.instrumentation;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times calls into the goal and user services and the Spring Data repositories. Runs outside the
+ * transaction advice, so service stages include their commit.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class HotPathAspect {
+
+  private final HotPathRecorder recorder;
+
+  public HotPathAspect(HotPathRecorder recorder) {
+    this.recorder = recorder;
+  }
+
+  @Around("execution(public * com.habicus.core.service.Goal.GoalService.*(..))")
+  public Object timeGoalService(ProceedingJoinPoint call) throws Throwable {
+    return time(HotPathStage.GOAL_SERVICE, call);
+  }
+
+  @Around("execution(public * com.habicus.core.service.User.UserService.*(..))")
+  public Object timeUserService(ProceedingJoinPoint call) throws Throwable {
+    return time(HotPathStage.USER_SERVICE, call);
+  }
+
+  @Around("execution(public * org.springframework.data.repository.Repository+.*(..))")
+  public Object timeRepository(ProceedingJoinPoint call) throws Throwable {
+    return time(HotPathStage.REPOSITORY, call);
+  }
+
+  private Object time(HotPathStage stage, ProceedingJoinPoint call) throws Throwable {
+    long started = recorder.start();
+    try {
+      return call.proceed();
+    } finally {
+      recorder.stop(stage, started);
+    }
+  }
+}
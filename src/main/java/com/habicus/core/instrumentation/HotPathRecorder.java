@@ -0,0 +1,228 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.instrumentation;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Latency distributions of the hot paths of a request, one {@code habicus.hotpath} timer per
+ * {@link HotPathStage}, plus the SQL statements and bytes allocated per request. Percentiles come
+ * from the registry's HdrHistogram backed windows and cover roughly the last minute. Stage times
+ * are inclusive, a service call also contains the repository calls it makes.
+ *
+ * <p>Recording is a {@link System#nanoTime()} pair and a histogram update, cheap enough to leave
+ * on. {@code habicus.instrumentation.enabled=false} turns it into a no-op.
+ */
+@Component
+public class HotPathRecorder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HotPathRecorder.class);
+
+  private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+  private static final Duration WINDOW = Duration.ofMinutes(1);
+
+  private final boolean enabled;
+  private final Map<HotPathStage, Timer> stages = new EnumMap<>(HotPathStage.class);
+  private final DistributionSummary queries;
+  private final DistributionSummary allocatedBytes;
+
+  // Only touched by logSummary: stage counts at the previous summary
+  private final Map<HotPathStage, Long> loggedCounts = new EnumMap<>(HotPathStage.class);
+
+  public HotPathRecorder(
+      MeterRegistry registry,
+      @Value("${habicus.instrumentation.enabled:true}") boolean enabled) {
+    this.enabled = enabled;
+    for (HotPathStage stage : HotPathStage.values()) {
+      stages.put(
+          stage,
+          Timer.builder("habicus.hotpath")
+              .tag("stage", stage.getTag())
+              .publishPercentiles(PERCENTILES)
+              .distributionStatisticExpiry(WINDOW)
+              .register(registry));
+    }
+    this.queries =
+        DistributionSummary.builder("habicus.hotpath.request.queries")
+            .description("SQL statements executed per request")
+            .publishPercentiles(PERCENTILES)
+            .distributionStatisticExpiry(WINDOW)
+            .register(registry);
+    this.allocatedBytes =
+        DistributionSummary.builder("habicus.hotpath.request.allocated")
+            .description("Bytes allocated by the request thread per request")
+            .baseUnit("bytes")
+            .publishPercentiles(PERCENTILES)
+            .distributionStatisticExpiry(WINDOW)
+            .register(registry);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Start of a stage, pass the result to {@link #stop}
+   *
+   * @return
+   */
+  public long start() {
+    return enabled ? System.nanoTime() : 0L;
+  }
+
+  /**
+   * Records a stage started with {@link #start}
+   *
+   * @param stage
+   * @param started
+   */
+  public void stop(HotPathStage stage, long started) {
+    if (enabled) {
+      stages.get(stage).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Runs work as a stage
+   *
+   * @param stage
+   * @param work
+   * @return what the work returned
+   */
+  public <T> T time(HotPathStage stage, Supplier<T> work) {
+    long started = start();
+    try {
+      return work.get();
+    } finally {
+      stop(stage, started);
+    }
+  }
+
+  void recordRequest(RequestProfile profile) {
+    stop(HotPathStage.REQUEST, profile.getStarted());
+    queries.record(profile.getQueries());
+    long allocated = profile.getAllocatedBytes();
+    if (allocated >= 0) {
+      allocatedBytes.record(allocated);
+    }
+  }
+
+  /**
+   * Distribution of every stage and of the per request costs
+   *
+   * @return
+   */
+  public Map<String, Object> summary() {
+    Map<String, Object> stageSummaries = new LinkedHashMap<>();
+    stages.forEach(
+        (stage, timer) ->
+            stageSummaries.put(
+                stage.getTag(), describe(timer.takeSnapshot(false), TimeUnit.MILLISECONDS)));
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("enabled", enabled);
+    summary.put("stagesMillis", stageSummaries);
+    summary.put("queriesPerRequest", describe(queries.takeSnapshot(false), null));
+    summary.put("allocatedBytesPerRequest", describe(allocatedBytes.takeSnapshot(false), null));
+    return summary;
+  }
+
+  /** Logs one line with the stages that ran since the previous summary */
+  @Scheduled(fixedDelayString = "${habicus.instrumentation.log-interval-ms:60000}")
+  public void logSummary() {
+    if (!enabled || !LOGGER.isInfoEnabled()) {
+      return;
+    }
+    StringBuilder line = new StringBuilder("Hot paths");
+    boolean ran = false;
+    for (Map.Entry<HotPathStage, Timer> entry : stages.entrySet()) {
+      long count = entry.getValue().count();
+      Long previous = loggedCounts.put(entry.getKey(), count);
+      long calls = previous == null ? count : count - previous;
+      if (calls == 0) {
+        continue;
+      }
+      ran = true;
+      HistogramSnapshot snapshot = entry.getValue().takeSnapshot(false);
+      line.append(
+          String.format(
+              " | %s n=%d p50=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+              entry.getKey().getTag(),
+              calls,
+              percentile(snapshot, 0.5, TimeUnit.MILLISECONDS),
+              percentile(snapshot, 0.99, TimeUnit.MILLISECONDS),
+              percentile(snapshot, 0.999, TimeUnit.MILLISECONDS),
+              snapshot.max(TimeUnit.MILLISECONDS)));
+    }
+    if (!ran) {
+      return;
+    }
+    line.append(
+        String.format(
+            " | queries/request p50=%.0f p99=%.0f | allocated/request p50=%.0fB p99=%.0fB",
+            percentile(queries.takeSnapshot(false), 0.5, null),
+            percentile(queries.takeSnapshot(false), 0.99, null),
+            percentile(allocatedBytes.takeSnapshot(false), 0.5, null),
+            percentile(allocatedBytes.takeSnapshot(false), 0.99, null)));
+    LOGGER.info("{}", line);
+  }
+
+  // unit is null for distributions without a time unit
+  private static Map<String, Object> describe(HistogramSnapshot snapshot, TimeUnit unit) {
+    Map<String, Object> description = new LinkedHashMap<>();
+    description.put("count", snapshot.count());
+    description.put("mean", unit == null ? snapshot.mean() : snapshot.mean(unit));
+    description.put("max", unit == null ? snapshot.max() : snapshot.max(unit));
+    for (ValueAtPercentile value : snapshot.percentileValues()) {
+      description.put(
+          "p" + BigDecimal.valueOf(value.percentile() * 100).stripTrailingZeros().toPlainString(),
+          unit == null ? value.value() : value.value(unit));
+    }
+    return description;
+  }
+
+  private static double percentile(HistogramSnapshot snapshot, double percentile, TimeUnit unit) {
+    for (ValueAtPercentile value : snapshot.percentileValues()) {
+      if (value.percentile() == percentile) {
+        return unit == null ? value.value() : value.value(unit);
+      }
+    }
+    return Double.NaN;
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.instrumentation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * Hooks {@link HotPathRecorder} into the servlet filter chain and the JSON converter. Statements
+ * are counted by {@link QueryCountingPostProcessor}, the security filters, services and
+ * repositories are timed by {@link com.habicus.core.security.WebSecurity} and {@link
+ * HotPathAspect}.
+ */
+@Configuration
+public class InstrumentationConfig {
+
+  @Bean
+  public FilterRegistrationBean<RequestProfileFilter> requestProfileFilter(
+      HotPathRecorder recorder) {
+    FilterRegistrationBean<RequestProfileFilter> registration =
+        new FilterRegistrationBean<>(new RequestProfileFilter(recorder));
+    // Right after RequestIdFilter
+    registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+    return registration;
+  }
+
+  /** Replaces the converter Boot would configure, keeping its ObjectMapper */
+  @Bean
+  public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(
+      ObjectMapper objectMapper, HotPathRecorder recorder) {
+    return new TimedJackson2HttpMessageConverter(objectMapper, recorder);
+  }
+}
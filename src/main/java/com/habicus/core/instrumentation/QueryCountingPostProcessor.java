@@ -0,0 +1,91 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.instrumentation;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Counts every statement executed against the current request, a JDBC batch counting as one. The
+ * DataSource is wrapped rather than Hibernate hooked, so statements sent through {@link
+ * org.springframework.jdbc.core.JdbcTemplate} and native queries are counted as well.
+ */
+@Component
+public class QueryCountingPostProcessor implements BeanPostProcessor, Ordered {
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (!(bean instanceof DataSource)) {
+      return bean;
+    }
+    return Proxy.newProxyInstance(
+        bean.getClass().getClassLoader(),
+        ClassUtils.getAllInterfaces(bean),
+        new Counting(bean));
+  }
+
+  // Wraps last, so post processors looking for the pool's own class still see it
+  @Override
+  public int getOrder() {
+    return Ordered.LOWEST_PRECEDENCE;
+  }
+
+  private static final class Counting implements InvocationHandler {
+    private final Object target;
+
+    private Counting(Object target) {
+      this.target = target;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (target instanceof Statement && method.getName().startsWith("execute")) {
+        RequestProfile.countQuery();
+      }
+      Object result;
+      try {
+        result = method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+      // Connections and statements are wrapped as the interface the caller asked for
+      Class<?> type = method.getReturnType();
+      if (result != null
+          && type.isInterface()
+          && (Connection.class.isAssignableFrom(type) || Statement.class.isAssignableFrom(type))) {
+        return Proxy.newProxyInstance(
+            Counting.class.getClassLoader(), new Class<?>[] {type}, new Counting(result));
+      }
+      return result;
+    }
+  }
+}
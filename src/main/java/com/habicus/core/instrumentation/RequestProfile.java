@@ -0,0 +1,105 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.instrumentation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * What the request running on the current thread has cost so far: SQL statements executed and
+ * bytes allocated by the thread. Work handed to other threads, such as async response bodies, is
+ * not counted.
+ */
+final class RequestProfile {
+
+  private static final ThreadLocal<RequestProfile> CURRENT = new ThreadLocal<>();
+
+  private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+  private final long started;
+  private final long allocatedAtStart;
+  private int queries;
+
+  private RequestProfile(long started) {
+    this.started = started;
+    this.allocatedAtStart = allocatedBytes();
+  }
+
+  /**
+   * Starts profiling the request on the current thread
+   *
+   * @param started {@link System#nanoTime()} the request arrived at
+   * @return
+   */
+  static RequestProfile begin(long started) {
+    RequestProfile profile = new RequestProfile(started);
+    CURRENT.set(profile);
+    return profile;
+  }
+
+  void end() {
+    CURRENT.remove();
+  }
+
+  /** Counts a statement against the request on the current thread, if any */
+  static void countQuery() {
+    RequestProfile profile = CURRENT.get();
+    if (profile != null) {
+      profile.queries++;
+    }
+  }
+
+  long getStarted() {
+    return started;
+  }
+
+  int getQueries() {
+    return queries;
+  }
+
+  /**
+   * Bytes allocated by the current thread since {@link #begin}
+   *
+   * @return -1 when the JVM does not measure allocation per thread
+   */
+  long getAllocatedBytes() {
+    return allocatedAtStart < 0 ? -1 : allocatedBytes() - allocatedAtStart;
+  }
+
+  private static long allocatedBytes() {
+    return ALLOCATION == null
+        ? -1
+        : ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static com.sun.management.ThreadMXBean allocationBean() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+      return null;
+    }
+    com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+    return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()
+        ? bean
+        : null;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.instrumentation;
+
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Runs ahead of Spring Security, so the request stage covers the whole filter chain
+ * and every statement the request sends is counted against it.
+ */
+class RequestProfileFilter extends OncePerRequestFilter {
+
+  private final HotPathRecorder recorder;
+
+  RequestProfileFilter(HotPathRecorder recorder) {
+    this.recorder = recorder;
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+      throws IOException, ServletException {
+    if (!recorder.isEnabled()) {
+      chain.doFilter(req, res);
+      return;
+    }
+    RequestProfile profile = RequestProfile.begin(System.nanoTime());
+    try {
+      chain.doFilter(req, res);
+    } finally {
+      profile.end();
+      recorder.recordRequest(profile);
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.model;
+
+import java.util.Objects;
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Last check-in journal segment of an application node whose check-ins are in the goal table.
+ * Written in the same transaction as the check-ins, so replaying the journal after a crash never
+ * applies a segment twice.
+ */
+@Entity
+@Table(name = "check_in_checkpoint")
+public class CheckInCheckpoint {
+
+  private String nodeId;
+  private long appliedSegment;
+
+  @Id
+  @Column(name = "node_id")
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public void setNodeId(String nodeId) {
+    this.nodeId = nodeId;
+  }
+
+  @Basic
+  @Column(name = "applied_segment")
+  public long getAppliedSegment() {
+    return appliedSegment;
+  }
+
+  public void setAppliedSegment(long appliedSegment) {
+    this.appliedSegment = appliedSegment;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    CheckInCheckpoint that = (CheckInCheckpoint) o;
+    return appliedSegment == that.appliedSegment && Objects.equals(nodeId, that.nodeId);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(nodeId, appliedSegment);
+  }
+}
@@ -22,25 +22,44 @@
  */
 package com.habicus.core.model;
 
+import com.habicus.core.event.GoalChangedEvent;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Objects;
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.springframework.data.domain.DomainEvents;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "goal")
 @IdClass(GoalsPK.class)
 public class Goal {
 
+  // Values stored in goal_complete
+  public static final String GOAL_COMPLETE = "1";
+  public static final String GOAL_INCOMPLETE = "0";
+
   private int usersUserId;
   private int taskUnitCount;
+
+  // Units checked in so far, the goal completes once this reaches taskUnitCount
+  private int taskUnitsDone;
   private int goalId;
   private String title;
   private String description;
   private String goalInterval;
   private Double pledgeAmount;
 
+  // Recurring goal this row is an occurrence of, null for one-off goals and series templates
+  private Integer parentGoalId;
+
   // UTC Time
   private long dueDate;
 
@@ -109,6 +128,16 @@ public class Goal {
     this.taskUnitCount = taskUnitCount;
   }
 
+  @Basic
+  @Column(name = "task_units_done")
+  public int getTaskUnitsDone() {
+    return taskUnitsDone;
+  }
+
+  public void setTaskUnitsDone(int taskUnitsDone) {
+    this.taskUnitsDone = taskUnitsDone;
+  }
+
   @Id
   @Column(name = "due_date")
   public long getDueDate() {
@@ -139,6 +168,16 @@ public class Goal {
     this.pledgeAmount = pledgeAmount;
   }
 
+  @Basic
+  @Column(name = "parent_goal_id")
+  public Integer getParentGoalId() {
+    return parentGoalId;
+  }
+
+  public void setParentGoalId(Integer parentGoalId) {
+    this.parentGoalId = parentGoalId;
+  }
+
   @Basic
   @Column(name = "goal_complete")
   public String getGoalComplete() {
@@ -149,6 +188,12 @@ public class Goal {
     this.goalComplete = goalComplete;
   }
 
+  /** Published by Spring Data whenever this goal is saved through a repository */
+  @DomainEvents
+  Collection<Object> domainEvents() {
+    return Collections.singletonList(GoalChangedEvent.saved(this));
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -161,12 +206,14 @@ public class Goal {
     return goalId == goals.goalId
         && usersUserId == goals.usersUserId
         && taskUnitCount == goals.taskUnitCount
+        && taskUnitsDone == goals.taskUnitsDone
         && Objects.equals(title, goals.title)
         && Objects.equals(description, goals.description)
         && Objects.equals(goalInterval, goals.goalInterval)
         && Objects.equals(dueDate, goals.dueDate)
         && Objects.equals(labelColor, goals.labelColor)
         && Objects.equals(pledgeAmount, goals.pledgeAmount)
+        && Objects.equals(parentGoalId, goals.parentGoalId)
         && Objects.equals(goalComplete, goals.goalComplete);
   }
 
@@ -180,9 +227,11 @@ public class Goal {
         goalInterval,
         usersUserId,
         taskUnitCount,
+        taskUnitsDone,
         dueDate,
         labelColor,
         pledgeAmount,
+        parentGoalId,
         goalComplete);
   }
 }
@@ -0,0 +1,190 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.model;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Immutable record of progress made on a {@link Goal}. Events are only ever appended, ordered by
+ * their id, and carry enough to rebuild any per-goal projection without reading the goal table.
+ */
+@Entity
+@Table(name = "goal_event")
+public class GoalEvent {
+
+  // Values stored in event_type
+  public static final String CREATED = "CREATED";
+  public static final String CHECKED_IN = "CHECKED_IN";
+  public static final String COMPLETED = "COMPLETED";
+  public static final String SETTLED = "SETTLED";
+
+  private long eventId;
+  private int usersUserId;
+  private int goalGoalId;
+  private String eventType;
+
+  // UTC Time, due date of the goal cycle the event belongs to
+  private long dueDate;
+
+  // Units checked in, set for CHECKED_IN
+  private Integer units;
+
+  // Pledge forfeited, set for SETTLED
+  private BigDecimal amount;
+
+  // UTC Time
+  private long occurredAt;
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @Column(name = "event_id")
+  public long getEventId() {
+    return eventId;
+  }
+
+  public void setEventId(long eventId) {
+    this.eventId = eventId;
+  }
+
+  @Basic
+  @Column(name = "users_user_id")
+  public int getUsersUserId() {
+    return usersUserId;
+  }
+
+  public void setUsersUserId(int usersUserId) {
+    this.usersUserId = usersUserId;
+  }
+
+  @Basic
+  @Column(name = "goals_goal_id")
+  public int getGoalGoalId() {
+    return goalGoalId;
+  }
+
+  public void setGoalGoalId(int goalGoalId) {
+    this.goalGoalId = goalGoalId;
+  }
+
+  @Basic
+  @Column(name = "event_type")
+  public String getEventType() {
+    return eventType;
+  }
+
+  public void setEventType(String eventType) {
+    this.eventType = eventType;
+  }
+
+  @Basic
+  @Column(name = "due_date")
+  public long getDueDate() {
+    return dueDate;
+  }
+
+  public void setDueDate(long dueDate) {
+    this.dueDate = dueDate;
+  }
+
+  @Basic
+  @Column(name = "units")
+  public Integer getUnits() {
+    return units;
+  }
+
+  public void setUnits(Integer units) {
+    this.units = units;
+  }
+
+  @Basic
+  @Column(name = "amount")
+  public BigDecimal getAmount() {
+    return amount;
+  }
+
+  public void setAmount(BigDecimal amount) {
+    this.amount = amount;
+  }
+
+  @Basic
+  @Column(name = "occurred_at")
+  public long getOccurredAt() {
+    return occurredAt;
+  }
+
+  public void setOccurredAt(long occurredAt) {
+    this.occurredAt = occurredAt;
+  }
+
+  /**
+   * New event for a goal, stamped with the current time
+   *
+   * @param eventType
+   * @param userId
+   * @param goalId
+   * @param dueDate UTC Time
+   * @return
+   */
+  public static GoalEvent of(String eventType, int userId, int goalId, long dueDate) {
+    GoalEvent event = new GoalEvent();
+    event.setEventType(eventType);
+    event.setUsersUserId(userId);
+    event.setGoalGoalId(goalId);
+    event.setDueDate(dueDate);
+    event.setOccurredAt(System.currentTimeMillis() / 1000);
+    return event;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    GoalEvent that = (GoalEvent) o;
+    return eventId == that.eventId
+        && usersUserId == that.usersUserId
+        && goalGoalId == that.goalGoalId
+        && dueDate == that.dueDate
+        && occurredAt == that.occurredAt
+        && Objects.equals(eventType, that.eventType)
+        && Objects.equals(units, that.units)
+        && Objects.equals(amount, that.amount);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(
+        eventId, usersUserId, goalGoalId, eventType, dueDate, units, amount, occurredAt);
+  }
+}
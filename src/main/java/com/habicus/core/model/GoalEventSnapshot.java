@@ -0,0 +1,106 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.model;
+
+import java.util.Objects;
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Serialized progress of a user as of a {@link GoalEvent}, so reading it only replays the events
+ * appended after {@code lastEventId}
+ */
+@Entity
+@Table(name = "goal_event_snapshot")
+public class GoalEventSnapshot {
+
+  private int usersUserId;
+  private long lastEventId;
+  private String state;
+
+  // UTC Time
+  private long createdAt;
+
+  @Id
+  @Column(name = "users_user_id")
+  public int getUsersUserId() {
+    return usersUserId;
+  }
+
+  public void setUsersUserId(int usersUserId) {
+    this.usersUserId = usersUserId;
+  }
+
+  @Basic
+  @Column(name = "last_event_id")
+  public long getLastEventId() {
+    return lastEventId;
+  }
+
+  public void setLastEventId(long lastEventId) {
+    this.lastEventId = lastEventId;
+  }
+
+  @Basic
+  @Column(name = "state")
+  public String getState() {
+    return state;
+  }
+
+  public void setState(String state) {
+    this.state = state;
+  }
+
+  @Basic
+  @Column(name = "created_at")
+  public long getCreatedAt() {
+    return createdAt;
+  }
+
+  public void setCreatedAt(long createdAt) {
+    this.createdAt = createdAt;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    GoalEventSnapshot that = (GoalEventSnapshot) o;
+    return usersUserId == that.usersUserId
+        && lastEventId == that.lastEventId
+        && createdAt == that.createdAt
+        && Objects.equals(state, that.state);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(usersUserId, lastEventId, state, createdAt);
+  }
+}
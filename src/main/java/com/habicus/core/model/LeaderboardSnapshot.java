@@ -0,0 +1,107 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+/** Goals counted on the leaderboards of one period, so a restart does not rebuild them first */
+@Entity
+@Table(name = "leaderboard_snapshot")
+public class LeaderboardSnapshot {
+
+  // UTC Time
+  private long periodStart;
+
+  private int goals;
+  private byte[] state;
+
+  // UTC Time
+  private long createdAt;
+
+  @Id
+  @Column(name = "period_start")
+  public long getPeriodStart() {
+    return periodStart;
+  }
+
+  public void setPeriodStart(long periodStart) {
+    this.periodStart = periodStart;
+  }
+
+  @Basic
+  @Column(name = "goals")
+  public int getGoals() {
+    return goals;
+  }
+
+  public void setGoals(int goals) {
+    this.goals = goals;
+  }
+
+  @Lob
+  @Column(name = "state")
+  public byte[] getState() {
+    return state;
+  }
+
+  public void setState(byte[] state) {
+    this.state = state;
+  }
+
+  @Basic
+  @Column(name = "created_at")
+  public long getCreatedAt() {
+    return createdAt;
+  }
+
+  public void setCreatedAt(long createdAt) {
+    this.createdAt = createdAt;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    LeaderboardSnapshot that = (LeaderboardSnapshot) o;
+    return periodStart == that.periodStart
+        && goals == that.goals
+        && createdAt == that.createdAt
+        && Arrays.equals(state, that.state);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(periodStart, goals, Arrays.hashCode(state), createdAt);
+  }
+}
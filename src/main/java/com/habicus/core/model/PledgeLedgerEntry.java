@@ -0,0 +1,153 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.model;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Pledge a user owes for missing a {@link Goal}. There is at most one entry per goal and cycle, the
+ * cycle being identified by the due date that was missed. Occurrences of a recurring goal are
+ * recorded against the series template, whether or not the occurrence was ever stored.
+ */
+@Entity
+@Table(name = "pledge_ledger")
+public class PledgeLedgerEntry {
+
+  private long ledgerId;
+  private int goalGoalId;
+  private int usersUserId;
+
+  // UTC Time
+  private long cycleDueDate;
+
+  private BigDecimal amount;
+
+  // UTC Time
+  private long settledAt;
+
+  // Random token of the settlement chunk that wrote the entry
+  private long settlementRun;
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @Column(name = "ledger_id")
+  public long getLedgerId() {
+    return ledgerId;
+  }
+
+  public void setLedgerId(long ledgerId) {
+    this.ledgerId = ledgerId;
+  }
+
+  @Basic
+  @Column(name = "goals_goal_id")
+  public int getGoalGoalId() {
+    return goalGoalId;
+  }
+
+  public void setGoalGoalId(int goalGoalId) {
+    this.goalGoalId = goalGoalId;
+  }
+
+  @Basic
+  @Column(name = "users_user_id")
+  public int getUsersUserId() {
+    return usersUserId;
+  }
+
+  public void setUsersUserId(int usersUserId) {
+    this.usersUserId = usersUserId;
+  }
+
+  @Basic
+  @Column(name = "cycle_due_date")
+  public long getCycleDueDate() {
+    return cycleDueDate;
+  }
+
+  public void setCycleDueDate(long cycleDueDate) {
+    this.cycleDueDate = cycleDueDate;
+  }
+
+  @Basic
+  @Column(name = "amount")
+  public BigDecimal getAmount() {
+    return amount;
+  }
+
+  public void setAmount(BigDecimal amount) {
+    this.amount = amount;
+  }
+
+  @Basic
+  @Column(name = "settled_at")
+  public long getSettledAt() {
+    return settledAt;
+  }
+
+  public void setSettledAt(long settledAt) {
+    this.settledAt = settledAt;
+  }
+
+  @Basic
+  @Column(name = "settlement_run")
+  public long getSettlementRun() {
+    return settlementRun;
+  }
+
+  public void setSettlementRun(long settlementRun) {
+    this.settlementRun = settlementRun;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    PledgeLedgerEntry that = (PledgeLedgerEntry) o;
+    return ledgerId == that.ledgerId
+        && goalGoalId == that.goalGoalId
+        && usersUserId == that.usersUserId
+        && cycleDueDate == that.cycleDueDate
+        && settledAt == that.settledAt
+        && settlementRun == that.settlementRun
+        && Objects.equals(amount, that.amount);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(
+        ledgerId, goalGoalId, usersUserId, cycleDueDate, amount, settledAt, settlementRun);
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.model;
+
+import java.util.Objects;
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Long lived token that can be traded for a new access token without re-running the password
+ * check. Only a SHA-256 digest of the token is stored, the raw value is handed to the client once.
+ */
+@Entity
+@Table(name = "refresh_token")
+public class RefreshToken implements Persistable<String> {
+
+  private String tokenHash;
+  private int usersUserId;
+  private String username;
+
+  // UTC Time (millis)
+  private long expiresAt;
+
+  // Tokens are only ever inserted, this lets save() skip the merge lookup on the assigned key
+  private boolean newToken = true;
+
+  @Id
+  @Column(name = "token_hash")
+  public String getTokenHash() {
+    return tokenHash;
+  }
+
+  public void setTokenHash(String tokenHash) {
+    this.tokenHash = tokenHash;
+  }
+
+  @Basic
+  @Column(name = "users_user_id")
+  public int getUsersUserId() {
+    return usersUserId;
+  }
+
+  public void setUsersUserId(int usersUserId) {
+    this.usersUserId = usersUserId;
+  }
+
+  @Basic
+  @Column(name = "username")
+  public String getUsername() {
+    return username;
+  }
+
+  public void setUsername(String username) {
+    this.username = username;
+  }
+
+  @Basic
+  @Column(name = "expires_at")
+  public long getExpiresAt() {
+    return expiresAt;
+  }
+
+  public void setExpiresAt(long expiresAt) {
+    this.expiresAt = expiresAt;
+  }
+
+  @Override
+  @Transient
+  public String getId() {
+    return tokenHash;
+  }
+
+  @Override
+  @Transient
+  public boolean isNew() {
+    return newToken;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+    this.newToken = false;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    RefreshToken that = (RefreshToken) o;
+    return usersUserId == that.usersUserId
+        && expiresAt == that.expiresAt
+        && Objects.equals(tokenHash, that.tokenHash)
+        && Objects.equals(username, that.username);
+  }
+
+  @Override
+  public int hashCode() {
+
+    return Objects.hash(tokenHash, usersUserId, username, expiresAt);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.perf;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Makes the perf profile's in-memory database answer like a slow remote one: with {@code
+ * habicus.perf.db-latency-ms} above 0 every statement execution, a JDBC batch counting as one,
+ * sleeps that long before it runs. The calling thread holds its pooled connection meanwhile, as it
+ * would waiting on MySQL.
+ */
+@Component
+@Profile("perf")
+public class DatabaseLatencyInjector implements BeanPostProcessor {
+
+  private final long latencyMillis;
+
+  public DatabaseLatencyInjector(@Value("${habicus.perf.db-latency-ms:0}") long latencyMillis) {
+    this.latencyMillis = latencyMillis;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (latencyMillis <= 0 || !(bean instanceof DataSource)) {
+      return bean;
+    }
+    return Proxy.newProxyInstance(
+        bean.getClass().getClassLoader(),
+        ClassUtils.getAllInterfaces(bean),
+        new Delaying(bean));
+  }
+
+  private final class Delaying implements InvocationHandler {
+    private final Object target;
+
+    private Delaying(Object target) {
+      this.target = target;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (method.getName().startsWith("execute")) {
+        TimeUnit.MILLISECONDS.sleep(latencyMillis);
+      }
+      Object result;
+      try {
+        result = method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+      // Connections and statements are wrapped as the interface the caller asked for
+      Class<?> type = method.getReturnType();
+      if (result != null
+          && type.isInterface()
+          && (Connection.class.isAssignableFrom(type) || Statement.class.isAssignableFrom(type))) {
+        return Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] {type}, new Delaying(result));
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.perf;
+
+import com.habicus.core.model.Goal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills the perf profile's in-memory database with {@code habicus.perf.users} users named {@code
+ * perfUser1..N}, each with {@code habicus.perf.goals-per-user} goals shaped like the rows in
+ * data.sql. Runs before the application reports ready, so services loading state on startup see
+ * the data. The same seed produces the same data.
+ */
+@Component
+@Profile("perf")
+public class PerfDataGenerator implements ApplicationRunner {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PerfDataGenerator.class);
+
+  public static final String USERNAME_PREFIX = "perfUser";
+
+  private static final int BATCH_SIZE = 1000;
+
+  private static final String INSERT_USER_SQL =
+      "INSERT INTO user (user_id, dob, email, gender, password, username)"
+          + " VALUES (?, ?, ?, ?, ?, ?)";
+
+  private static final int[] INSERT_USER_TYPES = {
+    Types.INTEGER, Types.TIMESTAMP, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR
+  };
+
+  private static final String INSERT_GOAL_SQL =
+      "INSERT INTO goal (users_user_id, goal_id, due_date, description, goal_complete,"
+          + " goal_interval, label_color, pledge_amount, task_unit_count, task_units_done, title)"
+          + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private static final int[] INSERT_GOAL_TYPES = {
+    Types.INTEGER,
+    Types.INTEGER,
+    Types.BIGINT,
+    Types.VARCHAR,
+    Types.VARCHAR,
+    Types.VARCHAR,
+    Types.VARCHAR,
+    Types.DOUBLE,
+    Types.INTEGER,
+    Types.INTEGER,
+    Types.VARCHAR
+  };
+
+  private static final String[] TITLES = {
+    "Running", "Reading Books", "Kayaking", "Meditation", "Guitar practice", "Meal prep", "Swimming"
+  };
+  private static final String[] COLORS = {"green", "purple", "yellow", "blue", "red"};
+  private static final String[] INTERVALS = {"daily", "weekly", "monthly"};
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Value("${habicus.perf.users:1000}")
+  private int users;
+
+  @Value("${habicus.perf.goals-per-user:20}")
+  private int goalsPerUser;
+
+  @Value("${habicus.perf.recurring-fraction:0.2}")
+  private double recurringFraction;
+
+  @Value("${habicus.perf.completed-fraction:0.3}")
+  private double completedFraction;
+
+  @Value("${habicus.perf.password:perf-password}")
+  private String password;
+
+  @Value("${habicus.perf.seed:42}")
+  private long seed;
+
+  @Override
+  public void run(ApplicationArguments args) {
+    long started = System.currentTimeMillis();
+    Random random = new Random(seed);
+    // Hashed once, at the cost of the stored hashes so logins cost what they do in production
+    String passwordHash = new BCryptPasswordEncoder().encode(password);
+    Timestamp dob = Timestamp.valueOf("2013-07-17 17:18:55");
+
+    List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+    for (int userId = 1; userId <= users; userId++) {
+      rows.add(
+          new Object[] {
+            userId,
+            dob,
+            USERNAME_PREFIX + userId + "@perf.habicus.com",
+            userId % 2 == 0 ? "female" : "male",
+            passwordHash,
+            USERNAME_PREFIX + userId
+          });
+      if (rows.size() == BATCH_SIZE) {
+        flush(INSERT_USER_SQL, rows, INSERT_USER_TYPES);
+      }
+    }
+    flush(INSERT_USER_SQL, rows, INSERT_USER_TYPES);
+
+    long now = System.currentTimeMillis() / 1000;
+    int goalId = 0;
+    for (int userId = 1; userId <= users; userId++) {
+      for (int i = 0; i < goalsPerUser; i++) {
+        goalId++;
+        int taskUnitCount = 1 + random.nextInt(5);
+        boolean complete = random.nextDouble() < completedFraction;
+        rows.add(
+            new Object[] {
+              userId,
+              goalId,
+              // Due between a week ago and a month ahead
+              now - 7 * 86_400L + random.nextInt(37 * 86_400),
+              "Synthetic goal " + goalId + " of " + USERNAME_PREFIX + userId,
+              complete ? Goal.GOAL_COMPLETE : Goal.GOAL_INCOMPLETE,
+              random.nextDouble() < recurringFraction
+                  ? INTERVALS[random.nextInt(INTERVALS.length)]
+                  : null,
+              COLORS[random.nextInt(COLORS.length)],
+              (double) (1 + random.nextInt(20)),
+              taskUnitCount,
+              complete ? taskUnitCount : random.nextInt(taskUnitCount),
+              TITLES[random.nextInt(TITLES.length)]
+            });
+        if (rows.size() == BATCH_SIZE) {
+          flush(INSERT_GOAL_SQL, rows, INSERT_GOAL_TYPES);
+        }
+      }
+    }
+    flush(INSERT_GOAL_SQL, rows, INSERT_GOAL_TYPES);
+    jdbcTemplate.update("UPDATE goal_id_sequence SET next_id = ?", goalId + 1);
+
+    LOGGER.info(
+        "Generated {} perf users and {} goals in {}ms",
+        users,
+        goalId,
+        System.currentTimeMillis() - started);
+  }
+
+  private void flush(String sql, List<Object[]> rows, int[] types) {
+    if (!rows.isEmpty()) {
+      jdbcTemplate.batchUpdate(sql, rows, types);
+      rows.clear();
+    }
+  }
+}
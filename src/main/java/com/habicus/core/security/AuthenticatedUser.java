@@ -0,0 +1,80 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.security;
+
+import java.io.Serializable;
+import java.security.Principal;
+import java.util.Objects;
+
+/**
+ * Principal built from a verified JWT. Carries the numeric {@link com.habicus.core.model.User}
+ * id from the signed {@link SecurityConstants#USER_ID_CLAIM} so request handlers do not need to
+ * look the user up by name on every call.
+ */
+public class AuthenticatedUser implements Principal, Serializable {
+
+  private final String username;
+
+  // Null for tokens issued before the uid claim was introduced
+  private final Integer userId;
+
+  public AuthenticatedUser(String username, Integer userId) {
+    this.username = username;
+    this.userId = userId;
+  }
+
+  @Override
+  public String getName() {
+    return username;
+  }
+
+  public Integer getUserId() {
+    return userId;
+  }
+
+  public boolean hasUserId() {
+    return userId != null;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    AuthenticatedUser that = (AuthenticatedUser) o;
+    return Objects.equals(username, that.username) && Objects.equals(userId, that.userId);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(username, userId);
+  }
+
+  @Override
+  public String toString() {
+    return username;
+  }
+}
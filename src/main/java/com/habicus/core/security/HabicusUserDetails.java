@@ -0,0 +1,50 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.security;
+
+import java.util.Collection;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+/**
+ * {@link org.springframework.security.core.userdetails.UserDetails} returned at login time that
+ * also exposes the {@link com.habicus.core.model.User#getUserId()} so it can be signed into the
+ * issued token.
+ */
+public class HabicusUserDetails extends User {
+
+  private final int userId;
+
+  public HabicusUserDetails(
+      int userId,
+      String username,
+      String password,
+      Collection<? extends GrantedAuthority> authorities) {
+    super(username, password, authorities);
+    this.userId = userId;
+  }
+
+  public int getUserId() {
+    return userId;
+  }
+}
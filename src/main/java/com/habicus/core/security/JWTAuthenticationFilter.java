@@ -22,23 +22,26 @@
  */
 package com.habicus.core.security;
 
-import static com.habicus.core.security.SecurityConstants.EXPIRATION_TIME;
-import static com.habicus.core.security.SecurityConstants.HEADER_STRING;
-import static com.habicus.core.security.SecurityConstants.SECRET;
-import static com.habicus.core.security.SecurityConstants.TOKEN_PREFIX;
-
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.habicus.core.instrumentation.HotPathRecorder;
+import com.habicus.core.instrumentation.HotPathStage;
 import com.habicus.core.model.User;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import java.io.IOException;
-import java.util.Date;
-import java.util.logging.Logger;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
@@ -46,39 +49,90 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 
 public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilter {
   private AuthenticationManager authenticationManager;
-  private static final Logger LOGGER = Logger.getLogger(JWTAuthenticationFilter.class.getName());
+  private JWTTokenIssuer tokenIssuer;
+  private LoginExecutor loginExecutor;
+  private HotPathRecorder hotPathRecorder;
+  private static final Logger LOGGER = LoggerFactory.getLogger(JWTAuthenticationFilter.class);
 
-  JWTAuthenticationFilter(AuthenticationManager authenticationManager) {
+  JWTAuthenticationFilter(
+      AuthenticationManager authenticationManager,
+      JWTTokenIssuer tokenIssuer,
+      LoginExecutor loginExecutor,
+      HotPathRecorder hotPathRecorder) {
     this.authenticationManager = authenticationManager;
+    this.tokenIssuer = tokenIssuer;
+    this.loginExecutor = loginExecutor;
+    this.hotPathRecorder = hotPathRecorder;
   }
 
+  /**
+   * Password verification runs on the {@link LoginExecutor}. When it cannot take more work the
+   * login is answered right away with a 503 and a Retry-After hint instead of waiting in line.
+   * The whole attempt, queueing included, is timed as the login stage.
+   */
   @Override
   public Authentication attemptAuthentication(HttpServletRequest req, HttpServletResponse res)
       throws AuthenticationException {
+    long started = hotPathRecorder.start();
     try {
-      User user = new ObjectMapper().readValue(req.getInputStream(), User.class);
+      return authenticate(req, res);
+    } finally {
+      hotPathRecorder.stop(HotPathStage.LOGIN, started);
+    }
+  }
 
-      return authenticationManager.authenticate(
-          new UsernamePasswordAuthenticationToken(user.getUsername(), user.getPassword(), null));
+  private Authentication authenticate(HttpServletRequest req, HttpServletResponse res) {
+    UsernamePasswordAuthenticationToken credentials;
+    try {
+      User user = new ObjectMapper().readValue(req.getInputStream(), User.class);
+      credentials =
+          new UsernamePasswordAuthenticationToken(user.getUsername(), user.getPassword(), null);
     } catch (IOException e) {
-      LOGGER.warning("Problem attempting authentication for request.");
+      LOGGER.warn("Problem attempting authentication for request", e);
       throw new RuntimeException(e);
     }
+
+    Future<Authentication> result;
+    try {
+      result = loginExecutor.submit(() -> authenticationManager.authenticate(credentials));
+    } catch (RejectedExecutionException e) {
+      LOGGER.warn("Login verification queue is full, shedding request");
+      return shed(res);
+    }
+
+    try {
+      return result.get(loginExecutor.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      result.cancel(true);
+      loginExecutor.recordTimeout();
+      LOGGER.warn("Login verification timed out, shedding request");
+      return shed(res);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof AuthenticationException) {
+        throw (AuthenticationException) e.getCause();
+      }
+      throw new AuthenticationServiceException("Problem verifying credentials", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AuthenticationServiceException("Interrupted while verifying credentials", e);
+    }
+  }
+
+  /**
+   * Answers the login with 503, returning null tells the parent filter the response is complete
+   */
+  private Authentication shed(HttpServletResponse res) {
+    res.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+    res.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(loginExecutor.getRetryAfterSeconds()));
+    return null;
   }
 
   @Override
   protected void successfulAuthentication(
       HttpServletRequest req, HttpServletResponse res, FilterChain chain, Authentication auth)
       throws IOException, ServletException {
-    LOGGER.info("Successful authentication, generating token");
-    String token =
-        Jwts.builder()
-            .setSubject(
-                ((org.springframework.security.core.userdetails.User) auth.getPrincipal())
-                    .getUsername())
-            .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-            .signWith(SignatureAlgorithm.HS512, SECRET.getBytes())
-            .compact();
-    res.addHeader(HEADER_STRING, TOKEN_PREFIX + token);
+    LOGGER.debug("Successful authentication, generating token");
+    HabicusUserDetails principal = (HabicusUserDetails) auth.getPrincipal();
+    tokenIssuer.issueTokens(res, principal.getUsername(), principal.getUserId());
   }
 }
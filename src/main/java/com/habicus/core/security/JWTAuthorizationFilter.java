@@ -23,16 +23,20 @@
 package com.habicus.core.security;
 
 import static com.habicus.core.security.SecurityConstants.HEADER_STRING;
-import static com.habicus.core.security.SecurityConstants.SECRET;
 import static com.habicus.core.security.SecurityConstants.TOKEN_PREFIX;
 
-import io.jsonwebtoken.Jwts;
+import com.habicus.core.configuration.LoggingConfiguration.RequestIdFilter;
+import com.habicus.core.instrumentation.HotPathRecorder;
+import com.habicus.core.instrumentation.HotPathStage;
+import io.jsonwebtoken.JwtException;
 import java.io.IOException;
-import java.util.logging.Logger;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -40,10 +44,18 @@ import org.springframework.security.web.authentication.www.BasicAuthenticationFi
 
 public class JWTAuthorizationFilter extends BasicAuthenticationFilter {
 
-  private static final Logger LOGGER = Logger.getLogger(JWTAuthorizationFilter.class.getName());
+  private static final Logger LOGGER = LoggerFactory.getLogger(JWTAuthorizationFilter.class);
 
-  public JWTAuthorizationFilter(AuthenticationManager authManager) {
+  private final JWTTokenVerifier tokenVerifier;
+  private final HotPathRecorder hotPathRecorder;
+
+  public JWTAuthorizationFilter(
+      AuthenticationManager authManager,
+      JWTTokenVerifier tokenVerifier,
+      HotPathRecorder hotPathRecorder) {
     super(authManager);
+    this.tokenVerifier = tokenVerifier;
+    this.hotPathRecorder = hotPathRecorder;
   }
 
   @Override
@@ -54,7 +66,7 @@ public class JWTAuthorizationFilter extends BasicAuthenticationFilter {
 
     if (header == null || !header.startsWith(TOKEN_PREFIX)) {
       chain.doFilter(req, res);
-      LOGGER.warning("No authorization token present");
+      LOGGER.debug("No authorization token present");
       return;
     }
 
@@ -66,19 +78,27 @@ public class JWTAuthorizationFilter extends BasicAuthenticationFilter {
   private UsernamePasswordAuthenticationToken getAuthentication(HttpServletRequest request) {
     String token = request.getHeader(HEADER_STRING);
     if (token != null) {
-      LOGGER.info("Checking auth token");
-      String user =
-          Jwts.parser()
-              .setSigningKey(SECRET.getBytes())
-              .parseClaimsJws(token.replace(TOKEN_PREFIX, ""))
-              .getBody()
-              .getSubject();
+      LOGGER.debug("Checking auth token");
+      AuthenticatedUser user;
+      try {
+        user =
+            hotPathRecorder.time(
+                HotPathStage.JWT_VERIFY,
+                () -> tokenVerifier.verify(token.replace(TOKEN_PREFIX, "")));
+      } catch (JwtException e) {
+        // Expired or tampered, the request goes on unauthenticated and gets a 401
+        LOGGER.debug("Rejected auth token: {}", e.getMessage());
+        return null;
+      }
 
       if (user != null) {
+        if (user.hasUserId()) {
+          MDC.put(RequestIdFilter.MDC_USER_ID, user.getUserId().toString());
+        }
         return new UsernamePasswordAuthenticationToken(user, null, null);
       }
     }
-    LOGGER.warning("Did not find user");
+    LOGGER.debug("Did not find user");
     return null;
   }
 }
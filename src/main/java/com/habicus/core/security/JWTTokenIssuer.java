@@ -0,0 +1,109 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.security;
+
+import static com.habicus.core.security.SecurityConstants.EXPIRATION_TIME;
+import static com.habicus.core.security.SecurityConstants.HEADER_STRING;
+import static com.habicus.core.security.SecurityConstants.REFRESH_HEADER_STRING;
+import static com.habicus.core.security.SecurityConstants.SECRET_KEY;
+import static com.habicus.core.security.SecurityConstants.TOKEN_PREFIX;
+import static com.habicus.core.security.SecurityConstants.USER_ID_CLAIM;
+
+import com.habicus.core.service.User.IssuedRefreshToken;
+import com.habicus.core.service.User.RefreshTokenService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import java.util.Date;
+import java.util.Optional;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Issues the short lived access token together with a rotating refresh token. Used both after a
+ * password login and when a client trades in a refresh token.
+ */
+@Component
+public class JWTTokenIssuer {
+
+  private RefreshTokenService refreshTokenService;
+
+  @Autowired
+  public JWTTokenIssuer(RefreshTokenService refreshTokenService) {
+    this.refreshTokenService = refreshTokenService;
+  }
+
+  /**
+   * Builds a signed access token for the given user
+   *
+   * @param username
+   * @param userId
+   * @return
+   */
+  public String createAccessToken(String username, int userId) {
+    return Jwts.builder()
+        .setSubject(username)
+        .claim(USER_ID_CLAIM, userId)
+        .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
+        .signWith(SignatureAlgorithm.HS512, SECRET_KEY)
+        .compact();
+  }
+
+  /**
+   * Writes a new access token and refresh token pair to the response headers
+   *
+   * @param res
+   * @param username
+   * @param userId
+   */
+  public void issueTokens(HttpServletResponse res, String username, int userId) {
+    IssuedRefreshToken refreshToken = refreshTokenService.issue(userId, username);
+    writeTokens(res, createAccessToken(username, userId), refreshToken);
+  }
+
+  /**
+   * Trades the refresh token presented on the request for a new token pair, the presented refresh
+   * token is invalidated
+   *
+   * @param req
+   * @param res
+   * @return false when the refresh token is missing, unknown, already used or expired
+   */
+  public boolean refreshTokens(HttpServletRequest req, HttpServletResponse res) {
+    Optional<IssuedRefreshToken> rotated =
+        refreshTokenService.rotate(req.getHeader(REFRESH_HEADER_STRING));
+    if (!rotated.isPresent()) {
+      return false;
+    }
+    IssuedRefreshToken issued = rotated.get();
+    writeTokens(res, createAccessToken(issued.getUsername(), issued.getUserId()), issued);
+    return true;
+  }
+
+  private void writeTokens(
+      HttpServletResponse res, String accessToken, IssuedRefreshToken refreshToken) {
+    res.addHeader(HEADER_STRING, TOKEN_PREFIX + accessToken);
+    res.addHeader(REFRESH_HEADER_STRING, refreshToken.getToken());
+  }
+}
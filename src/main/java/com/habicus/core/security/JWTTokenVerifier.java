@@ -0,0 +1,124 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.security;
+
+import static com.habicus.core.security.SecurityConstants.SECRET_KEY;
+import static com.habicus.core.security.SecurityConstants.USER_ID_CLAIM;
+
+import com.habicus.core.security.VerifiedTokenCache.VerifiedToken;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Verifies bearer tokens issued by {@link JWTAuthenticationFilter}. The signing key and parser are
+ * built once, and tokens that already passed verification are served from a {@link
+ * VerifiedTokenCache} so repeated requests with the same token skip the HS512 check.
+ */
+@Component
+public class JWTTokenVerifier implements MeterBinder {
+
+  private final JwtParser parser = Jwts.parser().setSigningKey(SECRET_KEY);
+
+  private final VerifiedTokenCache cache;
+
+  public JWTTokenVerifier(@Value("${habicus.security.token-cache.max-size:10000}") int maxSize) {
+    this.cache = new VerifiedTokenCache(maxSize);
+  }
+
+  /**
+   * Verifies the raw token (without the {@link SecurityConstants#TOKEN_PREFIX}) and returns the
+   * principal it was issued for, or null when the token has no subject
+   *
+   * @param rawToken
+   * @return
+   * @throws io.jsonwebtoken.JwtException when the token is malformed, expired or badly signed
+   */
+  public AuthenticatedUser verify(String rawToken) {
+    VerifiedToken verified = verifyToken(rawToken);
+    return verified == null ? null : verified.getPrincipal();
+  }
+
+  /**
+   * Same as {@link #verify(String)} but also returns the claims, for callers that outlive the
+   * request and need to know when the token expires
+   *
+   * @param rawToken
+   * @return
+   * @throws io.jsonwebtoken.JwtException when the token is malformed, expired or badly signed
+   */
+  public VerifiedToken verifyToken(String rawToken) {
+    long now = System.currentTimeMillis();
+    String key = VerifiedTokenCache.keyOf(rawToken);
+
+    VerifiedToken cached = cache.get(key, now);
+    if (cached != null) {
+      return cached;
+    }
+
+    Claims claims = parser.parseClaimsJws(rawToken).getBody();
+    String user = claims.getSubject();
+    if (user == null) {
+      return null;
+    }
+
+    // Tokens issued before the uid claim was added carry no id, callers fall back to a lookup
+    Integer userId = claims.get(USER_ID_CLAIM, Integer.class);
+    VerifiedToken verified = new VerifiedToken(new AuthenticatedUser(user, userId), claims);
+    cache.put(key, verified, now);
+    return verified;
+  }
+
+  /** Expired tokens are also dropped lazily on access, this keeps idle entries from piling up */
+  @Scheduled(fixedDelayString = "${habicus.security.token-cache.sweep-interval-ms:60000}")
+  public void evictExpiredTokens() {
+    cache.evictExpired(System.currentTimeMillis());
+  }
+
+  VerifiedTokenCache getCache() {
+    return cache;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("habicus.security.token.cache.hits", cache, VerifiedTokenCache::getHits)
+        .description("Requests whose token was served without re-verifying the signature")
+        .register(registry);
+    FunctionCounter.builder(
+            "habicus.security.token.cache.misses", cache, VerifiedTokenCache::getMisses)
+        .description("Requests whose token required a full signature verification")
+        .register(registry);
+    FunctionCounter.builder(
+            "habicus.security.token.cache.evictions", cache, VerifiedTokenCache::getEvictions)
+        .register(registry);
+    Gauge.builder("habicus.security.token.cache.size", cache, VerifiedTokenCache::size)
+        .register(registry);
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PreDestroy;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fixed size pool with a bounded queue that runs password verification for {@link
+ * JWTAuthenticationFilter}. BCrypt is deliberately expensive, keeping it off an unbounded set of
+ * servlet threads means a burst of logins can only ever hold {@code threads + queue-capacity}
+ * container threads, leaving the rest free for regular API traffic.
+ */
+@Component
+public class LoginExecutor implements MeterBinder {
+
+  private final ThreadPoolExecutor executor;
+  private final long timeoutMillis;
+  private final int retryAfterSeconds;
+
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder timedOut = new LongAdder();
+
+  public LoginExecutor(
+      @Value("${habicus.security.login.threads:4}") int threads,
+      @Value("${habicus.security.login.queue-capacity:64}") int queueCapacity,
+      @Value("${habicus.security.login.timeout-ms:5000}") long timeoutMillis,
+      @Value("${habicus.security.login.retry-after-seconds:2}") int retryAfterSeconds) {
+    this.timeoutMillis = timeoutMillis;
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            new LoginThreadFactory(),
+            new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  /**
+   * Queues a login for verification
+   *
+   * @param login
+   * @return
+   * @throws RejectedExecutionException when the queue is full and the login should be shed
+   */
+  public <T> Future<T> submit(Callable<T> login) {
+    try {
+      return executor.submit(withLogContext(login));
+    } catch (RejectedExecutionException e) {
+      rejected.increment();
+      throw e;
+    }
+  }
+
+  // Keeps the request id of the submitting thread on the login's log records
+  private static <T> Callable<T> withLogContext(Callable<T> login) {
+    Map<String, String> context = MDC.getCopyOfContextMap();
+    if (context == null) {
+      return login;
+    }
+    return () -> {
+      MDC.setContextMap(context);
+      try {
+        return login.call();
+      } finally {
+        MDC.clear();
+      }
+    };
+  }
+
+  void recordTimeout() {
+    timedOut.increment();
+  }
+
+  public long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  public int getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  public long getTimedOut() {
+    return timedOut.sum();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("habicus.security.login.queue.depth", this, LoginExecutor::getQueueDepth)
+        .description("Logins waiting for a password verification thread")
+        .register(registry);
+    Gauge.builder("habicus.security.login.active", executor, ThreadPoolExecutor::getActiveCount)
+        .register(registry);
+    FunctionCounter.builder("habicus.security.login.rejected", this, LoginExecutor::getRejected)
+        .description("Logins shed with a 503 because the verification queue was full")
+        .register(registry);
+    FunctionCounter.builder("habicus.security.login.timeouts", this, LoginExecutor::getTimedOut)
+        .register(registry);
+  }
+
+  private static class LoginThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "login-verify-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -22,10 +22,18 @@
  */
 package com.habicus.core.security;
 
+import java.nio.charset.StandardCharsets;
+
 class SecurityConstants {
   static final String SECRET = "SecretKeyToGenJWTs";
-  static final long EXPIRATION_TIME = 864_000_000; // 10 days
+  static final byte[] SECRET_KEY = SECRET.getBytes(StandardCharsets.UTF_8);
+  static final long EXPIRATION_TIME = 900_000; // 15 minutes, clients renew through REFRESH_URL
   static final String TOKEN_PREFIX = "Bearer ";
   static final String HEADER_STRING = "Authorization";
+  static final String REFRESH_HEADER_STRING = "Refresh-Token";
   static final String SIGN_UP_URL = "/api/v1/user/registration";
+  static final String REFRESH_URL = "/api/v1/user/token/refresh";
+  // Handshake is open, StompAuthorizationInterceptor checks the token on CONNECT
+  static final String WEBSOCKET_URL = "/api/v1/ws/**";
+  static final String USER_ID_CLAIM = "uid";
 }
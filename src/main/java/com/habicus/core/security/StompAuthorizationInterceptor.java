@@ -0,0 +1,166 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.security;
+
+import static com.habicus.core.security.SecurityConstants.HEADER_STRING;
+import static com.habicus.core.security.SecurityConstants.TOKEN_PREFIX;
+
+import com.habicus.core.security.VerifiedTokenCache.VerifiedToken;
+import io.jsonwebtoken.JwtException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+/**
+ * Authenticates STOMP sessions with the same JWT {@link JWTAuthorizationFilter} accepts on HTTP
+ * requests. Browsers cannot set headers on the WebSocket handshake, so the token is read from the
+ * {@code Authorization} header of the CONNECT frame instead. Sessions may only subscribe to their
+ * own user destinations and cannot send messages.
+ *
+ * <p>A session lives no longer than the token it connected with. Once the token expires, frames
+ * from the client are rejected and the next message pushed to it is replaced with an ERROR frame,
+ * which closes the session. Clients reconnect with a renewed token.
+ */
+@Component
+public class StompAuthorizationInterceptor implements ChannelInterceptor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StompAuthorizationInterceptor.class);
+
+  static final String USER_QUEUE_PREFIX = "/user/queue/";
+
+  private final JWTTokenVerifier tokenVerifier;
+
+  // Token expiry of every connected session, by STOMP session id
+  private final Map<String, Long> sessionExpiry = new ConcurrentHashMap<>();
+
+  private final ChannelInterceptor outboundInterceptor = new OutboundInterceptor();
+
+  public StompAuthorizationInterceptor(JWTTokenVerifier tokenVerifier) {
+    this.tokenVerifier = tokenVerifier;
+  }
+
+  @Override
+  public Message<?> preSend(Message<?> message, MessageChannel channel) {
+    StompHeaderAccessor accessor =
+        MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+    if (accessor == null || accessor.getCommand() == null) {
+      return message;
+    }
+    switch (accessor.getCommand()) {
+      case CONNECT:
+        accessor.setUser(authenticate(accessor));
+        break;
+      case DISCONNECT:
+        sessionExpiry.remove(accessor.getSessionId());
+        break;
+      case SUBSCRIBE:
+        checkNotExpired(accessor.getSessionId());
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(USER_QUEUE_PREFIX)) {
+          throw new MessageDeliveryException("Cannot subscribe to " + destination);
+        }
+        break;
+      case SEND:
+        throw new MessageDeliveryException("Sessions are receive only");
+      default:
+        checkNotExpired(accessor.getSessionId());
+        break;
+    }
+    return message;
+  }
+
+  /**
+   * Interceptor for the client outbound channel, closing sessions whose token expired while they
+   * were only receiving
+   *
+   * @return
+   */
+  public ChannelInterceptor getOutboundInterceptor() {
+    return outboundInterceptor;
+  }
+
+  boolean isExpired(String sessionId, long nowMillis) {
+    Long expiresAt = sessionId == null ? null : sessionExpiry.get(sessionId);
+    return expiresAt != null && expiresAt <= nowMillis;
+  }
+
+  private void checkNotExpired(String sessionId) {
+    if (isExpired(sessionId, System.currentTimeMillis())) {
+      throw new MessageDeliveryException("Authorization token expired");
+    }
+  }
+
+  private UsernamePasswordAuthenticationToken authenticate(StompHeaderAccessor accessor) {
+    String header = accessor.getFirstNativeHeader(HEADER_STRING);
+    if (header == null || !header.startsWith(TOKEN_PREFIX)) {
+      LOGGER.warn("No authorization token present on STOMP connect");
+      throw new MessageDeliveryException("Missing authorization token");
+    }
+    VerifiedToken token;
+    try {
+      token = tokenVerifier.verifyToken(header.substring(TOKEN_PREFIX.length()));
+    } catch (JwtException e) {
+      throw new MessageDeliveryException("Invalid authorization token");
+    }
+    if (token == null) {
+      throw new MessageDeliveryException("Invalid authorization token");
+    }
+    if (token.getExpiresAtMillis() != null && accessor.getSessionId() != null) {
+      sessionExpiry.put(accessor.getSessionId(), token.getExpiresAtMillis());
+    }
+    return new UsernamePasswordAuthenticationToken(token.getPrincipal(), null, null);
+  }
+
+  private class OutboundInterceptor implements ChannelInterceptor {
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+      if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders())
+          != SimpMessageType.MESSAGE) {
+        return message;
+      }
+      String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+      if (!isExpired(sessionId, System.currentTimeMillis())) {
+        return message;
+      }
+      LOGGER.debug("Closing STOMP session {}, its authorization token expired", sessionId);
+      StompHeaderAccessor error = StompHeaderAccessor.create(StompCommand.ERROR);
+      error.setMessage("Authorization token expired");
+      error.setSessionId(sessionId);
+      return MessageBuilder.createMessage(new byte[0], error.getMessageHeaders());
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.security;
+
+import io.jsonwebtoken.Claims;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of tokens whose signature has already been verified. Entries are keyed by a
+ * SHA-256 digest of the raw token, so the bearer token itself is never retained, and are dropped
+ * once the token's {@code exp} claim has passed.
+ */
+public class VerifiedTokenCache {
+
+  private static final ThreadLocal<MessageDigest> SHA_256 =
+      ThreadLocal.withInitial(
+          () -> {
+            try {
+              return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+              throw new IllegalStateException("SHA-256 is not available", e);
+            }
+          });
+
+  private final Map<String, VerifiedToken> entries = new ConcurrentHashMap<>();
+  private final int maximumSize;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public VerifiedTokenCache(int maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("Maximum size must not be negative: " + maximumSize);
+    }
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Digest used as the cache key for a raw token
+   *
+   * @param rawToken
+   * @return
+   */
+  public static String keyOf(String rawToken) {
+    MessageDigest digest = SHA_256.get();
+    digest.reset();
+    return Base64.getEncoder()
+        .encodeToString(digest.digest(rawToken.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Returns the previously verified token for the given key, or null if it is unknown or expired
+   *
+   * @param key
+   * @param nowMillis
+   * @return
+   */
+  public VerifiedToken get(String key, long nowMillis) {
+    VerifiedToken token = entries.get(key);
+    if (token == null) {
+      misses.increment();
+      return null;
+    }
+    if (token.isExpired(nowMillis)) {
+      entries.remove(key, token);
+      evictions.increment();
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return token;
+  }
+
+  /**
+   * Stores a verified token. Tokens without an expiration are never cached since there would be no
+   * point at which the entry stops being trusted.
+   *
+   * @param key
+   * @param token
+   * @param nowMillis
+   */
+  public void put(String key, VerifiedToken token, long nowMillis) {
+    if (maximumSize == 0 || token.getExpiresAtMillis() == null || token.isExpired(nowMillis)) {
+      return;
+    }
+    if (entries.size() >= maximumSize) {
+      evictExpired(nowMillis);
+    }
+    // Still full of live tokens, make room by dropping an arbitrary entry
+    Iterator<String> keys = entries.keySet().iterator();
+    while (entries.size() >= maximumSize && keys.hasNext()) {
+      keys.next();
+      keys.remove();
+      evictions.increment();
+    }
+    entries.put(key, token);
+  }
+
+  /**
+   * Drops every entry whose token has expired
+   *
+   * @param nowMillis
+   */
+  public void evictExpired(long nowMillis) {
+    Iterator<VerifiedToken> tokens = entries.values().iterator();
+    while (tokens.hasNext()) {
+      if (tokens.next().isExpired(nowMillis)) {
+        tokens.remove();
+        evictions.increment();
+      }
+    }
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /** Result of a successful signature verification */
+  public static class VerifiedToken {
+    private final AuthenticatedUser principal;
+    private final Claims claims;
+    private final Long expiresAtMillis;
+
+    public VerifiedToken(AuthenticatedUser principal, Claims claims) {
+      this.principal = principal;
+      this.claims = claims;
+      this.expiresAtMillis =
+          claims.getExpiration() == null ? null : claims.getExpiration().getTime();
+    }
+
+    public AuthenticatedUser getPrincipal() {
+      return principal;
+    }
+
+    public Claims getClaims() {
+      return claims;
+    }
+
+    public Long getExpiresAtMillis() {
+      return expiresAtMillis;
+    }
+
+    boolean isExpired(long nowMillis) {
+      return expiresAtMillis != null && expiresAtMillis <= nowMillis;
+    }
+  }
+}
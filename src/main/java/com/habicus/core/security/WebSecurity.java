@@ -22,12 +22,16 @@
  */
 package com.habicus.core.security;
 
+import static com.habicus.core.security.SecurityConstants.REFRESH_URL;
 import static com.habicus.core.security.SecurityConstants.SIGN_UP_URL;
+import static com.habicus.core.security.SecurityConstants.WEBSOCKET_URL;
 
+import com.habicus.core.instrumentation.HotPathRecorder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -35,6 +39,7 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -47,10 +52,27 @@ public class WebSecurity extends WebSecurityConfigurerAdapter {
 
   private BCryptPasswordEncoder bCryptPasswordEncoder;
 
+  private JWTTokenVerifier tokenVerifier;
+
+  private JWTTokenIssuer tokenIssuer;
+
+  private LoginExecutor loginExecutor;
+
+  private HotPathRecorder hotPathRecorder;
+
   public WebSecurity(
-      UserDetailsService userDetailsService, BCryptPasswordEncoder bCryptPasswordEncoder) {
+      UserDetailsService userDetailsService,
+      BCryptPasswordEncoder bCryptPasswordEncoder,
+      JWTTokenVerifier tokenVerifier,
+      JWTTokenIssuer tokenIssuer,
+      LoginExecutor loginExecutor,
+      HotPathRecorder hotPathRecorder) {
     this.userDetailsService = userDetailsService;
     this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+    this.tokenVerifier = tokenVerifier;
+    this.tokenIssuer = tokenIssuer;
+    this.loginExecutor = loginExecutor;
+    this.hotPathRecorder = hotPathRecorder;
   }
 
   @Autowired
@@ -63,6 +85,26 @@ public class WebSecurity extends WebSecurityConfigurerAdapter {
     this.bCryptPasswordEncoder = encoder;
   }
 
+  @Autowired
+  public void setTokenVerifier(JWTTokenVerifier tokenVerifier) {
+    this.tokenVerifier = tokenVerifier;
+  }
+
+  @Autowired
+  public void setTokenIssuer(JWTTokenIssuer tokenIssuer) {
+    this.tokenIssuer = tokenIssuer;
+  }
+
+  @Autowired
+  public void setLoginExecutor(LoginExecutor loginExecutor) {
+    this.loginExecutor = loginExecutor;
+  }
+
+  @Autowired
+  public void setHotPathRecorder(HotPathRecorder hotPathRecorder) {
+    this.hotPathRecorder = hotPathRecorder;
+  }
+
   @Override
   protected void configure(HttpSecurity http) throws Exception {
     http.cors()
@@ -72,16 +114,27 @@ public class WebSecurity extends WebSecurityConfigurerAdapter {
         .authorizeRequests()
         .antMatchers(HttpMethod.POST, SIGN_UP_URL)
         .permitAll()
+        .antMatchers(HttpMethod.POST, REFRESH_URL)
+        .permitAll()
         .antMatchers("/login")
         .permitAll()
+        .antMatchers(HttpMethod.GET, WEBSOCKET_URL)
+        .permitAll()
         .anyRequest()
         .authenticated()
         .and()
-        .addFilter(new JWTAuthenticationFilter(authenticationManager()))
-        .addFilter(new JWTAuthorizationFilter(authenticationManager()))
+        .addFilter(
+            new JWTAuthenticationFilter(
+                authenticationManager(), tokenIssuer, loginExecutor, hotPathRecorder))
+        .addFilter(
+            new JWTAuthorizationFilter(authenticationManager(), tokenVerifier, hotPathRecorder))
         // this disables session creation on Spring Security
         .sessionManagement()
-        .sessionCreationPolicy(SessionCreationPolicy.STATELESS);
+        .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+        .and()
+        // A missing, expired or tampered token answers 401, telling clients to refresh
+        .exceptionHandling()
+        .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED));
   }
 
   @Override
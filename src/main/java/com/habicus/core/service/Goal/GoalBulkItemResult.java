@@ -0,0 +1,77 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+/** Outcome of one goal of a bulk write, in the position it had in the request */
+public class GoalBulkItemResult {
+
+  public enum Status {
+    CREATED,
+    UPDATED,
+    REJECTED
+  }
+
+  private final int index;
+  private final Status status;
+
+  // 0 when rejected
+  private final int goalId;
+
+  // Why the goal was rejected, null otherwise
+  private final String error;
+
+  private GoalBulkItemResult(int index, Status status, int goalId, String error) {
+    this.index = index;
+    this.status = status;
+    this.goalId = goalId;
+    this.error = error;
+  }
+
+  static GoalBulkItemResult created(int index, int goalId) {
+    return new GoalBulkItemResult(index, Status.CREATED, goalId, null);
+  }
+
+  static GoalBulkItemResult updated(int index, int goalId) {
+    return new GoalBulkItemResult(index, Status.UPDATED, goalId, null);
+  }
+
+  static GoalBulkItemResult rejected(int index, String error) {
+    return new GoalBulkItemResult(index, Status.REJECTED, 0, error);
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public int getGoalId() {
+    return goalId;
+  }
+
+  public String getError() {
+    return error;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import java.util.List;
+
+/** Outcome of a bulk goal write */
+public class GoalBulkResult {
+
+  private final List<GoalBulkItemResult> results;
+  private final int created;
+  private final int updated;
+  private final int rejected;
+  private final long elapsedMillis;
+
+  public GoalBulkResult(
+      List<GoalBulkItemResult> results,
+      int created,
+      int updated,
+      int rejected,
+      long elapsedMillis) {
+    this.results = results;
+    this.created = created;
+    this.updated = updated;
+    this.rejected = rejected;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public List<GoalBulkItemResult> getResults() {
+    return results;
+  }
+
+  public int getCreated() {
+    return created;
+  }
+
+  public int getUpdated() {
+    return updated;
+  }
+
+  public int getRejected() {
+    return rejected;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+}
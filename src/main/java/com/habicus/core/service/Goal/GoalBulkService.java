@@ -0,0 +1,247 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import com.habicus.core.dao.repository.GoalRepository;
+import com.habicus.core.event.GoalChangedEvent;
+import com.habicus.core.exception.API.InvalidRequestException;
+import com.habicus.core.model.Goal;
+import com.habicus.core.model.GoalEvent;
+import com.habicus.core.service.progress.ProgressService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Creates and updates many goals of a user in one transaction. New goals get their ids from
+ * {@link GoalIdAllocator} up front, so they are inserted in JDBC batches of {@code
+ * spring.jpa.properties.hibernate.jdbc.batch_size} and updates to existing goals are batched the
+ * same way. The cost of a request grows with its batches rather than with its goals.
+ *
+ * <p>Goals are checked one by one and a rejected goal does not stop the others from being written.
+ * Ids are allocated before the write transaction starts, so a request never holds two pooled
+ * connections at once.
+ */
+@Service
+public class GoalBulkService {
+
+  private static final int MAX_TEXT_LENGTH = 255;
+
+  @Autowired private GoalRepository goalRepository;
+  @Autowired private GoalIdAllocator goalIdAllocator;
+  @Autowired private ProgressService progressService;
+  @Autowired private ApplicationEventPublisher eventPublisher;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Value("${habicus.goals.bulk.max-items:500}")
+  private int maxItems;
+
+  @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+  private int batchSize;
+
+  /**
+   * Writes the goals of a user. Goals without a goal id are created, goals with one update the
+   * user's goal of that id. Progress fields are left to check-ins and the due date of an existing
+   * goal cannot change, it is part of the key.
+   *
+   * @param userId
+   * @param goals
+   * @return one result per goal, in request order
+   */
+  public GoalBulkResult save(int userId, List<Goal> goals) {
+    if (goals == null || goals.isEmpty() || goals.size() > maxItems) {
+      throw new InvalidRequestException(
+          "A bulk request takes between 1 and " + maxItems + " goals", HttpStatus.BAD_REQUEST);
+    }
+    long started = System.currentTimeMillis();
+
+    // Reserved before the write transaction starts, a new block needs a connection of its own
+    List<Integer> toCreate = creatable(goals);
+    int[] ids = toCreate.isEmpty() ? new int[0] : goalIdAllocator.allocate(toCreate.size());
+
+    return new TransactionTemplate(transactionManager)
+        .execute(status -> write(userId, goals, toCreate, ids, started));
+  }
+
+  private GoalBulkResult write(
+      int userId, List<Goal> goals, List<Integer> toCreate, int[] ids, long started) {
+    // Every goal being updated in one query
+    Set<Integer> updateIds = new HashSet<>();
+    for (Goal goal : goals) {
+      if (goal != null && goal.getGoalId() > 0) {
+        updateIds.add(goal.getGoalId());
+      }
+    }
+    Map<Integer, Goal> existing = new HashMap<>();
+    if (!updateIds.isEmpty()) {
+      goalRepository
+          .findByGoalIdIn(updateIds)
+          .forEach(goal -> existing.put(goal.getGoalId(), goal));
+    }
+
+    GoalBulkItemResult[] results = new GoalBulkItemResult[goals.size()];
+    List<Goal> changed = new ArrayList<>(goals.size());
+    int rejected = 0;
+    // toCreate is ascending, so the next index to skip is always at its head
+    int nextCreate = 0;
+    for (int i = 0; i < goals.size(); i++) {
+      if (nextCreate < toCreate.size() && toCreate.get(nextCreate) == i) {
+        nextCreate++;
+        continue;
+      }
+      Goal goal = goals.get(i);
+      String error = validate(goal);
+      if (error == null) {
+        Goal target = existing.get(goal.getGoalId());
+        error = checkUpdate(userId, goal, target);
+        if (error == null) {
+          copyAttributes(goal, target);
+          changed.add(target);
+          results[i] = GoalBulkItemResult.updated(i, target.getGoalId());
+          continue;
+        }
+      }
+      results[i] = GoalBulkItemResult.rejected(i, error);
+      rejected++;
+    }
+    int updated = changed.size();
+
+    List<Goal> created = new ArrayList<>(toCreate.size());
+    List<GoalEvent> createdEvents = new ArrayList<>(toCreate.size());
+    for (int k = 0; k < toCreate.size(); k++) {
+      int index = toCreate.get(k);
+      Goal goal = new Goal();
+      copyAttributes(goals.get(index), goal);
+      goal.setGoalId(ids[k]);
+      goal.setUsersUserId(userId);
+      goal.setDueDate(goals.get(index).getDueDate());
+      goal.setGoalComplete(Goal.GOAL_INCOMPLETE);
+      created.add(goal);
+      createdEvents.add(GoalEvent.of(GoalEvent.CREATED, userId, ids[k], goal.getDueDate()));
+      results[index] = GoalBulkItemResult.created(index, ids[k]);
+    }
+
+    // Also flushes the updates, both go out in batches
+    goalRepository.persistGoals(created, batchSize);
+    progressService.record(createdEvents);
+
+    // Neither write goes through save, Spring Data does not publish these
+    changed.addAll(created);
+    changed.forEach(goal -> eventPublisher.publishEvent(GoalChangedEvent.saved(goal)));
+
+    return new GoalBulkResult(
+        Arrays.asList(results),
+        created.size(),
+        updated,
+        rejected,
+        System.currentTimeMillis() - started);
+  }
+
+  /**
+   * Positions of the goals that will be created: valid goals without a goal id
+   *
+   * @param goals
+   * @return ascending
+   */
+  static List<Integer> creatable(List<Goal> goals) {
+    List<Integer> creatable = new ArrayList<>();
+    for (int i = 0; i < goals.size(); i++) {
+      Goal goal = goals.get(i);
+      if (validate(goal) == null && goal.getGoalId() <= 0) {
+        creatable.add(i);
+      }
+    }
+    return creatable;
+  }
+
+  /**
+   * Why a valid goal with a goal id may not update its stored goal
+   *
+   * @param userId
+   * @param goal the requested state
+   * @param target the stored goal of that id, null when there is none
+   * @return null when the update is allowed
+   */
+  static String checkUpdate(int userId, Goal goal, Goal target) {
+    if (target == null || target.getUsersUserId() != userId) {
+      return "No goal found for id: " + goal.getGoalId();
+    }
+    if (target.getDueDate() != goal.getDueDate()) {
+      return "dueDate of an existing goal cannot change";
+    }
+    return null;
+  }
+
+  static String validate(Goal goal) {
+    if (goal == null) {
+      return "Goal must not be null";
+    }
+    if (goal.getTitle() == null || goal.getTitle().trim().isEmpty()) {
+      return "title is required";
+    }
+    if (goal.getTitle().length() > MAX_TEXT_LENGTH) {
+      return "title is longer than " + MAX_TEXT_LENGTH + " characters";
+    }
+    if (goal.getDescription() != null && goal.getDescription().length() > MAX_TEXT_LENGTH) {
+      return "description is longer than " + MAX_TEXT_LENGTH + " characters";
+    }
+    if (goal.getDueDate() <= 0) {
+      return "dueDate is required";
+    }
+    if (goal.getTaskUnitCount() < 0) {
+      return "taskUnitCount must not be negative";
+    }
+    if (goal.getPledgeAmount() != null && goal.getPledgeAmount() < 0) {
+      return "pledgeAmount must not be negative";
+    }
+    if (goal.getGoalInterval() != null
+        && !RecurrenceService.INTERVAL_VALUES.contains(
+            goal.getGoalInterval().toLowerCase(Locale.ROOT))) {
+      return "Unknown goalInterval: " + goal.getGoalInterval();
+    }
+    return null;
+  }
+
+  // Attributes a client may set, progress and ownership stay with the server
+  private static void copyAttributes(Goal from, Goal to) {
+    to.setTitle(from.getTitle());
+    to.setDescription(from.getDescription());
+    to.setGoalInterval(
+        from.getGoalInterval() == null ? null : from.getGoalInterval().toLowerCase(Locale.ROOT));
+    to.setLabelColor(from.getLabelColor());
+    to.setPledgeAmount(from.getPledgeAmount());
+    to.setTaskUnitCount(from.getTaskUnitCount());
+  }
+}
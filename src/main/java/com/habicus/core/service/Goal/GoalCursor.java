@@ -0,0 +1,80 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last {@link com.habicus.core.model.Goal} returned in a page. Pages are ordered by
+ * {@code (due_date, goal_id)} so the next page starts strictly after this pair, which keeps each
+ * page an index range scan no matter how deep the client has paged.
+ */
+public class GoalCursor {
+
+  private final long dueDate;
+  private final int goalId;
+
+  public GoalCursor(long dueDate, int goalId) {
+    this.dueDate = dueDate;
+    this.goalId = goalId;
+  }
+
+  public long getDueDate() {
+    return dueDate;
+  }
+
+  public int getGoalId() {
+    return goalId;
+  }
+
+  /**
+   * Opaque representation handed to clients
+   *
+   * @return
+   */
+  public String encode() {
+    String raw = dueDate + ":" + goalId;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Parses a cursor previously produced by {@link #encode()}
+   *
+   * @param cursor
+   * @return
+   * @throws IllegalArgumentException when the cursor was not produced by this class
+   */
+  public static GoalCursor decode(String cursor) {
+    String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    int separator = raw.indexOf(':');
+    if (separator < 0) {
+      throw new IllegalArgumentException("Malformed goal cursor");
+    }
+    return new GoalCursor(
+        Long.parseLong(raw.substring(0, separator)),
+        Integer.parseInt(raw.substring(separator + 1)));
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.habicus.core.dao.repository.GoalRepository;
+import com.habicus.core.model.Goal;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Writes {@link Goal} exports as a JSON array directly to an output stream. Rows are read through a
+ * forward only result stream and each goal is detached once written, so memory use does not depend
+ * on how many goals are exported.
+ */
+@Service
+public class GoalExportService {
+
+  @Autowired private GoalRepository goalRepository;
+
+  @PersistenceContext private EntityManager entityManager;
+
+  private ObjectMapper objectMapper;
+
+  private ObjectWriter goalWriter;
+
+  @Autowired
+  public void setObjectMapper(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+    // The servlet stream flushes whenever its buffer fills, a flush per goal only adds syscalls
+    this.goalWriter =
+        objectMapper.writerFor(Goal.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+  }
+
+  /**
+   * Exports every goal belonging to a user
+   *
+   * @param userId
+   * @param out
+   * @return number of goals written
+   * @throws IOException
+   */
+  @Transactional(readOnly = true)
+  public long exportGoalsByUserId(int userId, OutputStream out) throws IOException {
+    try (Stream<Goal> goals = goalRepository.streamGoalsByUsersUserId(userId)) {
+      return writeGoals(goals, out);
+    }
+  }
+
+  /**
+   * Exports every goal in the system
+   *
+   * @param out
+   * @return number of goals written
+   * @throws IOException
+   */
+  @Transactional(readOnly = true)
+  public long exportAllGoals(OutputStream out) throws IOException {
+    try (Stream<Goal> goals = goalRepository.streamAllGoals()) {
+      return writeGoals(goals, out);
+    }
+  }
+
+  private long writeGoals(Stream<Goal> goals, OutputStream out) throws IOException {
+    long written = 0;
+    try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+      // The caller owns the response stream
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.writeStartArray();
+
+      Iterator<Goal> iterator = goals.iterator();
+      while (iterator.hasNext()) {
+        Goal goal = iterator.next();
+        goalWriter.writeValue(generator, goal);
+        entityManager.detach(goal);
+        written++;
+      }
+
+      generator.writeEndArray();
+    }
+    return written;
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+/** Optional restrictions applied when listing a user's {@link com.habicus.core.model.Goal} */
+public class GoalFilter {
+
+  private String goalComplete;
+  private String goalInterval;
+
+  // UTC Time, both bounds inclusive
+  private Long dueAfter;
+  private Long dueBefore;
+
+  public String getGoalComplete() {
+    return goalComplete;
+  }
+
+  public void setGoalComplete(String goalComplete) {
+    this.goalComplete = goalComplete;
+  }
+
+  public String getGoalInterval() {
+    return goalInterval;
+  }
+
+  public void setGoalInterval(String goalInterval) {
+    this.goalInterval = goalInterval;
+  }
+
+  public Long getDueAfter() {
+    return dueAfter;
+  }
+
+  public void setDueAfter(Long dueAfter) {
+    this.dueAfter = dueAfter;
+  }
+
+  public Long getDueBefore() {
+    return dueBefore;
+  }
+
+  public void setDueBefore(Long dueBefore) {
+    this.dueBefore = dueBefore;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import com.habicus.core.dao.repository.GoalRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Hands out ids for new goals from blocks reserved in {@code goal_id_sequence}, so inserts carry
+ * their id up front and Hibernate can batch them, which it cannot do with AUTO_INCREMENT ids.
+ *
+ * <p>A block costs one short transaction of its own, so the sequence row is never locked for the
+ * length of a caller's transaction. Callers allocate before starting theirs. Ids left in a block
+ * when the application stops are skipped. Every goal insert goes through here, a row written with
+ * AUTO_INCREMENT could take an id already reserved by another instance.
+ */
+@Service
+public class GoalIdAllocator {
+
+  @Autowired private GoalRepository goalRepository;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Value("${habicus.goals.id-block-size:100}")
+  private int blockSize;
+
+  // Guarded by this
+  private IdBlocks blocks;
+
+  /**
+   * Ids for new goals. Must be called outside of a transaction: reserving a block takes a pooled
+   * connection of its own, and callers holding one already could exhaust the pool waiting for it.
+   *
+   * @param count
+   * @return distinct ids, ascending
+   * @throws IllegalStateException when called within a transaction
+   */
+  public synchronized int[] allocate(int count) {
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException("Goal ids must be allocated before a transaction starts");
+    }
+    if (blocks == null) {
+      blocks = new IdBlocks(blockSize, this::reserve);
+    }
+    return blocks.take(count);
+  }
+
+  /**
+   * Id for a new goal
+   *
+   * @return
+   */
+  public int allocate() {
+    return allocate(1)[0];
+  }
+
+  private int reserve(int size) {
+    return new TransactionTemplate(transactionManager)
+        .execute(status -> goalRepository.reserveGoalIds(size));
+  }
+}
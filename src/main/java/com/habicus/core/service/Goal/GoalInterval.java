@@ -0,0 +1,141 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Recurrence of a goal, parsed from {@link com.habicus.core.model.Goal#getGoalInterval()}.
+ * Occurrence {@code k} of a series is due {@code k} intervals after the series' first due date, the
+ * anchor. Both the anchor and the results are UTC epoch seconds.
+ */
+public enum GoalInterval {
+  DAILY("daily", 86_400L),
+  WEEKLY("weekly", 604_800L),
+  // Calendar months in UTC, a series anchored on the 31st is due on the last day of short months
+  MONTHLY("monthly", 0L);
+
+  private final String value;
+
+  // Fixed length in seconds, 0 for calendar based intervals
+  private final long seconds;
+
+  GoalInterval(String value, long seconds) {
+    this.value = value;
+    this.seconds = seconds;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * Interval stored in {@code goal_interval}, empty when the goal does not recur
+   *
+   * @param value
+   * @return
+   */
+  public static Optional<GoalInterval> parse(String value) {
+    if (value == null) {
+      return Optional.empty();
+    }
+    String normalized = value.trim().toLowerCase(Locale.ROOT);
+    for (GoalInterval interval : values()) {
+      if (interval.value.equals(normalized)) {
+        return Optional.of(interval);
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Due date of occurrence {@code index} of a series
+   *
+   * @param anchor UTC Time
+   * @param index
+   * @return UTC Time
+   */
+  public long occurrence(long anchor, long index) {
+    if (seconds > 0) {
+      return anchor + index * seconds;
+    }
+    return utc(anchor).plusMonths(index).toEpochSecond();
+  }
+
+  /**
+   * Index of the first occurrence due at or after {@code time}
+   *
+   * @param anchor UTC Time
+   * @param time UTC Time
+   * @return
+   */
+  public long firstIndexAtOrAfter(long anchor, long time) {
+    if (time <= anchor) {
+      return 0;
+    }
+    if (seconds > 0) {
+      return (time - anchor + seconds - 1) / seconds;
+    }
+    // Month lengths vary, start from the whole months in between and correct by at most a step
+    long index = ChronoUnit.MONTHS.between(utc(anchor), utc(time));
+    while (index > 0 && occurrence(anchor, index - 1) >= time) {
+      index--;
+    }
+    while (occurrence(anchor, index) < time) {
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * Due dates of a series within {@code [from, to)}, in order
+   *
+   * @param anchor UTC Time
+   * @param from UTC Time, inclusive
+   * @param to UTC Time, exclusive
+   * @param limit most due dates to return
+   * @return
+   */
+  public List<Long> dueDatesBetween(long anchor, long from, long to, int limit) {
+    List<Long> dueDates = new ArrayList<>();
+    for (long index = firstIndexAtOrAfter(anchor, from); dueDates.size() < limit; index++) {
+      long dueDate = occurrence(anchor, index);
+      if (dueDate >= to) {
+        break;
+      }
+      dueDates.add(dueDate);
+    }
+    return dueDates;
+  }
+
+  private static ZonedDateTime utc(long epochSeconds) {
+    return Instant.ofEpochSecond(epochSeconds).atZone(ZoneOffset.UTC);
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import com.habicus.core.model.Goal;
+
+/**
+ * A single due date of a goal on the calendar. One-off goals have exactly one occurrence. Recurring
+ * goals have one per interval, and only occurrences that were checked in are stored as {@link Goal}
+ * rows; the rest are generated from the series template when read.
+ */
+public class GoalOccurrence {
+
+  // Stored row backing this occurrence, null while it only exists virtually
+  private final Integer goalId;
+
+  // Template goal of the series, the goal itself for one-off goals
+  private final int seriesGoalId;
+
+  private final int usersUserId;
+
+  // UTC Time
+  private final long dueDate;
+
+  private final String title;
+  private final String description;
+  private final String goalInterval;
+  private final String labelColor;
+  private final Double pledgeAmount;
+  private final int taskUnitCount;
+  private final int taskUnitsDone;
+  private final String goalComplete;
+
+  private GoalOccurrence(Goal goal, Integer goalId, int seriesGoalId, long dueDate, String status) {
+    this.goalId = goalId;
+    this.seriesGoalId = seriesGoalId;
+    this.usersUserId = goal.getUsersUserId();
+    this.dueDate = dueDate;
+    this.title = goal.getTitle();
+    this.description = goal.getDescription();
+    this.goalInterval = goal.getGoalInterval();
+    this.labelColor = goal.getLabelColor();
+    this.pledgeAmount = goal.getPledgeAmount();
+    this.taskUnitCount = goal.getTaskUnitCount();
+    this.taskUnitsDone = goalId == null ? 0 : goal.getTaskUnitsDone();
+    this.goalComplete = status;
+  }
+
+  /**
+   * Occurrence backed by a stored goal row
+   *
+   * @param goal
+   * @return
+   */
+  public static GoalOccurrence stored(Goal goal) {
+    int seriesGoalId = goal.getParentGoalId() != null ? goal.getParentGoalId() : goal.getGoalId();
+    return new GoalOccurrence(
+        goal, goal.getGoalId(), seriesGoalId, goal.getDueDate(), goal.getGoalComplete());
+  }
+
+  /**
+   * Occurrence of a series that has not been stored, taking its attributes from the template
+   *
+   * @param template
+   * @param dueDate UTC Time
+   * @return
+   */
+  public static GoalOccurrence virtual(Goal template, long dueDate) {
+    return new GoalOccurrence(
+        template, null, template.getGoalId(), dueDate, Goal.GOAL_INCOMPLETE);
+  }
+
+  public Integer getGoalId() {
+    return goalId;
+  }
+
+  public int getSeriesGoalId() {
+    return seriesGoalId;
+  }
+
+  public int getUsersUserId() {
+    return usersUserId;
+  }
+
+  public long getDueDate() {
+    return dueDate;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public String getGoalInterval() {
+    return goalInterval;
+  }
+
+  public String getLabelColor() {
+    return labelColor;
+  }
+
+  public Double getPledgeAmount() {
+    return pledgeAmount;
+  }
+
+  public int getTaskUnitCount() {
+    return taskUnitCount;
+  }
+
+  public int getTaskUnitsDone() {
+    return taskUnitsDone;
+  }
+
+  public String getGoalComplete() {
+    return goalComplete;
+  }
+
+  public boolean isMaterialized() {
+    return goalId != null;
+  }
+}
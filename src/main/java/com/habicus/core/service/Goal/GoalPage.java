@@ -0,0 +1,48 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import com.habicus.core.model.Goal;
+import java.util.List;
+
+/** A single page of {@link Goal} along with the cursor to request the following page */
+public class GoalPage {
+
+  private final List<Goal> goals;
+
+  // Null when this is the last page
+  private final String nextCursor;
+
+  public GoalPage(List<Goal> goals, String nextCursor) {
+    this.goals = goals;
+    this.nextCursor = nextCursor;
+  }
+
+  public List<Goal> getGoals() {
+    return goals;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+}
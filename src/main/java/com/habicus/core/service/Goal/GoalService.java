@@ -24,16 +24,31 @@ package com.habicus.core.service.Goal;
 
 import com.habicus.core.dao.repository.GoalRepository;
 import com.habicus.core.dao.repository.UserRepository;
+import com.habicus.core.event.GoalChangedEvent;
+import com.habicus.core.exception.API.InvalidRequestException;
 import com.habicus.core.exception.NoGoalsFoundException;
 import com.habicus.core.model.Goal;
 import com.habicus.core.service.User.UserService;
+import com.habicus.core.service.checkin.CheckInService;
+import com.habicus.core.service.concurrent.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 @Service
-public class GoalService {
+public class GoalService implements MeterBinder {
+
+  private static final long DEFAULT_COALESCING_WAIT_MS = 2000;
 
   // Repository definitions
   @Autowired private GoalRepository goalRepository;
@@ -41,16 +56,82 @@ public class GoalService {
 
   // Service definitions
   @Autowired private UserService userService;
+  @Autowired private CheckInService checkInService;
+
+  // Concurrent reads of the same user's goals share a single query
+  private SingleFlight<Integer, Optional<List<Goal>>> goalReads =
+      new SingleFlight<>(DEFAULT_COALESCING_WAIT_MS);
+
+  @Value("${habicus.goals.read-coalescing.wait-timeout-ms:" + DEFAULT_COALESCING_WAIT_MS + "}")
+  public void setReadCoalescingWaitTimeout(long waitTimeoutMillis) {
+    this.goalReads = new SingleFlight<>(waitTimeoutMillis);
+  }
 
   /**
-   * Allows retrieval of a list of goals that can be deserialized into JSON to the client
+   * Allows retrieval of a list of goals that can be deserialized into JSON to the client. Callers
+   * asking for the same user at the same time share one query, so the returned list is read only.
+   * Check-ins that are still buffered are included.
    *
    * @param userId
    * @return Returns an array list of {@link Goal}
    */
   public Optional<List<Goal>> retrieveGoalsByUserId(int userId) throws NoGoalsFoundException {
     // TODO: Need to actually do validation on this input userId with the req. token
-    Optional<List<Goal>> userGoals = goalRepository.getGoalsByUsersUserId(userId);
-    return userGoals;
+    return goalReads
+        .load(
+            userId,
+            () -> goalRepository.getGoalsByUsersUserId(userId).map(Collections::unmodifiableList))
+        .map(goals -> checkInService.overlay(goals));
+  }
+
+  /**
+   * Allows retrieval of a single page of a user's goals ordered by due date
+   *
+   * @param userId
+   * @param filter optional restrictions, may be null
+   * @param cursor value of {@link GoalPage#getNextCursor()} from the previous page, null for the
+   *     first page
+   * @param limit
+   * @return
+   */
+  public GoalPage retrieveGoalPageByUserId(
+      int userId, GoalFilter filter, String cursor, int limit) {
+    GoalCursor after;
+    try {
+      after = cursor == null ? null : GoalCursor.decode(cursor);
+    } catch (IllegalArgumentException e) {
+      throw new InvalidRequestException("Invalid page cursor", HttpStatus.BAD_REQUEST);
+    }
+
+    // One extra row tells us whether another page exists without a count query
+    List<Goal> goals =
+        checkInService.overlay(goalRepository.findGoalPage(userId, filter, after, limit + 1));
+    if (goals.size() <= limit) {
+      return new GoalPage(goals, null);
+    }
+
+    List<Goal> page = goals.subList(0, limit);
+    Goal last = page.get(limit - 1);
+    return new GoalPage(page, new GoalCursor(last.getDueDate(), last.getGoalId()).encode());
+  }
+
+  /** A read already in flight may predate the change, later callers must not join it */
+  @Order(GoalVersionTracker.ORDER - 1)
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onGoalChanged(GoalChangedEvent event) {
+    goalReads.forget(event.getUserId());
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("habicus.goals.reads.executed", goalReads, SingleFlight::getExecuted)
+        .description("Goal list queries actually sent to the database")
+        .register(registry);
+    FunctionCounter.builder("habicus.goals.reads.coalesced", goalReads, SingleFlight::getCoalesced)
+        .description("Goal list reads that joined a query already in flight")
+        .register(registry);
+    FunctionCounter.builder(
+            "habicus.goals.reads.coalesce.timeouts", goalReads, SingleFlight::getTimedOut)
+        .register(registry);
   }
 }
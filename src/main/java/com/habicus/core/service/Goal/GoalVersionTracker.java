@@ -0,0 +1,87 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import com.habicus.core.event.GoalChangedEvent;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Per-user version of the goal list, bumped on every {@link GoalChangedEvent}. Used to build ETags
+ * for goal reads without loading or hashing the goals themselves.
+ *
+ * <p>Versions live in memory, the random epoch generated at startup makes sure ETags handed out by
+ * a previous run never match again.
+ */
+@Component
+public class GoalVersionTracker {
+
+  /**
+   * Order of the version bump among {@link GoalChangedEvent} listeners. Listeners that drop reads
+   * already in flight must run before it, or a request taking the new ETag could join a read that
+   * started before the commit and cache the old goals under the new tag.
+   */
+  public static final int ORDER = 0;
+
+  private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+  private final ConcurrentHashMap<Integer, AtomicLong> versions = new ConcurrentHashMap<>();
+
+  public long currentVersion(int userId) {
+    AtomicLong version = versions.get(userId);
+    return version == null ? 0 : version.get();
+  }
+
+  /**
+   * Strong ETag for the current state of a user's goals. Must be taken before the goals are read,
+   * so a write landing in between can only make the tag older than the body, never newer.
+   *
+   * @param userId
+   * @return
+   */
+  public String etagFor(int userId) {
+    return "\"" + epoch + "-" + currentVersion(userId) + "\"";
+  }
+
+  /** Runs after commit so no reader can see the new version while the old rows are still visible */
+  @Order(ORDER)
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onGoalChanged(GoalChangedEvent event) {
+    bump(event.getUserId());
+  }
+
+  /**
+   * Marks the user's goals as changed by a write that is visible to reads without an event, such
+   * as a buffered check-in. Call it once the change is visible.
+   *
+   * @param userId
+   */
+  public void bump(int userId) {
+    versions.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+  }
+}
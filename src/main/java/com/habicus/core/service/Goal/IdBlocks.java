@@ -0,0 +1,69 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Unused part of the id block held by {@link GoalIdAllocator}, refilled by reserving a new block.
+ * Not thread safe, the allocator guards it.
+ */
+class IdBlocks {
+
+  private final int blockSize;
+
+  // Takes the size of a block and reserves it, returning its first id
+  private final IntUnaryOperator reserve;
+
+  // The unused part of the current block is [next, end)
+  private int next;
+  private int end;
+
+  IdBlocks(int blockSize, IntUnaryOperator reserve) {
+    this.blockSize = blockSize;
+    this.reserve = reserve;
+  }
+
+  /**
+   * Ids taken from the current block, reserving more as it runs out
+   *
+   * @param count
+   * @return distinct ids, ascending
+   */
+  int[] take(int count) {
+    int[] ids = new int[count];
+    int filled = 0;
+    while (filled < count) {
+      if (next == end) {
+        // Larger requests reserve what they need in one round trip
+        int size = Math.max(blockSize, count - filled);
+        next = reserve.applyAsInt(size);
+        end = next + size;
+      }
+      while (filled < count && next < end) {
+        ids[filled++] = next++;
+      }
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import com.habicus.core.dao.repository.GoalRepository;
+import com.habicus.core.event.GoalChangedEvent;
+import com.habicus.core.exception.API.InvalidRequestException;
+import com.habicus.core.model.Goal;
+import com.habicus.core.model.GoalEvent;
+import com.habicus.core.service.progress.ProgressService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Expands recurring goals into their occurrences.
+ *
+ * <p>A goal with a {@link GoalInterval} and no parent is the template of a series, and is itself
+ * the occurrence due on its own due date. Later occurrences are generated from the template when
+ * read and only stored, as goals pointing back at the template, once something has to be recorded
+ * against them such as a check-in. Storage therefore grows with activity instead of with time, and
+ * a calendar read costs the user's templates plus the rows inside the requested window.
+ */
+@Service
+public class RecurrenceService {
+
+  /** Lower case {@link GoalInterval} values as stored in {@code goal_interval} */
+  public static final List<String> INTERVAL_VALUES =
+      Stream.of(GoalInterval.values()).map(GoalInterval::getValue).collect(Collectors.toList());
+
+  @Autowired private GoalRepository goalRepository;
+  @Autowired private ApplicationEventPublisher eventPublisher;
+  @Autowired private ProgressService progressService;
+  @Autowired private GoalIdAllocator goalIdAllocator;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Value("${habicus.recurrence.horizon-seconds:7948800}")
+  private long horizonSeconds;
+
+  @Value("${habicus.recurrence.max-occurrences-per-series:1000}")
+  private int maxOccurrencesPerSeries;
+
+  /**
+   * Interval a goal repeats on, empty unless the goal is the template of a series
+   *
+   * @param goal
+   * @return
+   */
+  public static Optional<GoalInterval> templateInterval(Goal goal) {
+    return goal.getParentGoalId() == null
+        ? GoalInterval.parse(goal.getGoalInterval())
+        : Optional.empty();
+  }
+
+  /**
+   * Every occurrence of a user's goals due within {@code [from, to)}, stored or not, ordered by
+   * due date
+   *
+   * @param userId
+   * @param from UTC Time
+   * @param to UTC Time
+   * @return
+   */
+  public List<GoalOccurrence> retrieveCalendar(int userId, long from, long to) {
+    if (to <= from || to - from > horizonSeconds) {
+      throw new InvalidRequestException(
+          "Calendar window must be positive and span at most " + horizonSeconds + " seconds",
+          HttpStatus.BAD_REQUEST);
+    }
+
+    List<GoalOccurrence> occurrences = new ArrayList<>();
+    Set<String> stored = new HashSet<>();
+    for (Goal goal : goalRepository.findGoalsDueBetween(userId, from, to)) {
+      GoalOccurrence occurrence = GoalOccurrence.stored(goal);
+      occurrences.add(occurrence);
+      stored.add(key(occurrence.getSeriesGoalId(), occurrence.getDueDate()));
+    }
+
+    for (Goal template : goalRepository.findRecurringTemplates(userId, INTERVAL_VALUES, to)) {
+      Optional<GoalInterval> interval = templateInterval(template);
+      if (!interval.isPresent()) {
+        continue;
+      }
+      for (long dueDate :
+          interval
+              .get()
+              .dueDatesBetween(template.getDueDate(), from, to, maxOccurrencesPerSeries)) {
+        if (!stored.contains(key(template.getGoalId(), dueDate))) {
+          occurrences.add(GoalOccurrence.virtual(template, dueDate));
+        }
+      }
+    }
+
+    occurrences.sort(
+        Comparator.comparingLong(GoalOccurrence::getDueDate)
+            .thenComparingInt(GoalOccurrence::getSeriesGoalId));
+    return occurrences;
+  }
+
+  /**
+   * Stored goal backing an occurrence of a user's recurring goal, inserting it on first use. The
+   * occurrence must lie within the horizon around now.
+   *
+   * @param userId
+   * @param seriesGoalId goal id of the series template
+   * @param dueDate UTC Time
+   * @return
+   */
+  public Goal materialize(int userId, int seriesGoalId, long dueDate) {
+    Goal template =
+        goalRepository
+            .getGoalsByGoalId(seriesGoalId)
+            .filter(goal -> goal.getUsersUserId() == userId)
+            .orElseThrow(
+                () ->
+                    new InvalidRequestException(
+                        "No goal found for id: " + seriesGoalId, HttpStatus.NOT_FOUND));
+    GoalInterval interval =
+        templateInterval(template)
+            .orElseThrow(
+                () ->
+                    new InvalidRequestException(
+                        "Goal " + seriesGoalId + " is not recurring", HttpStatus.BAD_REQUEST));
+
+    long anchor = template.getDueDate();
+    if (dueDate == anchor) {
+      return template;
+    }
+    long now = System.currentTimeMillis() / 1000;
+    if (dueDate < anchor
+        || Math.abs(dueDate - now) > horizonSeconds
+        || interval.occurrence(anchor, interval.firstIndexAtOrAfter(anchor, dueDate)) != dueDate) {
+      throw new InvalidRequestException(
+          "Goal " + seriesGoalId + " has no occurrence due at " + dueDate, HttpStatus.BAD_REQUEST);
+    }
+
+    Optional<Goal> existing = goalRepository.findByParentGoalIdAndDueDate(seriesGoalId, dueDate);
+    if (existing.isPresent()) {
+      return existing.get();
+    }
+    // Reserved before the write transaction starts, a new block needs a connection of its own
+    int goalId = goalIdAllocator.allocate();
+    return new TransactionTemplate(transactionManager)
+        .execute(status -> insertOccurrence(template, dueDate, goalId));
+  }
+
+  private Goal insertOccurrence(Goal template, long dueDate, int goalId) {
+    int inserted = goalRepository.insertOccurrence(template, dueDate, goalId);
+    // When a concurrent call won the insert its row is newer than this transaction's snapshot
+    Goal occurrence =
+        goalRepository
+            .findLockedByParentGoalIdAndDueDate(template.getGoalId(), dueDate)
+            .orElseThrow(() -> new IllegalStateException("Occurrence insert was not visible"));
+    if (inserted > 0) {
+      progressService.record(
+          Collections.singletonList(
+              GoalEvent.of(
+                  GoalEvent.CREATED, template.getUsersUserId(), occurrence.getGoalId(), dueDate)));
+      // Written through a native query, Spring Data does not publish this one
+      eventPublisher.publishEvent(GoalChangedEvent.saved(occurrence));
+    }
+    return occurrence;
+  }
+
+  private static String key(int seriesGoalId, long dueDate) {
+    return seriesGoalId + ":" + dueDate;
+  }
+}
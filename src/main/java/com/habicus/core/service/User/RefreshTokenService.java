@@ -0,0 +1,125 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.User;
+
+import com.habicus.core.dao.repository.RefreshTokenRepository;
+import com.habicus.core.model.RefreshToken;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Issues and rotates {@link RefreshToken}. Refresh tokens are 256 bits of randomness, so a single
+ * SHA-256 digest is enough to store them safely and lets a refresh be checked with one primary key
+ * lookup instead of a BCrypt comparison.
+ */
+@Service
+public class RefreshTokenService {
+
+  private static final int TOKEN_BYTES = 32;
+
+  private final SecureRandom random = new SecureRandom();
+
+  @Autowired private RefreshTokenRepository refreshTokenRepository;
+
+  @Value("${habicus.security.refresh-token.expiration-ms:2592000000}")
+  private long expirationTime;
+
+  /**
+   * Creates and stores a new refresh token for the given user
+   *
+   * @param userId
+   * @param username
+   * @return the raw token, which is not recoverable afterwards
+   */
+  @Transactional
+  public IssuedRefreshToken issue(int userId, String username) {
+    byte[] bytes = new byte[TOKEN_BYTES];
+    random.nextBytes(bytes);
+    String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    long expiresAt = System.currentTimeMillis() + expirationTime;
+
+    RefreshToken refreshToken = new RefreshToken();
+    refreshToken.setTokenHash(digest(token));
+    refreshToken.setUsersUserId(userId);
+    refreshToken.setUsername(username);
+    refreshToken.setExpiresAt(expiresAt);
+    refreshTokenRepository.save(refreshToken);
+
+    return new IssuedRefreshToken(token, userId, username, expiresAt);
+  }
+
+  /**
+   * Consumes a presented refresh token and issues its replacement. Each token can be used exactly
+   * once, a second presentation (or a concurrent one) is rejected.
+   *
+   * @param presentedToken
+   * @return the replacement token, empty when the presented token is unknown, used or expired
+   */
+  @Transactional
+  public Optional<IssuedRefreshToken> rotate(String presentedToken) {
+    if (presentedToken == null || presentedToken.isEmpty()) {
+      return Optional.empty();
+    }
+    String tokenHash = digest(presentedToken);
+    Optional<RefreshToken> stored = refreshTokenRepository.findById(tokenHash);
+    if (!stored.isPresent()) {
+      return Optional.empty();
+    }
+
+    // Deleting by key doubles as the compare-and-set, only one request can remove the row
+    if (refreshTokenRepository.deleteByTokenHash(tokenHash) != 1
+        || stored.get().getExpiresAt() <= System.currentTimeMillis()) {
+      return Optional.empty();
+    }
+    return Optional.of(issue(stored.get().getUsersUserId(), stored.get().getUsername()));
+  }
+
+  @Scheduled(fixedDelayString = "${habicus.security.refresh-token.purge-interval-ms:3600000}")
+  @Transactional
+  public void purgeExpired() {
+    refreshTokenRepository.deleteExpired(System.currentTimeMillis());
+  }
+
+  static String digest(String token) {
+    try {
+      byte[] hash =
+          MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder(hash.length * 2);
+      for (byte b : hash) {
+        hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+}
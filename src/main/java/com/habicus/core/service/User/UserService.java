@@ -24,11 +24,16 @@ package com.habicus.core.service.User;
 
 import com.habicus.core.dao.repository.UserRepository;
 import com.habicus.core.model.User;
+import com.habicus.core.security.AuthenticatedUser;
+import com.habicus.core.security.HabicusUserDetails;
 import java.security.Principal;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Optional;
 import java.util.stream.Stream;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -39,6 +44,9 @@ public class UserService implements UserDetailsService {
 
   @Autowired UserRepository userRepository;
 
+  @Value("${habicus.admin.usernames:}")
+  private String[] adminUsernames = new String[0];
+
   /**
    * Allows searching for a user by their associated email (PK)
    *
@@ -66,17 +74,30 @@ public class UserService implements UserDetailsService {
 
     User returnedUser = user.orElseThrow(() -> new UsernameNotFoundException(username));
 
-    return new org.springframework.security.core.userdetails.User(
-        returnedUser.getUsername(), returnedUser.getPassword(), Collections.emptyList());
+    return new HabicusUserDetails(
+        returnedUser.getUserId(),
+        returnedUser.getUsername(),
+        returnedUser.getPassword(),
+        Collections.emptyList());
   }
 
   /**
-   * Verifies that the user exists off the current auth token and returns the {@link User#userId}
+   * Verifies that the user exists off the current auth token and returns the {@link User#userId}.
+   * Tokens carrying the signed user id are resolved without touching the database, older tokens
+   * fall back to a lookup by username.
    *
    * @param principal
    * @return
    */
   public int verifyAndRetrieveUser(Principal principal) {
+    if (principal instanceof Authentication) {
+      Object tokenPrincipal = ((Authentication) principal).getPrincipal();
+      if (tokenPrincipal instanceof AuthenticatedUser
+          && ((AuthenticatedUser) tokenPrincipal).hasUserId()) {
+        return ((AuthenticatedUser) tokenPrincipal).getUserId();
+      }
+    }
+
     Optional<User> user = userRepository.findUserByUsername(principal.getName());
 
     if (user.isPresent()) {
@@ -85,4 +106,14 @@ public class UserService implements UserDetailsService {
 
     throw new UsernameNotFoundException("User does not exist!");
   }
+
+  /**
+   * Whether the user behind the current auth token may act on data across all users
+   *
+   * @param principal
+   * @return
+   */
+  public boolean isAdmin(Principal principal) {
+    return principal != null && Arrays.asList(adminUsernames).contains(principal.getName());
+  }
 }
@@ -0,0 +1,281 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.checkin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append only log of {@link CheckIn} records split into numbered segment files.
+ *
+ * <p>Records are appended to the current segment. {@link #rotate()} closes it and starts the next
+ * one, so everything buffered since the previous rotation can be written elsewhere and the closed
+ * segments dropped with {@link #deleteThrough(long)} once that write is durable. Each record
+ * carries a CRC, a record torn by a crash mid write is skipped on replay.
+ *
+ * <p>When forcing on append, concurrent appends share their forces like a group commit: one
+ * appender forces every record written so far while the others wait, and those it covered
+ * return without a force of their own.
+ */
+class CheckInJournal implements Closeable {
+
+  private static final String PREFIX = "checkins-";
+  private static final String SUFFIX = ".log";
+
+  // goal id, user id, due date, units, crc
+  static final int RECORD_SIZE = 4 + 4 + 8 + 4 + 4;
+
+  private final Path directory;
+  private final boolean forceOnAppend;
+  private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+
+  private FileChannel current;
+  private long currentSegment;
+
+  // Records appended so far, guarded by this
+  private long appended;
+
+  // Taken before this by anything forcing or closing the current segment
+  private final Object forceLock = new Object();
+
+  // Records known to be on disk, guarded by forceLock
+  private long forced;
+  private long forces;
+
+  CheckInJournal(Path directory, boolean forceOnAppend) {
+    this.directory = directory;
+    this.forceOnAppend = forceOnAppend;
+  }
+
+  /**
+   * Replays every record of segments after {@code appliedSegment} in order, deletes the older ones
+   * and starts a new segment for appends
+   *
+   * @param appliedSegment last segment whose records are already applied elsewhere
+   * @param replay
+   * @return number of records replayed
+   * @throws IOException
+   */
+  synchronized long open(long appliedSegment, Consumer<CheckIn> replay) throws IOException {
+    Files.createDirectories(directory);
+    long replayed = 0;
+    long last = appliedSegment;
+    for (long segment : segments()) {
+      if (segment <= appliedSegment) {
+        Files.deleteIfExists(path(segment));
+        continue;
+      }
+      replayed += read(segment, replay);
+      last = Math.max(last, segment);
+    }
+    currentSegment = last + 1;
+    current = openSegment(currentSegment);
+    return replayed;
+  }
+
+  /**
+   * Appends a record to the current segment. Once this returns the record survives a crash of the
+   * process, and of the machine too when forcing on append.
+   *
+   * @param checkIn
+   * @throws IOException
+   */
+  void append(CheckIn checkIn) throws IOException {
+    long sequence;
+    synchronized (this) {
+      record.clear();
+      record.putInt(checkIn.getGoalId());
+      record.putInt(checkIn.getUserId());
+      record.putLong(checkIn.getDueDate());
+      record.putInt(checkIn.getUnits());
+      record.putInt(crc(record.array()));
+      record.flip();
+      while (record.hasRemaining()) {
+        current.write(record);
+      }
+      sequence = ++appended;
+    }
+    if (forceOnAppend) {
+      forceThrough(sequence);
+    }
+  }
+
+  /** Forces appended records to disk, for journals that do not force on every append */
+  void force() throws IOException {
+    long sequence;
+    synchronized (this) {
+      sequence = appended;
+    }
+    forceThrough(sequence);
+  }
+
+  /**
+   * Number of times the current segment was forced to disk
+   *
+   * @return
+   */
+  long getForces() {
+    synchronized (forceLock) {
+      return forces;
+    }
+  }
+
+  // Returns once every record up to sequence is on disk, forcing at most once for all waiting
+  private void forceThrough(long sequence) throws IOException {
+    synchronized (forceLock) {
+      if (forced >= sequence) {
+        return;
+      }
+      long through;
+      FileChannel channel;
+      synchronized (this) {
+        through = appended;
+        channel = current;
+      }
+      // Appends keep going meanwhile, they only need the monitor
+      channel.force(false);
+      forced = through;
+      forces++;
+    }
+  }
+
+  /**
+   * Closes the current segment and starts the next one
+   *
+   * @return the closed segment
+   * @throws IOException
+   */
+  long rotate() throws IOException {
+    synchronized (forceLock) {
+      synchronized (this) {
+        long closed = currentSegment;
+        current.force(false);
+        current.close();
+        forced = appended;
+        forces++;
+        currentSegment++;
+        current = openSegment(currentSegment);
+        return closed;
+      }
+    }
+  }
+
+  /**
+   * Deletes every closed segment up to and including {@code segment}
+   *
+   * @param segment
+   * @throws IOException
+   */
+  synchronized void deleteThrough(long segment) throws IOException {
+    for (long closed : segments()) {
+      if (closed <= segment && closed != currentSegment) {
+        Files.deleteIfExists(path(closed));
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (forceLock) {
+      synchronized (this) {
+        if (current != null) {
+          current.force(false);
+          current.close();
+        }
+      }
+    }
+  }
+
+  private long read(long segment, Consumer<CheckIn> replay) throws IOException {
+    long records = 0;
+    ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+    try (FileChannel channel = FileChannel.open(path(segment), StandardOpenOption.READ)) {
+      while (true) {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer) < 0) {
+            break;
+          }
+        }
+        if (buffer.hasRemaining()) {
+          // A record torn by a crash, nothing can follow it
+          return records;
+        }
+        buffer.flip();
+        CheckIn checkIn =
+            new CheckIn(buffer.getInt(), buffer.getInt(), buffer.getLong(), buffer.getInt());
+        if (buffer.getInt() != crc(buffer.array())) {
+          return records;
+        }
+        replay.accept(checkIn);
+        records++;
+      }
+    }
+  }
+
+  private FileChannel openSegment(long segment) throws IOException {
+    return FileChannel.open(
+        path(segment),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND);
+  }
+
+  private List<Long> segments() throws IOException {
+    List<Long> segments = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        try {
+          segments.add(
+              Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+        } catch (NumberFormatException e) {
+          // Not a segment written by this journal
+        }
+      }
+    }
+    Collections.sort(segments);
+    return segments;
+  }
+
+  private Path path(long segment) {
+    return directory.resolve(String.format("%s%020d%s", PREFIX, segment, SUFFIX));
+  }
+
+  private static int crc(byte[] record) {
+    CRC32 crc = new CRC32();
+    crc.update(record, 0, RECORD_SIZE - 4);
+    return (int) crc.getValue();
+  }
+}
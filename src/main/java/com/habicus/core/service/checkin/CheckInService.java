@@ -0,0 +1,444 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.checkin;
+
+import com.habicus.core.dao.repository.CheckInCheckpointRepository;
+import com.habicus.core.dao.repository.GoalRepository;
+import com.habicus.core.event.GoalChangedEvent;
+import com.habicus.core.exception.API.InvalidRequestException;
+import com.habicus.core.model.CheckInCheckpoint;
+import com.habicus.core.model.Goal;
+import com.habicus.core.model.GoalEvent;
+import com.habicus.core.model.GoalsPK;
+import com.habicus.core.service.Goal.GoalVersionTracker;
+import com.habicus.core.service.Goal.RecurrenceService;
+import com.habicus.core.service.progress.ProgressService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Write-behind buffer for goal check-ins.
+ *
+ * <p>A check-in is appended to a local {@link CheckInJournal} and merged into a per-goal counter,
+ * so any number of taps on a goal between flushes become a single row update. Counters are
+ * written to the goal table in JDBC batches every {@code habicus.checkins.flush-interval-ms}, or
+ * as soon as {@code habicus.checkins.batch-size} goals have pending units. Each flush records the
+ * journal segment it covers in {@code check_in_checkpoint} within the same transaction, so
+ * replaying the journal on startup restores taps a crash left unwritten without applying any
+ * twice.
+ *
+ * <p>Until a goal's units are written, {@link #overlay(Goal)} adds them to goals read from the
+ * database so callers see every accepted check-in.
+ */
+@Service
+public class CheckInService implements MeterBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CheckInService.class);
+
+  @Autowired private GoalRepository goalRepository;
+  @Autowired private CheckInCheckpointRepository checkInCheckpointRepository;
+  @Autowired private RecurrenceService recurrenceService;
+  @Autowired private GoalVersionTracker goalVersionTracker;
+  @Autowired private ProgressService progressService;
+  @Autowired private EntityManagerFactory entityManagerFactory;
+  @Autowired private PlatformTransactionManager transactionManager;
+  @Autowired private ApplicationEventPublisher eventPublisher;
+
+  @Value("${habicus.checkins.journal-dir:data/checkins}")
+  private String journalDir;
+
+  @Value("${habicus.checkins.journal-force-on-append:true}")
+  private boolean forceOnAppend;
+
+  @Value("${habicus.checkins.node-id:default}")
+  private String nodeId;
+
+  @Value("${habicus.checkins.batch-size:500}")
+  private int batchSize;
+
+  @Value("${habicus.checkins.max-units:100}")
+  private int maxUnits;
+
+  private CheckInJournal journal;
+
+  // Appends hold the read lock, swapping the pending counters for a flush holds the write lock
+  private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+  private volatile Map<Integer, PendingUnits> pending = new ConcurrentHashMap<>();
+
+  // Counters of the flush in progress, still overlaid until their transaction commits
+  private volatile Map<Integer, PendingUnits> flushing = Collections.emptyMap();
+
+  private final AtomicLong checkIns = new AtomicLong();
+  private final AtomicLong rowsWritten = new AtomicLong();
+
+  @PostConstruct
+  public void openJournal() throws IOException {
+    long applied =
+        checkInCheckpointRepository
+            .findById(nodeId)
+            .map(CheckInCheckpoint::getAppliedSegment)
+            .orElse(0L);
+    journal = new CheckInJournal(Paths.get(journalDir), forceOnAppend);
+    long replayed = journal.open(applied, this::accumulate);
+    if (replayed > 0) {
+      LOGGER.info("Replayed {} unwritten check-ins from {}", replayed, journalDir);
+    }
+  }
+
+  @PreDestroy
+  public void closeJournal() throws IOException {
+    flush();
+    journal.close();
+  }
+
+  /**
+   * Records units done on a goal of the user. For recurring goals, {@code dueDate} selects the
+   * occurrence, which is stored on its first check-in.
+   *
+   * @param userId
+   * @param goalId
+   * @param dueDate UTC Time, null for the goal itself
+   * @param units
+   * @return the goal including every accepted check-in
+   */
+  public Goal checkIn(int userId, int goalId, Long dueDate, int units) {
+    if (units < 1 || units > maxUnits) {
+      throw new InvalidRequestException(
+          "Units must be between 1 and " + maxUnits, HttpStatus.BAD_REQUEST);
+    }
+    Goal goal =
+        dueDate == null
+            ? goalRepository
+                .getGoalsByGoalId(goalId)
+                .filter(g -> g.getUsersUserId() == userId)
+                .orElseThrow(
+                    () ->
+                        new InvalidRequestException(
+                            "No goal found for id: " + goalId, HttpStatus.NOT_FOUND))
+            : recurrenceService.materialize(userId, goalId, dueDate);
+
+    CheckIn checkIn = new CheckIn(goal.getGoalId(), userId, goal.getDueDate(), units);
+    swapLock.readLock().lock();
+    try {
+      journal.append(checkIn);
+      accumulate(checkIn);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed journaling check-in for goal " + goal.getGoalId(), e);
+    } finally {
+      swapLock.readLock().unlock();
+    }
+    // Reads overlay the buffered units right away, so cached copies are stale from here on
+    goalVersionTracker.bump(userId);
+    checkIns.incrementAndGet();
+
+    if (pending.size() >= batchSize) {
+      flush();
+    }
+    return overlay(goal);
+  }
+
+  /**
+   * The goal with check-ins that are not written yet applied
+   *
+   * @param goal
+   * @return the same instance when nothing is pending for it
+   */
+  public Goal overlay(Goal goal) {
+    int units = pendingUnits(goal.getGoalId());
+    return units == 0 ? goal : withUnitsDone(goal, goal.getTaskUnitsDone() + units);
+  }
+
+  /**
+   * Every goal with check-ins that are not written yet applied
+   *
+   * @param goals
+   * @return the same list when nothing is pending for any of them
+   */
+  public List<Goal> overlay(List<Goal> goals) {
+    if (pending.isEmpty() && flushing.isEmpty()) {
+      return goals;
+    }
+    List<Goal> overlaid = null;
+    for (int i = 0; i < goals.size(); i++) {
+      Goal goal = overlay(goals.get(i));
+      if (goal != goals.get(i) && overlaid == null) {
+        overlaid = new ArrayList<>(goals);
+      }
+      if (overlaid != null) {
+        overlaid.set(i, goal);
+      }
+    }
+    return overlaid == null ? goals : Collections.unmodifiableList(overlaid);
+  }
+
+  /** Writes every pending counter to the goal table */
+  @Scheduled(fixedDelayString = "${habicus.checkins.flush-interval-ms:1000}")
+  public synchronized void flush() {
+    Map<Integer, PendingUnits> batch;
+    long segment;
+    swapLock.writeLock().lock();
+    try {
+      if (pending.isEmpty()) {
+        if (!forceOnAppend) {
+          journal.force();
+        }
+        return;
+      }
+      batch = pending;
+      flushing = batch;
+      pending = new ConcurrentHashMap<>();
+      segment = journal.rotate();
+    } catch (IOException e) {
+      LOGGER.warn("Failed rotating the check-in journal", e);
+      return;
+    } finally {
+      swapLock.writeLock().unlock();
+    }
+
+    Map<Integer, Integer> units = new HashMap<>();
+    batch.forEach((goalId, counter) -> units.put(goalId, counter.units.get()));
+    List<Goal> written;
+    try {
+      written =
+          new TransactionTemplate(transactionManager)
+              .execute(
+                  status -> {
+                    lockCached(batch.values());
+                    goalRepository.applyCheckIns(units);
+                    List<Goal> goals = loadGoals(new ArrayList<>(units.keySet()));
+                    progressService.record(checkInEvents(goals, units));
+                    checkInCheckpointRepository.markApplied(nodeId, segment);
+                    return goals;
+                  });
+    } catch (RuntimeException e) {
+      // Put the counters back, their segment stays on disk until a later flush covers it
+      swapLock.writeLock().lock();
+      try {
+        batch.forEach(
+            (goalId, counter) ->
+                pending
+                    .computeIfAbsent(goalId, id -> new PendingUnits(counter))
+                    .units
+                    .addAndGet(counter.units.get()));
+        flushing = Collections.emptyMap();
+      } finally {
+        swapLock.writeLock().unlock();
+      }
+      LOGGER.warn("Failed writing check-ins for {} goals", units.size(), e);
+      return;
+    }
+
+    // The cached copies were unlocked on commit, reads from here on see the written units
+    flushing = Collections.emptyMap();
+    rowsWritten.addAndGet(units.size());
+    try {
+      journal.deleteThrough(segment);
+    } catch (IOException e) {
+      // Harmless, the checkpoint keeps these segments from being replayed
+      LOGGER.warn("Failed deleting check-in journal segment {}", segment, e);
+    }
+    for (Goal goal : written) {
+      eventPublisher.publishEvent(GoalChangedEvent.saved(goal));
+    }
+  }
+
+  private void accumulate(CheckIn checkIn) {
+    pending
+        .computeIfAbsent(checkIn.getGoalId(), id -> new PendingUnits(checkIn))
+        .units
+        .addAndGet(checkIn.getUnits());
+  }
+
+  private int pendingUnits(int goalId) {
+    int units = 0;
+    PendingUnits current = pending.get(goalId);
+    if (current != null) {
+      units += current.units.get();
+    }
+    PendingUnits inFlight = flushing.get(goalId);
+    if (inFlight != null) {
+      units += inFlight.units.get();
+    }
+    return units;
+  }
+
+  /**
+   * The JDBC update bypasses Hibernate, so the cached copies of the goals are soft-locked the way
+   * Hibernate does for its own updates. Until the transaction completes loads neither read nor
+   * cache them, and once it has, loads in sessions opened before cannot put back what they read.
+   */
+  private void lockCached(Collection<PendingUnits> counters) {
+    EntityPersister persister =
+        entityManagerFactory
+            .unwrap(SessionFactoryImplementor.class)
+            .getMetamodel()
+            .entityPersister(Goal.class);
+    if (!persister.hasCache()) {
+      return;
+    }
+    EntityRegionAccessStrategy access = persister.getCacheAccessStrategy();
+    SharedSessionContractImplementor session =
+        EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory)
+            .unwrap(SharedSessionContractImplementor.class);
+    Map<Object, SoftLock> locks = new HashMap<>();
+    for (PendingUnits counter : counters) {
+      GoalsPK id = new GoalsPK();
+      id.setGoalId(counter.goalId);
+      id.setUsersUserId(counter.userId);
+      id.setDueDate(counter.dueDate);
+      Object key = access.generateCacheKey(id, persister, persister.getFactory(), null);
+      locks.put(key, access.lockItem(session, key, null));
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronizationAdapter() {
+          @Override
+          public void afterCompletion(int status) {
+            locks.forEach((key, lock) -> access.unlockItem(session, key, lock));
+          }
+        });
+  }
+
+  private List<Goal> loadGoals(List<Integer> goalIds) {
+    List<Goal> goals = new ArrayList<>(goalIds.size());
+    for (int from = 0; from < goalIds.size(); from += batchSize) {
+      goals.addAll(
+          goalRepository.findByGoalIdIn(
+              goalIds.subList(from, Math.min(goalIds.size(), from + batchSize))));
+    }
+    return goals;
+  }
+
+  // One check-in event per goal and flush, plus completion when this flush crossed the target
+  private static List<GoalEvent> checkInEvents(List<Goal> goals, Map<Integer, Integer> units) {
+    List<GoalEvent> events = new ArrayList<>(goals.size());
+    for (Goal goal : goals) {
+      int added = units.get(goal.getGoalId());
+      GoalEvent checkedIn =
+          GoalEvent.of(
+              GoalEvent.CHECKED_IN, goal.getUsersUserId(), goal.getGoalId(), goal.getDueDate());
+      checkedIn.setUnits(added);
+      events.add(checkedIn);
+      if (Goal.GOAL_COMPLETE.equals(goal.getGoalComplete())
+          && goal.getTaskUnitsDone() - added < goal.getTaskUnitCount()) {
+        events.add(
+            GoalEvent.of(
+                GoalEvent.COMPLETED, goal.getUsersUserId(), goal.getGoalId(), goal.getDueDate()));
+      }
+    }
+    return events;
+  }
+
+  private static Goal withUnitsDone(Goal goal, int unitsDone) {
+    Goal copy = new Goal();
+    copy.setGoalId(goal.getGoalId());
+    copy.setUsersUserId(goal.getUsersUserId());
+    copy.setDueDate(goal.getDueDate());
+    copy.setTitle(goal.getTitle());
+    copy.setDescription(goal.getDescription());
+    copy.setGoalInterval(goal.getGoalInterval());
+    copy.setLabelColor(goal.getLabelColor());
+    copy.setPledgeAmount(goal.getPledgeAmount());
+    copy.setParentGoalId(goal.getParentGoalId());
+    copy.setTaskUnitCount(goal.getTaskUnitCount());
+    copy.setTaskUnitsDone(unitsDone);
+    // Same rule as the batched update
+    copy.setGoalComplete(
+        unitsDone >= goal.getTaskUnitCount() ? Goal.GOAL_COMPLETE : goal.getGoalComplete());
+    return copy;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("habicus.checkins.accepted", checkIns, AtomicLong::get)
+        .description("Check-ins accepted into the write-behind buffer")
+        .register(registry);
+    FunctionCounter.builder("habicus.checkins.rows.written", rowsWritten, AtomicLong::get)
+        .description("Goal rows updated by check-in flushes")
+        .register(registry);
+    Gauge.builder("habicus.checkins.pending.goals", this, service -> service.pending.size())
+        .register(registry);
+    FunctionCounter.builder(
+            "habicus.checkins.journal.forces",
+            this,
+            service -> service.journal == null ? 0 : service.journal.getForces())
+        .description("Journal forces to disk, concurrent check-ins share one")
+        .register(registry);
+  }
+
+  /** Units checked in on one goal since the last flush */
+  private static class PendingUnits {
+    private final int goalId;
+    private final int userId;
+    private final long dueDate;
+    private final AtomicInteger units = new AtomicInteger();
+
+    PendingUnits(CheckIn checkIn) {
+      this.goalId = checkIn.getGoalId();
+      this.userId = checkIn.getUserId();
+      this.dueDate = checkIn.getDueDate();
+    }
+
+    PendingUnits(PendingUnits other) {
+      this.goalId = other.goalId;
+      this.userId = other.userId;
+      this.dueDate = other.dueDate;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.concurrent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent loads of the same key into one. The first caller for a key runs the loader
+ * on its own thread, callers arriving while it is in flight wait for and share that result.
+ *
+ * <p>A failure of the shared load is rethrown to every waiting caller. A waiting caller that runs
+ * out of patience does not fail, it stops waiting and runs the loader itself.
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final long waitTimeoutMillis;
+
+  private final LongAdder executed = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder timedOut = new LongAdder();
+
+  public SingleFlight(long waitTimeoutMillis) {
+    this.waitTimeoutMillis = waitTimeoutMillis;
+  }
+
+  /**
+   * Returns the result of the in-flight load for the key, starting one if there is none
+   *
+   * @param key
+   * @param loader
+   * @return
+   */
+  public V load(K key, Supplier<V> loader) {
+    CompletableFuture<V> leader = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, leader);
+    if (existing == null) {
+      return lead(key, leader, loader);
+    }
+
+    coalesced.increment();
+    try {
+      return existing.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      timedOut.increment();
+      executed.increment();
+      return loader.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for in-flight load of " + key, e);
+    }
+  }
+
+  /**
+   * Stops sharing the in-flight load for the key, the next caller starts a fresh one. Used when
+   * the underlying data changed and a load that started earlier may be stale.
+   *
+   * @param key
+   */
+  public void forget(K key) {
+    inFlight.remove(key);
+  }
+
+  private V lead(K key, CompletableFuture<V> leader, Supplier<V> loader) {
+    executed.increment();
+    try {
+      V value = loader.get();
+      leader.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      leader.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, leader);
+    }
+  }
+
+  public long getExecuted() {
+    return executed.sum();
+  }
+
+  public long getCoalesced() {
+    return coalesced.sum();
+  }
+
+  public long getTimedOut() {
+    return timedOut.sum();
+  }
+
+  public int getInFlight() {
+    return inFlight.size();
+  }
+}
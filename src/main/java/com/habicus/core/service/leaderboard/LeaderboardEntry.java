@@ -0,0 +1,53 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.leaderboard;
+
+/** A user's position on a leaderboard */
+public class LeaderboardEntry {
+
+  // 1 for the highest score
+  private final int rank;
+
+  private final int userId;
+
+  // Completed goals, or money kept in cents
+  private final long score;
+
+  public LeaderboardEntry(int rank, int userId, long score) {
+    this.rank = rank;
+    this.userId = userId;
+    this.score = score;
+  }
+
+  public int getRank() {
+    return rank;
+  }
+
+  public int getUserId() {
+    return userId;
+  }
+
+  public long getScore() {
+    return score;
+  }
+}
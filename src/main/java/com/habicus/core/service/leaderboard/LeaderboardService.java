@@ -0,0 +1,332 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.leaderboard;
+
+import com.habicus.core.dao.repository.GoalRepository;
+import com.habicus.core.dao.repository.LeaderboardSnapshotRepository;
+import com.habicus.core.event.GoalChangedEvent;
+import com.habicus.core.exception.API.InvalidRequestException;
+import com.habicus.core.model.Goal;
+import com.habicus.core.model.LeaderboardSnapshot;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Weekly leaderboards by completed goals and by pledge money kept, held in memory as one {@link
+ * PeriodBoard} per week. Goals count for the UTC week, starting Monday, their due date falls in.
+ *
+ * <p>A board is built from the goal table the first time its week is needed and then updated from
+ * every committed {@link GoalChangedEvent}, so top N and rank reads never touch the database.
+ * Changes committed while a board is being built are recorded and applied before it goes live.
+ * Boards are snapshotted to {@code leaderboard_snapshot} every {@code
+ * habicus.leaderboard.snapshot-interval-ms} and on shutdown. On startup they are served from those
+ * snapshots right away and rebuilt once the application is ready, which picks up anything the
+ * snapshot missed.
+ */
+@Service
+public class LeaderboardService implements MeterBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LeaderboardService.class);
+
+  private static final long WEEK_SECONDS = 604_800L;
+
+  @Autowired private GoalRepository goalRepository;
+  @Autowired private LeaderboardSnapshotRepository leaderboardSnapshotRepository;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Value("${habicus.leaderboard.retained-weeks:2}")
+  private int retainedWeeks;
+
+  @Value("${habicus.leaderboard.max-limit:100}")
+  private int maxLimit;
+
+  // Boards by the start of their week
+  private final Map<Long, PeriodBoard> boards = new ConcurrentHashMap<>();
+
+  // Guarded by swapLock: latest change per goal for boards being built
+  private final Map<Long, Map<Integer, GoalChangedEvent>> building = new HashMap<>();
+  private final Object swapLock = new Object();
+
+  // Serializes board loads, builds run outside of swapLock
+  private final Object loadLock = new Object();
+
+  // Board versions last written to leaderboard_snapshot, by week
+  private final Map<Long, Long> snapshotVersions = new ConcurrentHashMap<>();
+
+  // Weeks served from a snapshot that still need a rebuild
+  private final Set<Long> restored = ConcurrentHashMap.newKeySet();
+
+  private final AtomicLong builds = new AtomicLong();
+  private final AtomicLong snapshots = new AtomicLong();
+
+  /**
+   * Highest ranked users of a week
+   *
+   * @param type
+   * @param weeksAgo 0 for the current week
+   * @param limit
+   * @return
+   */
+  public List<LeaderboardEntry> retrieveTop(LeaderboardType type, int weeksAgo, int limit) {
+    if (limit < 1 || limit > maxLimit) {
+      throw new InvalidRequestException(
+          "Limit must be between 1 and " + maxLimit, HttpStatus.BAD_REQUEST);
+    }
+    return board(periodStart(weeksAgo)).top(type, limit);
+  }
+
+  /**
+   * Rank and score of a user in a week
+   *
+   * @param type
+   * @param weeksAgo 0 for the current week
+   * @param userId
+   * @return rank 0 when the user has no score that week
+   */
+  public LeaderboardEntry retrieveEntry(LeaderboardType type, int weeksAgo, int userId) {
+    return board(periodStart(weeksAgo)).entryOf(type, userId);
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onGoalChanged(GoalChangedEvent event) {
+    synchronized (swapLock) {
+      for (PeriodBoard board : boards.values()) {
+        apply(board, event);
+      }
+      for (Map<Integer, GoalChangedEvent> changes : building.values()) {
+        changes.put(event.getGoalId(), event);
+      }
+    }
+  }
+
+  /** Serves the kept weeks from their snapshots, then rebuilds them from the goal table */
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUp() {
+    for (int weeksAgo = 0; weeksAgo < retainedWeeks; weeksAgo++) {
+      board(periodStart(weeksAgo));
+    }
+    rebuildRestored();
+  }
+
+  /**
+   * Replaces the boards of a week with ones built from the goal table
+   *
+   * @param start UTC Time
+   */
+  public void rebuild(long start) {
+    synchronized (loadLock) {
+      Map<Integer, GoalChangedEvent> changes = new HashMap<>();
+      synchronized (swapLock) {
+        building.put(start, changes);
+      }
+      try {
+        PeriodBoard board = new PeriodBoard(start, start + WEEK_SECONDS);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.execute(
+            status -> {
+              try (Stream<ScoredGoal> goals =
+                  goalRepository.streamCompletedGoalsDueBetween(
+                      start, start + WEEK_SECONDS, Goal.GOAL_COMPLETE)) {
+                goals.forEach(goal -> board.apply(goal.getGoalId(), goal));
+              }
+              return null;
+            });
+        synchronized (swapLock) {
+          changes.values().forEach(event -> apply(board, event));
+          boards.put(start, board);
+        }
+        restored.remove(start);
+        builds.incrementAndGet();
+      } finally {
+        synchronized (swapLock) {
+          building.remove(start);
+        }
+      }
+    }
+  }
+
+  /** Drops weeks no longer kept, loads the current one and snapshots boards that changed */
+  @Scheduled(fixedDelayString = "${habicus.leaderboard.snapshot-interval-ms:300000}")
+  public void snapshotBoards() {
+    long oldest = periodStart(retainedWeeks - 1);
+    boards.keySet().removeIf(start -> start < oldest);
+    snapshotVersions.keySet().removeIf(start -> start < oldest);
+    restored.removeIf(start -> start < oldest);
+    try {
+      board(periodStart(0));
+      new TransactionTemplate(transactionManager)
+          .execute(status -> leaderboardSnapshotRepository.deleteOlderThan(oldest));
+    } catch (RuntimeException e) {
+      LOGGER.warn("Failed loading the current leaderboards", e);
+    }
+    rebuildRestored();
+    saveChangedBoards();
+  }
+
+  private void saveChangedBoards() {
+    for (PeriodBoard board : boards.values()) {
+      long version = board.getVersion();
+      if (Long.valueOf(version).equals(snapshotVersions.get(board.getStart()))) {
+        continue;
+      }
+      try {
+        save(board);
+        snapshotVersions.put(board.getStart(), version);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Failed snapshotting leaderboards of {}", board.getStart(), e);
+      }
+    }
+  }
+
+  private void rebuildRestored() {
+    for (Long start : new ArrayList<>(restored)) {
+      try {
+        rebuild(start);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Failed rebuilding leaderboards of week {}", start, e);
+      }
+    }
+  }
+
+  /** Saves the boards already in memory, a week is never loaded or rebuilt while shutting down */
+  @PreDestroy
+  public void snapshotOnShutdown() {
+    saveChangedBoards();
+  }
+
+  private PeriodBoard board(long start) {
+    PeriodBoard board = boards.get(start);
+    if (board != null) {
+      return board;
+    }
+    synchronized (loadLock) {
+      board = boards.get(start);
+      if (board == null && !restore(start)) {
+        rebuild(start);
+      }
+      return boards.get(start);
+    }
+  }
+
+  // Only called holding loadLock
+  private boolean restore(long start) {
+    Optional<LeaderboardSnapshot> snapshot = leaderboardSnapshotRepository.findById(start);
+    if (!snapshot.isPresent()) {
+      return false;
+    }
+    PeriodBoard board;
+    try {
+      board = PeriodBoard.decode(start, start + WEEK_SECONDS, snapshot.get().getState());
+    } catch (IOException e) {
+      LOGGER.warn("Ignoring unreadable leaderboard snapshot of {}", start, e);
+      return false;
+    }
+    synchronized (swapLock) {
+      boards.put(start, board);
+    }
+    snapshotVersions.put(start, board.getVersion());
+    restored.add(start);
+    return true;
+  }
+
+  private void save(PeriodBoard board) {
+    LeaderboardSnapshot snapshot = new LeaderboardSnapshot();
+    snapshot.setPeriodStart(board.getStart());
+    snapshot.setState(board.encode());
+    snapshot.setGoals(board.goals());
+    snapshot.setCreatedAt(System.currentTimeMillis() / 1000);
+    leaderboardSnapshotRepository.save(snapshot);
+    snapshots.incrementAndGet();
+  }
+
+  private static void apply(PeriodBoard board, GoalChangedEvent event) {
+    Goal goal = event.getGoal();
+    boolean counts =
+        goal != null
+            && Goal.GOAL_COMPLETE.equals(goal.getGoalComplete())
+            && board.covers(goal.getDueDate());
+    board.apply(
+        event.getGoalId(),
+        counts
+            ? new ScoredGoal(goal.getGoalId(), goal.getUsersUserId(), goal.getPledgeAmount())
+            : null);
+  }
+
+  private long periodStart(int weeksAgo) {
+    if (weeksAgo < 0 || weeksAgo >= retainedWeeks) {
+      throw new InvalidRequestException(
+          "Leaderboards are kept for the last " + retainedWeeks + " weeks",
+          HttpStatus.BAD_REQUEST);
+    }
+    LocalDate monday =
+        LocalDate.ofEpochDay(Math.floorDiv(System.currentTimeMillis() / 1000, 86_400L))
+            .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    return monday.toEpochDay() * 86_400L - weeksAgo * WEEK_SECONDS;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("habicus.leaderboard.users", this, service -> service.currentUsers())
+        .description("Users ranked on the current week's leaderboards")
+        .register(registry);
+    FunctionCounter.builder("habicus.leaderboard.builds", builds, AtomicLong::get)
+        .register(registry);
+    FunctionCounter.builder("habicus.leaderboard.snapshots", snapshots, AtomicLong::get)
+        .register(registry);
+  }
+
+  private int currentUsers() {
+    PeriodBoard board = boards.get(periodStart(0));
+    return board == null ? 0 : board.users();
+  }
+}
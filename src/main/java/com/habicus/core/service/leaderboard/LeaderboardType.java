@@ -0,0 +1,63 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.leaderboard;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/** What a leaderboard ranks users by */
+public enum LeaderboardType {
+  // Goals completed that were due within the period
+  COMPLETED_GOALS("completed"),
+  // Pledges of those goals, in cents, see GoalMetrics#getMoneyMadeOnGoal()
+  MONEY_KEPT("money-kept");
+
+  private final String value;
+
+  LeaderboardType(String value) {
+    this.value = value;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * Type by its path value
+   *
+   * @param value
+   * @return
+   */
+  public static Optional<LeaderboardType> parse(String value) {
+    if (value == null) {
+      return Optional.empty();
+    }
+    String normalized = value.trim().toLowerCase(Locale.ROOT);
+    for (LeaderboardType type : values()) {
+      if (type.value.equals(normalized)) {
+        return Optional.of(type);
+      }
+    }
+    return Optional.empty();
+  }
+}
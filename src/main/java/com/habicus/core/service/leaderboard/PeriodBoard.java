@@ -0,0 +1,159 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.leaderboard;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Leaderboards of one period. Keeps the goals counted so far, so a goal completed twice, reopened
+ * or moved to another period changes the scores by exactly its own contribution.
+ */
+class PeriodBoard {
+
+  private static final int FORMAT_VERSION = 1;
+
+  // UTC Time, the period covers goals due within [start, end)
+  private final long start;
+  private final long end;
+
+  // Guarded by this
+  private final Map<Integer, ScoredGoal> goals = new HashMap<>();
+  private final RankedScores completed = new RankedScores();
+  private final RankedScores moneyKept = new RankedScores();
+  private long version;
+
+  PeriodBoard(long start, long end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  long getStart() {
+    return start;
+  }
+
+  boolean covers(long dueDate) {
+    return dueDate >= start && dueDate < end;
+  }
+
+  /**
+   * Sets what a goal counts for on this board
+   *
+   * @param goalId
+   * @param scored null when the goal no longer counts here
+   */
+  synchronized void apply(int goalId, ScoredGoal scored) {
+    ScoredGoal previous = scored == null ? goals.remove(goalId) : goals.put(goalId, scored);
+    if (previous == null && scored == null) {
+      return;
+    }
+    if (previous != null) {
+      completed.add(previous.getUserId(), -1);
+      moneyKept.add(previous.getUserId(), -previous.getMoneyKeptCents());
+    }
+    if (scored != null) {
+      completed.add(scored.getUserId(), 1);
+      moneyKept.add(scored.getUserId(), scored.getMoneyKeptCents());
+    }
+    version++;
+  }
+
+  synchronized List<LeaderboardEntry> top(LeaderboardType type, int limit) {
+    return scores(type).top(limit);
+  }
+
+  /**
+   * Rank and score of a user
+   *
+   * @param type
+   * @param userId
+   * @return rank 0 when the user has no score
+   */
+  synchronized LeaderboardEntry entryOf(LeaderboardType type, int userId) {
+    RankedScores scores = scores(type);
+    return new LeaderboardEntry(scores.rank(userId), userId, scores.score(userId));
+  }
+
+  synchronized int users() {
+    return completed.size();
+  }
+
+  synchronized int goals() {
+    return goals.size();
+  }
+
+  synchronized long getVersion() {
+    return version;
+  }
+
+  /**
+   * Counted goals in a compact gzipped form, scores are derived again on {@link #decode}
+   *
+   * @return
+   */
+  synchronized byte[] encode() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(goals.size());
+      for (ScoredGoal goal : goals.values()) {
+        out.writeInt(goal.getGoalId());
+        out.writeInt(goal.getUserId());
+        out.writeLong(goal.getMoneyKeptCents());
+      }
+    } catch (IOException e) {
+      // Writing to memory
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  static PeriodBoard decode(long start, long end, byte[] state) throws IOException {
+    PeriodBoard board = new PeriodBoard(start, end);
+    try (DataInputStream in =
+        new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(state)))) {
+      int format = in.readInt();
+      if (format != FORMAT_VERSION) {
+        throw new IOException("Unknown leaderboard snapshot format " + format);
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        int goalId = in.readInt();
+        board.apply(goalId, new ScoredGoal(goalId, in.readInt(), in.readLong()));
+      }
+    }
+    return board;
+  }
+
+  private RankedScores scores(LeaderboardType type) {
+    return type == LeaderboardType.MONEY_KEPT ? moneyKept : completed;
+  }
+}
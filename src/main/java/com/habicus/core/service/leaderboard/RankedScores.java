@@ -0,0 +1,220 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.leaderboard;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Scores of users ranked highest first, ties going to the lower user id. Backed by an indexable
+ * skip list: every link also stores how many positions it skips, so updates, the rank of a user
+ * and the start of the top N all take O(log n) expected time. Users whose score drops to 0 leave
+ * the ranking.
+ *
+ * <p>Not thread safe, {@link PeriodBoard} guards every instance.
+ */
+class RankedScores {
+
+  private static final int MAX_LEVEL = 32;
+
+  private final Node head = new Node(0, Long.MAX_VALUE, MAX_LEVEL);
+  private final Map<Integer, Long> scores = new HashMap<>();
+  private int level = 1;
+
+  /**
+   * Adds {@code delta} to the score of a user
+   *
+   * @param userId
+   * @param delta
+   */
+  void add(int userId, long delta) {
+    if (delta != 0) {
+      put(userId, score(userId) + delta);
+    }
+  }
+
+  /**
+   * Sets the score of a user, 0 or less removes them from the ranking
+   *
+   * @param userId
+   * @param score
+   */
+  void put(int userId, long score) {
+    Long current = scores.get(userId);
+    if (current != null) {
+      if (current == score) {
+        return;
+      }
+      unlink(userId, current);
+      scores.remove(userId);
+    }
+    if (score > 0) {
+      link(userId, score);
+      scores.put(userId, score);
+    }
+  }
+
+  long score(int userId) {
+    Long score = scores.get(userId);
+    return score == null ? 0 : score;
+  }
+
+  int size() {
+    return scores.size();
+  }
+
+  /**
+   * Position of a user in the ranking
+   *
+   * @param userId
+   * @return 1 for the highest score, 0 when the user is not ranked
+   */
+  int rank(int userId) {
+    Long score = scores.get(userId);
+    if (score == null) {
+      return 0;
+    }
+    int rank = 0;
+    Node x = head;
+    for (int i = level - 1; i >= 0; i--) {
+      while (x.next[i] != null && compare(x.next[i], score, userId) <= 0) {
+        rank += x.span[i];
+        x = x.next[i];
+      }
+      if (x != head && x.userId == userId) {
+        return rank;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Highest scores in rank order
+   *
+   * @param limit
+   * @return
+   */
+  List<LeaderboardEntry> top(int limit) {
+    List<LeaderboardEntry> entries = new ArrayList<>(Math.min(limit, scores.size()));
+    Node x = head.next[0];
+    while (x != null && entries.size() < limit) {
+      entries.add(new LeaderboardEntry(entries.size() + 1, x.userId, x.score));
+      x = x.next[0];
+    }
+    return entries;
+  }
+
+  private void link(int userId, long score) {
+    Node[] update = new Node[MAX_LEVEL];
+    int[] rankAt = new int[MAX_LEVEL];
+    Node x = head;
+    for (int i = level - 1; i >= 0; i--) {
+      rankAt[i] = i == level - 1 ? 0 : rankAt[i + 1];
+      while (x.next[i] != null && compare(x.next[i], score, userId) < 0) {
+        rankAt[i] += x.span[i];
+        x = x.next[i];
+      }
+      update[i] = x;
+    }
+
+    int nodeLevel = randomLevel();
+    if (nodeLevel > level) {
+      for (int i = level; i < nodeLevel; i++) {
+        rankAt[i] = 0;
+        update[i] = head;
+        // An empty link from the head skips every node
+        head.span[i] = scores.size();
+      }
+      level = nodeLevel;
+    }
+
+    Node node = new Node(userId, score, nodeLevel);
+    for (int i = 0; i < nodeLevel; i++) {
+      node.next[i] = update[i].next[i];
+      update[i].next[i] = node;
+      node.span[i] = update[i].span[i] - (rankAt[0] - rankAt[i]);
+      update[i].span[i] = rankAt[0] - rankAt[i] + 1;
+    }
+    for (int i = nodeLevel; i < level; i++) {
+      update[i].span[i]++;
+    }
+  }
+
+  private void unlink(int userId, long score) {
+    Node[] update = new Node[MAX_LEVEL];
+    Node x = head;
+    for (int i = level - 1; i >= 0; i--) {
+      while (x.next[i] != null && compare(x.next[i], score, userId) < 0) {
+        x = x.next[i];
+      }
+      update[i] = x;
+    }
+    Node node = x.next[0];
+    for (int i = 0; i < level; i++) {
+      if (update[i].next[i] == node) {
+        update[i].span[i] += node.span[i] - 1;
+        update[i].next[i] = node.next[i];
+      } else {
+        update[i].span[i]--;
+      }
+    }
+    while (level > 1 && head.next[level - 1] == null) {
+      level--;
+    }
+  }
+
+  // Negative when the node ranks before (score, userId)
+  private static int compare(Node node, long score, int userId) {
+    if (node.score != score) {
+      return node.score > score ? -1 : 1;
+    }
+    return Integer.compare(node.userId, userId);
+  }
+
+  private static int randomLevel() {
+    int nodeLevel = 1;
+    while (nodeLevel < MAX_LEVEL && ThreadLocalRandom.current().nextInt(4) == 0) {
+      nodeLevel++;
+    }
+    return nodeLevel;
+  }
+
+  private static final class Node {
+    private final int userId;
+    private final long score;
+    private final Node[] next;
+
+    // Positions advanced by following next[i]
+    private final int[] span;
+
+    private Node(int userId, long score, int level) {
+      this.userId = userId;
+      this.score = score;
+      this.next = new Node[level];
+      this.span = new int[level];
+    }
+  }
+}
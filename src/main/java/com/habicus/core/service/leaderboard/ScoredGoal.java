@@ -0,0 +1,58 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.leaderboard;
+
+/** A completed goal as it counts towards its user's leaderboard scores */
+public class ScoredGoal {
+
+  private final int goalId;
+  private final int userId;
+  private final long moneyKeptCents;
+
+  public ScoredGoal(int goalId, int userId, long moneyKeptCents) {
+    this.goalId = goalId;
+    this.userId = userId;
+    this.moneyKeptCents = moneyKeptCents;
+  }
+
+  /** Used by JPQL constructor expressions */
+  public ScoredGoal(int goalId, int userId, Double pledgeAmount) {
+    this(goalId, userId, cents(pledgeAmount));
+  }
+
+  public int getGoalId() {
+    return goalId;
+  }
+
+  public int getUserId() {
+    return userId;
+  }
+
+  public long getMoneyKeptCents() {
+    return moneyKeptCents;
+  }
+
+  static long cents(Double pledgeAmount) {
+    return pledgeAmount == null || pledgeAmount <= 0 ? 0 : Math.round(pledgeAmount * 100);
+  }
+}
@@ -22,4 +22,437 @@
  */
 package com.habicus.core.service.metrics;
 
-public class MetricsService {}
+import com.habicus.core.dao.repository.GoalMetricsRepository;
+import com.habicus.core.dao.repository.GoalRepository;
+import com.habicus.core.event.GoalChangedEvent;
+import com.habicus.core.event.GoalsDueEvent;
+import com.habicus.core.model.Goal;
+import com.habicus.core.model.GoalMetrics;
+import com.habicus.core.service.schedule.DueGoal;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maintains {@link GoalMetrics} for every goal and {@link UserMetrics} for every user.
+ *
+ * <p>Metrics are updated incrementally from {@link GoalChangedEvent}, served from memory and
+ * written to {@code goal_metrics} in JDBC batches, either on a timer or as soon as a batch worth of
+ * changes is pending. A user's metrics are loaded from their goals the first time they are read,
+ * and the {@code habicus.metrics.max-cached-users} most recently read users are kept. Changes
+ * committed while a user is loaded are recorded and applied before the metrics go live. Goals move
+ * out of progress when {@link GoalsDueEvent} reports them. {@link #rebuildAll()} recomputes
+ * everything from the goal table for backfills.
+ */
+@Service
+public class MetricsService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MetricsService.class);
+
+  static final String FLAG_SET = "1";
+  static final String FLAG_UNSET = "0";
+
+  @Autowired private GoalRepository goalRepository;
+  @Autowired private GoalMetricsRepository goalMetricsRepository;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Value("${habicus.metrics.batch-size:500}")
+  private int batchSize;
+
+  @Value("${habicus.metrics.rebuild-threads:4}")
+  private int rebuildThreads;
+
+  @Value("${habicus.metrics.max-cached-users:100000}")
+  private int maxCachedUsers;
+
+  // Guards users and loading
+  private final Object lock = new Object();
+
+  // Cached users, least recently read first
+  private final LinkedHashMap<Integer, UserGoalMetrics> users = new LinkedHashMap<>();
+
+  // Changes committed while a user is loaded, latest per goal and one map per load in progress
+  private final Map<Integer, List<Map<Integer, GoalChangedEvent>>> loading = new HashMap<>();
+
+  // Latest metrics per goal id waiting to be written
+  private final Map<Integer, GoalMetrics> pendingWrites = new ConcurrentHashMap<>();
+
+  /**
+   * Aggregated metrics across every goal of a user
+   *
+   * @param userId
+   * @return
+   */
+  public UserMetrics retrieveUserMetrics(int userId) {
+    return userState(userId).snapshot();
+  }
+
+  /**
+   * Metrics of a single goal, empty when the user owns no such goal
+   *
+   * @param userId
+   * @param goalId
+   * @return
+   */
+  public Optional<GoalMetrics> retrieveGoalMetrics(int userId, int goalId) {
+    return Optional.ofNullable(userState(userId).get(goalId, nowSeconds()));
+  }
+
+  /**
+   * Applies a goal change to the in-memory metrics and queues the goal's row for writing. Users
+   * that are not loaded are left alone, their metrics are computed in full on the next read.
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onGoalChanged(GoalChangedEvent event) {
+    synchronized (lock) {
+      List<Map<Integer, GoalChangedEvent>> loads = loading.get(event.getUserId());
+      if (loads != null) {
+        loads.forEach(changes -> changes.put(event.getGoalId(), event));
+      }
+      UserGoalMetrics state = users.get(event.getUserId());
+      if (event.isRemoved()) {
+        if (state != null) {
+          state.remove(event.getGoalId());
+        }
+        pendingWrites.remove(event.getGoalId());
+        return;
+      }
+      long now = nowSeconds();
+      GoalMetrics metrics =
+          state == null
+              ? computeGoalMetrics(event.getGoal(), now)
+              : state.put(event.getGoal(), now);
+      pendingWrites.put(metrics.getGoalGoalId(), metrics);
+    }
+    if (pendingWrites.size() >= batchSize) {
+      flush();
+    }
+  }
+
+  /** Goals that came due incomplete are no longer in progress and forfeit their pledge */
+  @EventListener
+  public void onGoalsDue(GoalsDueEvent event) {
+    long now = nowSeconds();
+    synchronized (lock) {
+      for (DueGoal goal : event.getGoals()) {
+        UserGoalMetrics state = users.get(goal.getUserId());
+        GoalMetrics metrics = state == null ? null : state.expire(goal.getGoalId(), now);
+        if (metrics != null) {
+          pendingWrites.put(metrics.getGoalGoalId(), metrics);
+        }
+      }
+    }
+  }
+
+  /**
+   * Applies a pledge that was just settled, and written to {@code goal_metrics} by the settlement
+   * pipeline, to the in-memory metrics and to a row still waiting to be written.
+   *
+   * @param userId
+   * @param goalId
+   * @param amount
+   */
+  public void onPledgeForfeited(int userId, int goalId, BigDecimal amount) {
+    String money = forfeited(amount);
+    synchronized (lock) {
+      UserGoalMetrics state = users.get(userId);
+      GoalMetrics current = state == null ? null : state.stored(goalId);
+      if (current != null) {
+        state.put(withMoneyMade(current, money));
+      }
+      pendingWrites.computeIfPresent(goalId, (id, pending) -> withMoneyMade(pending, money));
+    }
+  }
+
+  /** Writes every pending goal metrics row in batches */
+  @Scheduled(fixedDelayString = "${habicus.metrics.flush-interval-ms:5000}")
+  public synchronized void flush() {
+    List<GoalMetrics> batch = new ArrayList<>(batchSize);
+    Iterator<Integer> goalIds = pendingWrites.keySet().iterator();
+    while (goalIds.hasNext()) {
+      GoalMetrics metrics = pendingWrites.remove(goalIds.next());
+      if (metrics != null) {
+        batch.add(metrics);
+      }
+      if (batch.size() >= batchSize) {
+        write(batch);
+        batch = new ArrayList<>(batchSize);
+      }
+    }
+    write(batch);
+  }
+
+  /**
+   * Recomputes metrics for every user from the goal table, spreading users across {@code
+   * habicus.metrics.rebuild-threads} workers. Reads stay available while this runs, each user's
+   * metrics are swapped in once that user is done.
+   *
+   * @return
+   */
+  public MetricsRebuildReport rebuildAll() {
+    long start = System.currentTimeMillis();
+    List<Integer> userIds = goalRepository.findDistinctUsersUserIds();
+    AtomicLong goals = new AtomicLong();
+    AtomicInteger failed = new AtomicInteger();
+
+    ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, rebuildThreads));
+    try {
+      List<Future<?>> tasks = new ArrayList<>(userIds.size());
+      for (Integer userId : userIds) {
+        tasks.add(
+            workers.submit(
+                () -> {
+                  try {
+                    goals.addAndGet(rebuildUser(userId));
+                  } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    LOGGER.warn("Failed rebuilding metrics for user {}", userId, e);
+                  }
+                }));
+      }
+      for (Future<?> task : tasks) {
+        task.get();
+      }
+    } catch (Exception e) {
+      throw new IllegalStateException("Metrics rebuild was interrupted", e);
+    } finally {
+      workers.shutdownNow();
+    }
+
+    MetricsRebuildReport report =
+        new MetricsRebuildReport(
+            userIds.size(), goals.get(), failed.get(), System.currentTimeMillis() - start);
+    LOGGER.info(
+        "Rebuilt metrics for {} users and {} goals in {}ms",
+        report.getUsers(),
+        report.getGoals(),
+        report.getElapsedMillis());
+    return report;
+  }
+
+  private int rebuildUser(int userId) {
+    List<GoalMetrics> rows = new ArrayList<>();
+    load(
+        userId,
+        true,
+        state -> {
+          long now = nowSeconds();
+          TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+          readOnly.setReadOnly(true);
+          readOnly.execute(
+              status -> {
+                try (Stream<Goal> goals = goalRepository.streamGoalsByUsersUserId(userId)) {
+                  goals.forEach(goal -> rows.add(state.put(goal, now)));
+                }
+                return null;
+              });
+          for (int from = 0; from < rows.size(); from += batchSize) {
+            write(rows.subList(from, Math.min(rows.size(), from + batchSize)));
+          }
+        });
+    return rows.size();
+  }
+
+  private UserGoalMetrics userState(int userId) {
+    synchronized (lock) {
+      UserGoalMetrics state = users.remove(userId);
+      if (state != null) {
+        // Moves the user to the most recently read end
+        users.put(userId, state);
+        return state;
+      }
+    }
+    return load(
+        userId,
+        false,
+        state -> {
+          long now = nowSeconds();
+          goalRepository
+              .getGoalsByUsersUserId(userId)
+              .ifPresent(goals -> goals.forEach(goal -> state.put(goal, now)));
+        });
+  }
+
+  /**
+   * Loads a user's metrics and applies the changes committed while the loader ran, so a load that
+   * read the goals before a commit cannot hide it. Rows of changed goals are queued again, the
+   * loader may have written older versions of them.
+   *
+   * @param userId
+   * @param replace whether metrics already cached for the user are swapped out, a rebuild only
+   *     adds users while there is room so it does not push out the ones being read
+   * @param loader fills the metrics from the goal table
+   * @return the metrics cached for the user, the loaded ones when they are not kept
+   */
+  private UserGoalMetrics load(int userId, boolean replace, Consumer<UserGoalMetrics> loader) {
+    Map<Integer, GoalChangedEvent> changes = new HashMap<>();
+    synchronized (lock) {
+      loading.computeIfAbsent(userId, id -> new ArrayList<>()).add(changes);
+    }
+    try {
+      UserGoalMetrics state = new UserGoalMetrics(userId);
+      loader.accept(state);
+
+      synchronized (lock) {
+        long now = nowSeconds();
+        for (GoalChangedEvent event : changes.values()) {
+          if (event.isRemoved()) {
+            state.remove(event.getGoalId());
+          } else {
+            pendingWrites.put(event.getGoalId(), state.put(event.getGoal(), now));
+          }
+        }
+        state
+            .expireAll(now)
+            .forEach(metrics -> pendingWrites.put(metrics.getGoalGoalId(), metrics));
+
+        UserGoalMetrics current = users.get(userId);
+        boolean keep =
+            replace
+                ? current != null || users.size() < maxCachedUsers
+                : current == null && maxCachedUsers > 0;
+        if (!keep) {
+          return current == null ? state : current;
+        }
+        users.remove(userId);
+        users.put(userId, state);
+        Iterator<Integer> eldest = users.keySet().iterator();
+        while (users.size() > maxCachedUsers) {
+          eldest.next();
+          eldest.remove();
+        }
+        return state;
+      }
+    } finally {
+      synchronized (lock) {
+        List<Map<Integer, GoalChangedEvent>> loads = loading.get(userId);
+        loads.remove(changes);
+        if (loads.isEmpty()) {
+          loading.remove(userId);
+        }
+      }
+    }
+  }
+
+  private void write(List<GoalMetrics> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      new TransactionTemplate(transactionManager)
+          .execute(status -> goalMetricsRepository.upsertAll(batch));
+    } catch (RuntimeException e) {
+      // Keep the rows for the next flush unless a newer version was queued in the meantime
+      batch.forEach(metrics -> pendingWrites.putIfAbsent(metrics.getGoalGoalId(), metrics));
+      LOGGER.warn("Failed writing {} goal metrics rows", batch.size(), e);
+    }
+  }
+
+  /**
+   * Metrics for a single goal as of the given time. The metrics row shares the goal's id.
+   *
+   * @param goal
+   * @param nowSeconds UTC Time
+   * @return
+   */
+  static GoalMetrics computeGoalMetrics(Goal goal, long nowSeconds) {
+    boolean complete = Goal.GOAL_COMPLETE.equals(goal.getGoalComplete());
+    int untilDue = timeUntil(goal.getDueDate(), nowSeconds);
+
+    GoalMetrics metrics = new GoalMetrics();
+    metrics.setGoalMetricsId(goal.getGoalId());
+    metrics.setGoalGoalId(goal.getGoalId());
+    metrics.setGoalComplete(complete ? FLAG_SET : FLAG_UNSET);
+    metrics.setGoalInProgress(!complete && untilDue > 0 ? FLAG_SET : FLAG_UNSET);
+    // A completed goal keeps its pledge, a missed one forfeits it
+    String money = "0";
+    if (goal.getPledgeAmount() != null && goal.getPledgeAmount() > 0) {
+      BigDecimal pledge = BigDecimal.valueOf(goal.getPledgeAmount());
+      if (complete) {
+        money = pledge.toPlainString();
+      } else if (untilDue == 0) {
+        money = forfeited(pledge);
+      }
+    }
+    metrics.setMoneyMadeOnGoal(money);
+    metrics.setTimeUntilDueDate(untilDue);
+    return metrics;
+  }
+
+  /**
+   * Seconds left until a due date, 0 once it has passed
+   *
+   * @param dueDate UTC Time
+   * @param nowSeconds UTC Time
+   * @return
+   */
+  static int timeUntil(long dueDate, long nowSeconds) {
+    return (int) Math.min(Integer.MAX_VALUE, Math.max(0, dueDate - nowSeconds));
+  }
+
+  /**
+   * Money made on a goal whose pledge was forfeited
+   *
+   * @param pledge
+   * @return
+   */
+  public static String forfeited(BigDecimal pledge) {
+    return pledge.negate().toPlainString();
+  }
+
+  private static GoalMetrics withMoneyMade(GoalMetrics metrics, String money) {
+    GoalMetrics copy = copyOf(metrics);
+    copy.setMoneyMadeOnGoal(money);
+    return copy;
+  }
+
+  static GoalMetrics copyOf(GoalMetrics metrics) {
+    GoalMetrics copy = new GoalMetrics();
+    copy.setGoalMetricsId(metrics.getGoalMetricsId());
+    copy.setGoalGoalId(metrics.getGoalGoalId());
+    copy.setGoalComplete(metrics.getGoalComplete());
+    copy.setGoalInProgress(metrics.getGoalInProgress());
+    copy.setMoneyMadeOnGoal(metrics.getMoneyMadeOnGoal());
+    copy.setTimeUntilDueDate(metrics.getTimeUntilDueDate());
+    return copy;
+  }
+
+  static double money(String amount) {
+    if (amount == null || amount.isEmpty()) {
+      return 0;
+    }
+    try {
+      return Double.parseDouble(amount);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static long nowSeconds() {
+    return System.currentTimeMillis() / 1000;
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.metrics;
+
+import com.habicus.core.model.Goal;
+import com.habicus.core.model.GoalMetrics;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory metrics for one user. Keeps the {@link GoalMetrics} of each goal and running totals, so
+ * a single goal change adjusts the totals by its difference instead of re-summing every goal.
+ *
+ * <p>The goal state metrics are computed from is kept alongside, so goals can be moved out of
+ * progress once they come due and {@code timeUntilDueDate} is taken at read time.
+ */
+class UserGoalMetrics {
+
+  private final int userId;
+  private final Map<Integer, GoalMetrics> goals = new HashMap<>();
+
+  // Completion, due date and pledge of each goal, as of its last change
+  private final Map<Integer, Goal> inputs = new HashMap<>();
+
+  private int completedGoals;
+  private int goalsInProgress;
+  private double moneyMade;
+
+  UserGoalMetrics(int userId) {
+    this.userId = userId;
+  }
+
+  /**
+   * Stores the metrics of a goal as of the given time
+   *
+   * @param goal
+   * @param nowSeconds UTC Time
+   * @return the stored metrics
+   */
+  synchronized GoalMetrics put(Goal goal, long nowSeconds) {
+    Goal input = inputOf(goal);
+    inputs.put(input.getGoalId(), input);
+    GoalMetrics metrics = MetricsService.computeGoalMetrics(input, nowSeconds);
+    put(metrics);
+    return metrics;
+  }
+
+  synchronized void put(GoalMetrics metrics) {
+    GoalMetrics previous = goals.put(metrics.getGoalGoalId(), metrics);
+    if (previous != null) {
+      subtract(previous);
+    }
+    add(metrics);
+  }
+
+  synchronized void remove(int goalId) {
+    inputs.remove(goalId);
+    GoalMetrics previous = goals.remove(goalId);
+    if (previous != null) {
+      subtract(previous);
+    }
+  }
+
+  /**
+   * Metrics of a goal as of the given time
+   *
+   * @param goalId
+   * @param nowSeconds UTC Time
+   * @return null when the user has no such goal
+   */
+  synchronized GoalMetrics get(int goalId, long nowSeconds) {
+    expire(goalId, nowSeconds);
+    GoalMetrics metrics = goals.get(goalId);
+    Goal input = inputs.get(goalId);
+    if (metrics == null || input == null) {
+      return metrics;
+    }
+    GoalMetrics current = MetricsService.copyOf(metrics);
+    current.setTimeUntilDueDate(MetricsService.timeUntil(input.getDueDate(), nowSeconds));
+    return current;
+  }
+
+  /**
+   * Stored metrics of a goal, with {@code timeUntilDueDate} as of their last change
+   *
+   * @param goalId
+   * @return null when the user has no such goal
+   */
+  synchronized GoalMetrics stored(int goalId) {
+    return goals.get(goalId);
+  }
+
+  /**
+   * Recomputes a goal that is still counted as in progress although its due date has passed
+   *
+   * @param goalId
+   * @param nowSeconds UTC Time
+   * @return the new metrics, null when nothing changed
+   */
+  synchronized GoalMetrics expire(int goalId, long nowSeconds) {
+    GoalMetrics metrics = goals.get(goalId);
+    Goal input = inputs.get(goalId);
+    if (metrics == null
+        || input == null
+        || !MetricsService.FLAG_SET.equals(metrics.getGoalInProgress())
+        || input.getDueDate() > nowSeconds) {
+      return null;
+    }
+    GoalMetrics expired = MetricsService.computeGoalMetrics(input, nowSeconds);
+    put(expired);
+    return expired;
+  }
+
+  /**
+   * {@link #expire(int, long)} for every goal
+   *
+   * @param nowSeconds UTC Time
+   * @return the new metrics of the goals that changed
+   */
+  synchronized List<GoalMetrics> expireAll(long nowSeconds) {
+    List<GoalMetrics> expired = new ArrayList<>();
+    for (Integer goalId : new ArrayList<>(goals.keySet())) {
+      GoalMetrics metrics = expire(goalId, nowSeconds);
+      if (metrics != null) {
+        expired.add(metrics);
+      }
+    }
+    return expired;
+  }
+
+  synchronized UserMetrics snapshot() {
+    return new UserMetrics(userId, goals.size(), completedGoals, goalsInProgress, moneyMade);
+  }
+
+  private void add(GoalMetrics metrics) {
+    completedGoals += flag(metrics.getGoalComplete());
+    goalsInProgress += flag(metrics.getGoalInProgress());
+    moneyMade += MetricsService.money(metrics.getMoneyMadeOnGoal());
+  }
+
+  private void subtract(GoalMetrics metrics) {
+    completedGoals -= flag(metrics.getGoalComplete());
+    goalsInProgress -= flag(metrics.getGoalInProgress());
+    moneyMade -= MetricsService.money(metrics.getMoneyMadeOnGoal());
+  }
+
+  // Only what the metrics depend on, the rest of the goal is not worth keeping in memory
+  private static Goal inputOf(Goal goal) {
+    Goal input = new Goal();
+    input.setGoalId(goal.getGoalId());
+    input.setUsersUserId(goal.getUsersUserId());
+    input.setDueDate(goal.getDueDate());
+    input.setPledgeAmount(goal.getPledgeAmount());
+    input.setGoalComplete(goal.getGoalComplete());
+    return input;
+  }
+
+  private static int flag(String value) {
+    return MetricsService.FLAG_SET.equals(value) ? 1 : 0;
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.metrics;
+
+/** Aggregated {@link com.habicus.core.model.GoalMetrics} for every goal a user owns */
+public class UserMetrics {
+
+  private final int userId;
+  private final int totalGoals;
+  private final int completedGoals;
+  private final int goalsInProgress;
+  private final double moneyMade;
+
+  public UserMetrics(
+      int userId, int totalGoals, int completedGoals, int goalsInProgress, double moneyMade) {
+    this.userId = userId;
+    this.totalGoals = totalGoals;
+    this.completedGoals = completedGoals;
+    this.goalsInProgress = goalsInProgress;
+    this.moneyMade = moneyMade;
+  }
+
+  public int getUserId() {
+    return userId;
+  }
+
+  public int getTotalGoals() {
+    return totalGoals;
+  }
+
+  public int getCompletedGoals() {
+    return completedGoals;
+  }
+
+  public int getGoalsInProgress() {
+    return goalsInProgress;
+  }
+
+  public double getMoneyMade() {
+    return moneyMade;
+  }
+}
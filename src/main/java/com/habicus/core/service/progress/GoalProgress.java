@@ -0,0 +1,123 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.progress;
+
+import java.math.BigDecimal;
+
+/** Progress on a single goal, folded from its {@link com.habicus.core.model.GoalEvent} */
+public class GoalProgress {
+
+  private int goalId;
+
+  // UTC Time
+  private long dueDate;
+
+  private int unitsDone;
+  private int checkIns;
+  private boolean completed;
+  private BigDecimal settledAmount = BigDecimal.ZERO;
+
+  // UTC Time, null until the matching event happened
+  private Long createdAt;
+  private Long completedAt;
+  private Long lastCheckInAt;
+
+  public GoalProgress() {}
+
+  public GoalProgress(int goalId, long dueDate) {
+    this.goalId = goalId;
+    this.dueDate = dueDate;
+  }
+
+  public int getGoalId() {
+    return goalId;
+  }
+
+  public void setGoalId(int goalId) {
+    this.goalId = goalId;
+  }
+
+  public long getDueDate() {
+    return dueDate;
+  }
+
+  public void setDueDate(long dueDate) {
+    this.dueDate = dueDate;
+  }
+
+  public int getUnitsDone() {
+    return unitsDone;
+  }
+
+  public void setUnitsDone(int unitsDone) {
+    this.unitsDone = unitsDone;
+  }
+
+  public int getCheckIns() {
+    return checkIns;
+  }
+
+  public void setCheckIns(int checkIns) {
+    this.checkIns = checkIns;
+  }
+
+  public boolean isCompleted() {
+    return completed;
+  }
+
+  public void setCompleted(boolean completed) {
+    this.completed = completed;
+  }
+
+  public BigDecimal getSettledAmount() {
+    return settledAmount;
+  }
+
+  public void setSettledAmount(BigDecimal settledAmount) {
+    this.settledAmount = settledAmount;
+  }
+
+  public Long getCreatedAt() {
+    return createdAt;
+  }
+
+  public void setCreatedAt(Long createdAt) {
+    this.createdAt = createdAt;
+  }
+
+  public Long getCompletedAt() {
+    return completedAt;
+  }
+
+  public void setCompletedAt(Long completedAt) {
+    this.completedAt = completedAt;
+  }
+
+  public Long getLastCheckInAt() {
+    return lastCheckInAt;
+  }
+
+  public void setLastCheckInAt(Long lastCheckInAt) {
+    this.lastCheckInAt = lastCheckInAt;
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.progress;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.habicus.core.dao.repository.GoalEventRepository;
+import com.habicus.core.dao.repository.GoalEventSnapshotRepository;
+import com.habicus.core.model.GoalEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Append-only store of {@link GoalEvent} with per-user snapshots.
+ *
+ * <p>Writers call {@link #record(List)} inside the transaction that changes the goal, so the log
+ * and the goal table never disagree. A user's {@link UserProgress} is read from their latest
+ * snapshot plus the events appended after it. Once that tail reaches {@code
+ * habicus.progress.snapshot-every} events a new snapshot is written, which keeps every read bounded
+ * no matter how long the history grows.
+ *
+ * <p>Event ids are allocated on insert but become visible on commit, so an id can show up after a
+ * higher one. Snapshots therefore only cover events older than {@code
+ * habicus.progress.snapshot-lag-seconds}, by which time every earlier transaction has committed.
+ *
+ * <p>{@link com.habicus.core.service.Goal.GoalService} keeps reading goals from the goal table.
+ * The log only records progress (created, checked in, completed, settled), not edits to a goal's
+ * title, pledge or interval, so a {@link com.habicus.core.model.Goal} cannot be rebuilt from it.
+ * Goal reads are also already served from the second-level cache and ETags. The folded state is
+ * exposed as {@code /api/v1/goals/progress} and feeds projection rebuilds through {@link #replay}.
+ */
+@Service
+public class ProgressService implements MeterBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProgressService.class);
+
+  @Autowired private GoalEventRepository goalEventRepository;
+  @Autowired private GoalEventSnapshotRepository goalEventSnapshotRepository;
+  @Autowired private PlatformTransactionManager transactionManager;
+  @Autowired private ObjectMapper objectMapper;
+
+  @Value("${habicus.progress.snapshot-every:200}")
+  private int snapshotEvery;
+
+  @Value("${habicus.progress.snapshot-lag-seconds:60}")
+  private long snapshotLagSeconds;
+
+  @Value("${habicus.progress.page-size:1000}")
+  private int pageSize;
+
+  // Events recorded per user by this node since its last snapshot of that user
+  private final Map<Integer, AtomicInteger> sinceSnapshot = new ConcurrentHashMap<>();
+
+  private final AtomicLong recorded = new AtomicLong();
+  private final AtomicLong snapshots = new AtomicLong();
+  private final AtomicLong replayed = new AtomicLong();
+
+  /**
+   * Appends events in list order. Call inside the transaction that makes the change they describe.
+   *
+   * @param events
+   */
+  public void record(List<GoalEvent> events) {
+    if (events.isEmpty()) {
+      return;
+    }
+    goalEventRepository.appendAll(events);
+    for (GoalEvent event : events) {
+      sinceSnapshot
+          .computeIfAbsent(event.getUsersUserId(), id -> new AtomicInteger())
+          .incrementAndGet();
+    }
+    recorded.addAndGet(events.size());
+  }
+
+  /**
+   * Current progress of every goal of a user, from the latest snapshot plus its tail
+   *
+   * @param userId
+   * @return
+   */
+  public UserProgress retrieveProgress(int userId) {
+    UserProgress state = loadSnapshot(userId).orElseGet(() -> new UserProgress(userId));
+    long cutoff = System.currentTimeMillis() / 1000 - snapshotLagSeconds;
+    int tail = 0;
+    boolean snapshotTaken = false;
+
+    List<GoalEvent> page;
+    do {
+      page =
+          goalEventRepository.findUserEventsAfter(
+              userId, state.getLastEventId(), PageRequest.of(0, pageSize));
+      for (GoalEvent event : page) {
+        if (!snapshotTaken && event.getOccurredAt() > cutoff) {
+          // Everything before this event is settled, a long tail is worth keeping
+          snapshotTaken = true;
+          if (tail >= snapshotEvery) {
+            saveSnapshot(state);
+          }
+        }
+        state.apply(event);
+        tail++;
+      }
+    } while (page.size() == pageSize);
+
+    if (!snapshotTaken && tail >= snapshotEvery) {
+      saveSnapshot(state);
+    }
+    replayed.addAndGet(tail);
+    return state;
+  }
+
+  /**
+   * Feeds every stored event after {@code afterEventId} to {@code consumer} in append order, for
+   * rebuilding a projection from scratch
+   *
+   * @param afterEventId 0 for the whole log
+   * @param consumer
+   * @return id of the last event consumed
+   */
+  public long replay(long afterEventId, Consumer<GoalEvent> consumer) {
+    long last = afterEventId;
+    List<GoalEvent> page;
+    do {
+      page = goalEventRepository.findEventsAfter(last, PageRequest.of(0, pageSize));
+      for (GoalEvent event : page) {
+        consumer.accept(event);
+        last = event.getEventId();
+      }
+    } while (page.size() == pageSize);
+    return last;
+  }
+
+  /** Snapshots users this node recorded many events for, so their next read stays short */
+  @Scheduled(fixedDelayString = "${habicus.progress.snapshot-interval-ms:60000}")
+  public void snapshotActiveUsers() {
+    List<Integer> due = new ArrayList<>();
+    sinceSnapshot.forEach(
+        (userId, count) -> {
+          if (count.get() >= snapshotEvery) {
+            due.add(userId);
+          }
+        });
+    for (Integer userId : due) {
+      try {
+        retrieveProgress(userId);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Failed snapshotting progress of user {}", userId, e);
+      }
+      // Events too recent for this snapshot are picked up by the next long read
+      sinceSnapshot.remove(userId);
+    }
+  }
+
+  private Optional<UserProgress> loadSnapshot(int userId) {
+    return goalEventSnapshotRepository
+        .findById(userId)
+        .map(
+            snapshot -> {
+              try {
+                return objectMapper.readValue(snapshot.getState(), UserProgress.class);
+              } catch (IOException e) {
+                // Unreadable snapshots are rebuilt from the log
+                LOGGER.warn("Ignoring progress snapshot of user {}", userId, e);
+                return null;
+              }
+            });
+  }
+
+  private void saveSnapshot(UserProgress state) {
+    String json;
+    try {
+      json = objectMapper.writeValueAsString(state);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+    long now = System.currentTimeMillis() / 1000;
+    new TransactionTemplate(transactionManager)
+        .execute(
+            status ->
+                goalEventSnapshotRepository.saveIfNewer(
+                    state.getUserId(), state.getLastEventId(), json, now));
+    sinceSnapshot.remove(state.getUserId());
+    snapshots.incrementAndGet();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("habicus.progress.events.recorded", recorded, AtomicLong::get)
+        .register(registry);
+    FunctionCounter.builder("habicus.progress.events.replayed", replayed, AtomicLong::get)
+        .description("Tail events folded on reads after the latest snapshot")
+        .register(registry);
+    FunctionCounter.builder("habicus.progress.snapshots", snapshots, AtomicLong::get)
+        .register(registry);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.progress;
+
+import com.habicus.core.model.GoalEvent;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Progress on every goal of a user, as of {@link #getLastEventId()}. Built by folding the user's
+ * events in append order, and serialized as the state of a snapshot.
+ */
+public class UserProgress {
+
+  private int userId;
+  private long lastEventId;
+  private Map<Integer, GoalProgress> goals = new TreeMap<>();
+
+  public UserProgress() {}
+
+  public UserProgress(int userId) {
+    this.userId = userId;
+  }
+
+  /**
+   * Folds the next event of this user into the state
+   *
+   * @param event
+   */
+  public void apply(GoalEvent event) {
+    GoalProgress goal =
+        goals.computeIfAbsent(
+            event.getGoalGoalId(), id -> new GoalProgress(id, event.getDueDate()));
+    switch (event.getEventType()) {
+      case GoalEvent.CREATED:
+        goal.setCreatedAt(event.getOccurredAt());
+        break;
+      case GoalEvent.CHECKED_IN:
+        goal.setUnitsDone(goal.getUnitsDone() + (event.getUnits() == null ? 0 : event.getUnits()));
+        goal.setCheckIns(goal.getCheckIns() + 1);
+        goal.setLastCheckInAt(event.getOccurredAt());
+        break;
+      case GoalEvent.COMPLETED:
+        goal.setCompleted(true);
+        goal.setCompletedAt(event.getOccurredAt());
+        break;
+      case GoalEvent.SETTLED:
+        if (event.getAmount() != null) {
+          goal.setSettledAmount(goal.getSettledAmount().add(event.getAmount()));
+        }
+        break;
+      default:
+        // Types added later are ignored by older readers
+        break;
+    }
+    lastEventId = event.getEventId();
+  }
+
+  public int getUserId() {
+    return userId;
+  }
+
+  public void setUserId(int userId) {
+    this.userId = userId;
+  }
+
+  public long getLastEventId() {
+    return lastEventId;
+  }
+
+  public void setLastEventId(long lastEventId) {
+    this.lastEventId = lastEventId;
+  }
+
+  public Map<Integer, GoalProgress> getGoals() {
+    return goals;
+  }
+
+  public void setGoals(Map<Integer, GoalProgress> goals) {
+    this.goals = new TreeMap<>(goals);
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.push;
+
+import com.habicus.core.event.GoalChangedEvent;
+import com.habicus.core.model.Goal;
+
+/** Latest state of a single goal pushed to connected clients */
+public class GoalDelta {
+
+  private final int goalId;
+
+  // UTC Time
+  private final long dueDate;
+
+  // State after the change, null when the goal was removed
+  private final Goal goal;
+
+  public GoalDelta(int goalId, long dueDate, Goal goal) {
+    this.goalId = goalId;
+    this.dueDate = dueDate;
+    this.goal = goal;
+  }
+
+  public static GoalDelta of(GoalChangedEvent event) {
+    return new GoalDelta(event.getGoalId(), event.getDueDate(), event.getGoal());
+  }
+
+  public int getGoalId() {
+    return goalId;
+  }
+
+  public long getDueDate() {
+    return dueDate;
+  }
+
+  public Goal getGoal() {
+    return goal;
+  }
+
+  public boolean isRemoved() {
+    return goal == null;
+  }
+}
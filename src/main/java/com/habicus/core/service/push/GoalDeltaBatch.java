@@ -0,0 +1,49 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.push;
+
+import java.util.List;
+
+/**
+ * Message sent to a session subscribed to {@link GoalPushService#GOALS_DESTINATION}. Either a list
+ * of goal deltas to apply in order, or a resync asking the client to read its goals again because
+ * more changed than its outbound queue holds.
+ */
+public class GoalDeltaBatch {
+
+  private final boolean resync;
+  private final List<GoalDelta> deltas;
+
+  public GoalDeltaBatch(boolean resync, List<GoalDelta> deltas) {
+    this.resync = resync;
+    this.deltas = deltas;
+  }
+
+  public boolean isResync() {
+    return resync;
+  }
+
+  public List<GoalDelta> getDeltas() {
+    return deltas;
+  }
+}
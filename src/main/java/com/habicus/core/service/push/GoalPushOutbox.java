@@ -0,0 +1,102 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.push;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Outbound goal deltas of one session. Deltas are keyed by goal id, so a goal changing many times
+ * between two pushes costs a single entry holding its latest state. Past {@code maxPending} goals
+ * the queue is dropped for a resync, which bounds memory per session however slowly its client
+ * reads.
+ */
+class GoalPushOutbox {
+
+  enum Offer {
+    QUEUED,
+    COALESCED,
+    OVERFLOWED
+  }
+
+  private final int userId;
+  private final int maxPending;
+
+  // Guarded by this, in order of each goal's latest change
+  private final LinkedHashMap<Integer, GoalDelta> pending = new LinkedHashMap<>();
+  private boolean resync;
+
+  GoalPushOutbox(int userId, int maxPending) {
+    this.userId = userId;
+    this.maxPending = maxPending;
+  }
+
+  int getUserId() {
+    return userId;
+  }
+
+  synchronized Offer offer(GoalDelta delta) {
+    if (resync) {
+      // The client reads every goal again anyway
+      return Offer.COALESCED;
+    }
+    boolean replaced = pending.remove(delta.getGoalId()) != null;
+    pending.put(delta.getGoalId(), delta);
+    if (pending.size() > maxPending) {
+      pending.clear();
+      resync = true;
+      return Offer.OVERFLOWED;
+    }
+    return replaced ? Offer.COALESCED : Offer.QUEUED;
+  }
+
+  /**
+   * Removes the oldest deltas for sending
+   *
+   * @param maxDeltas
+   * @return null when nothing is pending
+   */
+  synchronized GoalDeltaBatch drain(int maxDeltas) {
+    if (resync) {
+      resync = false;
+      return new GoalDeltaBatch(true, Collections.emptyList());
+    }
+    if (pending.isEmpty()) {
+      return null;
+    }
+    List<GoalDelta> deltas = new ArrayList<>(Math.min(maxDeltas, pending.size()));
+    Iterator<GoalDelta> oldest = pending.values().iterator();
+    while (oldest.hasNext() && deltas.size() < maxDeltas) {
+      deltas.add(oldest.next());
+      oldest.remove();
+    }
+    return new GoalDeltaBatch(false, deltas);
+  }
+
+  synchronized int size() {
+    return pending.size();
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.push;
+
+import com.habicus.core.event.GoalChangedEvent;
+import com.habicus.core.service.User.UserService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+/**
+ * Pushes goal changes to the STOMP sessions of their owner, so connected clients no longer poll
+ * {@code /api/v1/goals}.
+ *
+ * <p>A session subscribing to {@code /user/queue/goals} gets a {@link GoalPushOutbox}. Every
+ * committed {@link GoalChangedEvent} is offered to the outboxes of the goal's user, and every
+ * {@code habicus.push.flush-interval-ms} each outbox sends what it holds as one {@link
+ * GoalDeltaBatch}. Changes to the same goal within an interval coalesce into its latest state. An
+ * outbox that overflows sends a resync instead, and the transport's send buffer limit closes
+ * sessions that stop reading altogether.
+ */
+@Service
+public class GoalPushService implements MeterBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(GoalPushService.class);
+
+  public static final String GOALS_DESTINATION = "/queue/goals";
+
+  private static final String GOALS_SUBSCRIPTION = "/user" + GOALS_DESTINATION;
+
+  @Autowired private SimpMessagingTemplate messagingTemplate;
+  @Autowired private UserService userService;
+
+  @Value("${habicus.push.max-pending-goals:200}")
+  private int maxPendingGoals;
+
+  @Value("${habicus.push.max-batch:100}")
+  private int maxBatch;
+
+  private final Map<String, GoalPushOutbox> sessions = new ConcurrentHashMap<>();
+  private final Map<Integer, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+
+  private final AtomicLong queued = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+  private final AtomicLong overflows = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+
+  @EventListener
+  public void onSubscribe(SessionSubscribeEvent event) {
+    StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+    if (!GOALS_SUBSCRIPTION.equals(accessor.getDestination()) || event.getUser() == null) {
+      return;
+    }
+    int userId = userService.verifyAndRetrieveUser(event.getUser());
+    String sessionId = accessor.getSessionId();
+    sessions.computeIfAbsent(sessionId, id -> new GoalPushOutbox(userId, maxPendingGoals));
+    sessionsByUser.compute(
+        userId,
+        (id, userSessions) -> {
+          Set<String> updated = userSessions == null ? ConcurrentHashMap.newKeySet() : userSessions;
+          updated.add(sessionId);
+          return updated;
+        });
+  }
+
+  @EventListener
+  public void onDisconnect(SessionDisconnectEvent event) {
+    GoalPushOutbox outbox = sessions.remove(event.getSessionId());
+    if (outbox == null) {
+      return;
+    }
+    sessionsByUser.computeIfPresent(
+        outbox.getUserId(),
+        (id, userSessions) -> {
+          userSessions.remove(event.getSessionId());
+          return userSessions.isEmpty() ? null : userSessions;
+        });
+  }
+
+  /** Queues the change for every session of the goal's user */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onGoalChanged(GoalChangedEvent event) {
+    Set<String> userSessions = sessionsByUser.get(event.getUserId());
+    if (userSessions == null) {
+      return;
+    }
+    GoalDelta delta = GoalDelta.of(event);
+    for (String sessionId : userSessions) {
+      GoalPushOutbox outbox = sessions.get(sessionId);
+      if (outbox == null) {
+        continue;
+      }
+      switch (outbox.offer(delta)) {
+        case QUEUED:
+          queued.incrementAndGet();
+          break;
+        case COALESCED:
+          coalesced.incrementAndGet();
+          break;
+        case OVERFLOWED:
+          overflows.incrementAndGet();
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  /** Sends one batch to every session with pending deltas */
+  @Scheduled(fixedDelayString = "${habicus.push.flush-interval-ms:250}")
+  public void push() {
+    sessions.forEach(
+        (sessionId, outbox) -> {
+          GoalDeltaBatch batch = outbox.drain(maxBatch);
+          if (batch == null) {
+            return;
+          }
+          try {
+            messagingTemplate.convertAndSendToUser(
+                sessionId, GOALS_DESTINATION, batch, sessionHeaders(sessionId));
+            batches.incrementAndGet();
+          } catch (MessagingException e) {
+            // The session is going away, its disconnect event removes the outbox
+            LOGGER.debug("Failed pushing goal deltas to session {}", sessionId, e);
+          }
+        });
+  }
+
+  /**
+   * Number of sessions subscribed to goal changes
+   *
+   * @return
+   */
+  public int getSessions() {
+    return sessions.size();
+  }
+
+  // Targets the session itself rather than every session of its user
+  private static MessageHeaders sessionHeaders(String sessionId) {
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    accessor.setSessionId(sessionId);
+    accessor.setLeaveMutable(true);
+    return accessor.getMessageHeaders();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("habicus.push.sessions", this, GoalPushService::getSessions)
+        .description("STOMP sessions subscribed to goal changes")
+        .register(registry);
+    FunctionCounter.builder("habicus.push.deltas.queued", queued, AtomicLong::get)
+        .register(registry);
+    FunctionCounter.builder("habicus.push.deltas.coalesced", coalesced, AtomicLong::get)
+        .description("Goal changes merged into a delta already waiting to be sent")
+        .register(registry);
+    FunctionCounter.builder("habicus.push.overflows", overflows, AtomicLong::get)
+        .description("Outboxes dropped for a resync")
+        .register(registry);
+    FunctionCounter.builder("habicus.push.batches", batches, AtomicLong::get).register(registry);
+  }
+}
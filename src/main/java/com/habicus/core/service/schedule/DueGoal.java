@@ -0,0 +1,70 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.schedule;
+
+import java.util.Objects;
+
+/** Identity and due date of a {@link com.habicus.core.model.Goal} tracked by the due scheduler */
+public class DueGoal {
+
+  private final int goalId;
+  private final int userId;
+
+  // UTC Time
+  private final long dueDate;
+
+  public DueGoal(Integer goalId, Integer userId, Long dueDate) {
+    this.goalId = goalId;
+    this.userId = userId;
+    this.dueDate = dueDate;
+  }
+
+  public int getGoalId() {
+    return goalId;
+  }
+
+  public int getUserId() {
+    return userId;
+  }
+
+  public long getDueDate() {
+    return dueDate;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    DueGoal that = (DueGoal) o;
+    return goalId == that.goalId && userId == that.userId && dueDate == that.dueDate;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(goalId, userId, dueDate);
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.schedule;
+
+import com.habicus.core.dao.repository.GoalRepository;
+import com.habicus.core.event.GoalChangedEvent;
+import com.habicus.core.model.Goal;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Fires {@link GoalDueHandler} callbacks when incomplete goals pass their due date, without
+ * polling the goal table for every tick.
+ *
+ * <p>Goals due within {@code habicus.schedule.window-seconds} of now are held in a {@link
+ * HierarchicalTimingWheel} keyed by goal id. The window is extended from {@link GoalRepository}
+ * in small keyset pages as time moves on, and goal changes committed inside the loaded window
+ * reschedule or cancel their entry. Pages are read without holding the wheel's lock, changes
+ * committed meanwhile are recorded and win over the rows read. On startup goals that came due
+ * during the last {@code habicus.schedule.recovery-seconds} are loaded too and fire on the first
+ * tick.
+ */
+@Service
+public class GoalDueScheduler implements MeterBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(GoalDueScheduler.class);
+
+  @Autowired private GoalRepository goalRepository;
+  @Autowired private List<GoalDueHandler> handlers;
+
+  @Value("${habicus.schedule.wheel-size:64}")
+  private int wheelSize;
+
+  @Value("${habicus.schedule.window-seconds:86400}")
+  private long windowSeconds;
+
+  @Value("${habicus.schedule.load-step-seconds:60}")
+  private long loadStepSeconds;
+
+  @Value("${habicus.schedule.recovery-seconds:3600}")
+  private long recoverySeconds;
+
+  @Value("${habicus.schedule.page-size:1000}")
+  private int pageSize;
+
+  @Value("${habicus.schedule.batch-size:500}")
+  private int batchSize;
+
+  // Guards the wheel and the loaded window, handlers are called outside of it
+  private final Object lock = new Object();
+  private HierarchicalTimingWheel<Integer, DueGoal> wheel;
+
+  // Every incomplete goal due up to this time is in the wheel, UTC Time
+  private long loadedUntil;
+
+  // Latest change per goal committed while the window is being extended, null otherwise
+  private Map<Integer, GoalChangedEvent> changesWhileLoading;
+
+  private final AtomicLong fired = new AtomicLong();
+  private final AtomicLong loaded = new AtomicLong();
+
+  /** Advances the wheel to now, loading the next slice of the window when due */
+  @Scheduled(fixedDelayString = "${habicus.schedule.tick-ms:1000}")
+  public void tick() {
+    long now = nowSeconds();
+    long until = now + windowSeconds;
+    List<DueGoal> due;
+    try {
+      long from;
+      boolean extending;
+      synchronized (lock) {
+        if (wheel == null) {
+          wheel = new HierarchicalTimingWheel<>(1, wheelSize, now - recoverySeconds - 1);
+          loadedUntil = now - recoverySeconds - 1;
+        }
+        from = loadedUntil;
+        extending = until - from >= loadStepSeconds;
+        if (extending) {
+          changesWhileLoading = new HashMap<>();
+        }
+      }
+      if (extending) {
+        extend(from, until);
+      }
+      synchronized (lock) {
+        due = wheel.advance(now);
+      }
+    } catch (RuntimeException e) {
+      LOGGER.warn("Failed advancing the goal due scheduler", e);
+      return;
+    }
+    dispatch(due);
+  }
+
+  /**
+   * Keeps the wheel in line with committed goal changes. Goals due past the loaded window are
+   * picked up when the window reaches them.
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onGoalChanged(GoalChangedEvent event) {
+    synchronized (lock) {
+      if (wheel == null) {
+        return;
+      }
+      if (changesWhileLoading != null) {
+        changesWhileLoading.put(event.getGoalId(), event);
+      }
+      apply(event);
+    }
+  }
+
+  /**
+   * Number of goals currently waiting in the wheel
+   *
+   * @return
+   */
+  public int getScheduled() {
+    synchronized (lock) {
+      return wheel == null ? 0 : wheel.size();
+    }
+  }
+
+  // Only called holding lock
+  private void apply(GoalChangedEvent event) {
+    Goal goal = event.getGoal();
+    if (event.isRemoved()
+        || Goal.GOAL_COMPLETE.equals(goal.getGoalComplete())
+        || goal.getDueDate() > loadedUntil) {
+      wheel.cancel(event.getGoalId());
+    } else {
+      wheel.schedule(
+          goal.getGoalId(),
+          new DueGoal(goal.getGoalId(), goal.getUsersUserId(), goal.getDueDate()),
+          goal.getDueDate());
+    }
+  }
+
+  // Loads (from, until] outside of lock, then merges it with the changes committed meanwhile
+  private void extend(long from, long until) {
+    List<DueGoal> goals = new ArrayList<>();
+    try {
+      long afterDue = from;
+      int afterGoalId = Integer.MAX_VALUE;
+      while (true) {
+        List<DueGoal> page =
+            goalRepository.findIncompleteDueGoals(
+                afterDue, afterGoalId, until, Goal.GOAL_COMPLETE, PageRequest.of(0, pageSize));
+        goals.addAll(page);
+        if (page.size() < pageSize) {
+          break;
+        }
+        DueGoal last = page.get(page.size() - 1);
+        afterDue = last.getDueDate();
+        afterGoalId = last.getGoalId();
+      }
+    } catch (RuntimeException e) {
+      synchronized (lock) {
+        changesWhileLoading = null;
+      }
+      throw e;
+    }
+
+    synchronized (lock) {
+      Map<Integer, GoalChangedEvent> changes = changesWhileLoading;
+      changesWhileLoading = null;
+      for (DueGoal goal : goals) {
+        if (!changes.containsKey(goal.getGoalId())) {
+          wheel.schedule(goal.getGoalId(), goal, goal.getDueDate());
+        }
+      }
+      loadedUntil = until;
+      changes.values().forEach(this::apply);
+    }
+    loaded.addAndGet(goals.size());
+  }
+
+  private void dispatch(List<DueGoal> due) {
+    for (int from = 0; from < due.size(); from += batchSize) {
+      List<DueGoal> batch =
+          Collections.unmodifiableList(due.subList(from, Math.min(due.size(), from + batchSize)));
+      for (GoalDueHandler handler : handlers) {
+        try {
+          handler.onGoalsDue(batch);
+        } catch (RuntimeException e) {
+          LOGGER.warn("Goal due handler {} failed", handler.getClass().getName(), e);
+        }
+      }
+      fired.addAndGet(batch.size());
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("habicus.schedule.goals.scheduled", this, GoalDueScheduler::getScheduled)
+        .description("Incomplete goals waiting in the due timing wheel")
+        .register(registry);
+    FunctionCounter.builder("habicus.schedule.goals.loaded", loaded, AtomicLong::get)
+        .register(registry);
+    FunctionCounter.builder("habicus.schedule.goals.fired", fired, AtomicLong::get)
+        .description("Goals handed to due handlers")
+        .register(registry);
+  }
+
+  private static long nowSeconds() {
+    return System.currentTimeMillis() / 1000;
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.schedule;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel keeping an arbitrary number of deadlines with O(1) schedule and cancel.
+ *
+ * <p>Level 0 has {@code wheelSize} slots of one tick each. Every further level has slots as wide as
+ * the whole level below it, and is only created once a deadline needs it. When the clock reaches a
+ * higher level slot, its entries cascade down to the level that can resolve them, so advancing the
+ * clock by one tick touches at most one slot per level regardless of how many deadlines are held.
+ *
+ * <p>Deadlines are rounded up to the next tick, entries never fire early and at most one tick late.
+ * The wheel is unit agnostic (deadlines, ticks and the clock just have to agree) and not thread
+ * safe, callers synchronize around it.
+ */
+public class HierarchicalTimingWheel<K, V> {
+
+  private final long tick;
+  private final int wheelSize;
+
+  private final List<Slot<K, V>[]> levels = new ArrayList<>();
+  private final Map<K, Timer<K, V>> timers = new HashMap<>();
+
+  // Deadlines that were already due when scheduled, handed out on the next advance
+  private final Slot<K, V> overdue = new Slot<>();
+
+  private long currentTime;
+
+  public HierarchicalTimingWheel(long tick, int wheelSize, long startTime) {
+    if (tick <= 0 || wheelSize < 2) {
+      throw new IllegalArgumentException("Tick must be positive and the wheel at least 2 slots");
+    }
+    this.tick = tick;
+    this.wheelSize = wheelSize;
+    this.currentTime = startTime - Math.floorMod(startTime, tick);
+    levels.add(newLevel());
+  }
+
+  /**
+   * Schedules (or reschedules) the entry for a key
+   *
+   * @param key
+   * @param value handed back once the deadline passes
+   * @param deadline
+   */
+  public void schedule(K key, V value, long deadline) {
+    cancel(key);
+    Timer<K, V> timer = new Timer<>(key, value, roundUp(deadline));
+    timers.put(key, timer);
+    insert(timer);
+  }
+
+  /**
+   * Removes the entry for a key
+   *
+   * @param key
+   * @return whether an entry was scheduled
+   */
+  public boolean cancel(K key) {
+    Timer<K, V> timer = timers.remove(key);
+    if (timer == null) {
+      return false;
+    }
+    timer.slot.unlink(timer);
+    return true;
+  }
+
+  public boolean contains(K key) {
+    return timers.containsKey(key);
+  }
+
+  /**
+   * Moves the clock forward and returns every entry whose deadline is at or before it
+   *
+   * @param now
+   * @return entries ordered by the tick they came due in
+   */
+  public List<V> advance(long now) {
+    List<V> expired = new ArrayList<>();
+    drain(overdue, expired);
+    while (currentTime + tick <= now) {
+      currentTime += tick;
+      // Cascade from the widest level down so entries can fall through several levels at once
+      for (int level = levels.size() - 1; level > 0; level--) {
+        long levelTick = levelTick(level);
+        if (currentTime % levelTick == 0) {
+          Slot<K, V> slot = levels.get(level)[slotIndex(currentTime, levelTick)];
+          for (Timer<K, V> timer : slot.removeAll()) {
+            insert(timer);
+          }
+        }
+      }
+      // Entries cascading down with a deadline of exactly now land in overdue
+      drain(overdue, expired);
+      drain(levels.get(0)[slotIndex(currentTime, tick)], expired);
+    }
+    return expired;
+  }
+
+  public int size() {
+    return timers.size();
+  }
+
+  public long getCurrentTime() {
+    return currentTime;
+  }
+
+  private void insert(Timer<K, V> timer) {
+    if (timer.expiration <= currentTime) {
+      overdue.link(timer);
+      return;
+    }
+    for (int level = 0; ; level++) {
+      if (level == levels.size()) {
+        levels.add(newLevel());
+      }
+      long levelTick = levelTick(level);
+      long slotsAhead = timer.expiration / levelTick - currentTime / levelTick;
+      if (slotsAhead < wheelSize) {
+        levels.get(level)[slotIndex(timer.expiration, levelTick)].link(timer);
+        return;
+      }
+    }
+  }
+
+  private void drain(Slot<K, V> slot, List<V> expired) {
+    for (Timer<K, V> timer : slot.removeAll()) {
+      timers.remove(timer.key);
+      expired.add(timer.value);
+    }
+  }
+
+  private long levelTick(int level) {
+    long levelTick = tick;
+    for (int i = 0; i < level; i++) {
+      levelTick = Math.multiplyExact(levelTick, wheelSize);
+    }
+    return levelTick;
+  }
+
+  private int slotIndex(long time, long levelTick) {
+    return (int) Math.floorMod(time / levelTick, (long) wheelSize);
+  }
+
+  private long roundUp(long deadline) {
+    long remainder = Math.floorMod(deadline, tick);
+    return remainder == 0 ? deadline : deadline - remainder + tick;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Slot<K, V>[] newLevel() {
+    Slot<K, V>[] slots = new Slot[wheelSize];
+    for (int i = 0; i < wheelSize; i++) {
+      slots[i] = new Slot<>();
+    }
+    return slots;
+  }
+
+  private static class Timer<K, V> {
+    private final K key;
+    private final V value;
+    private final long expiration;
+
+    private Slot<K, V> slot;
+    private Timer<K, V> prev;
+    private Timer<K, V> next;
+
+    Timer(K key, V value, long expiration) {
+      this.key = key;
+      this.value = value;
+      this.expiration = expiration;
+    }
+  }
+
+  /** Intrusive doubly linked list so a cancelled timer can leave its slot in O(1) */
+  private static class Slot<K, V> {
+    private Timer<K, V> head;
+    private Timer<K, V> tail;
+
+    void link(Timer<K, V> timer) {
+      timer.slot = this;
+      timer.prev = tail;
+      timer.next = null;
+      if (tail == null) {
+        head = timer;
+      } else {
+        tail.next = timer;
+      }
+      tail = timer;
+    }
+
+    void unlink(Timer<K, V> timer) {
+      if (timer.prev == null) {
+        head = timer.next;
+      } else {
+        timer.prev.next = timer.next;
+      }
+      if (timer.next == null) {
+        tail = timer.prev;
+      } else {
+        timer.next.prev = timer.prev;
+      }
+      timer.slot = null;
+      timer.prev = null;
+      timer.next = null;
+    }
+
+    List<Timer<K, V>> removeAll() {
+      List<Timer<K, V>> removed = new ArrayList<>();
+      Timer<K, V> timer = head;
+      while (timer != null) {
+        Timer<K, V> next = timer.next;
+        timer.slot = null;
+        timer.prev = null;
+        timer.next = null;
+        removed.add(timer);
+        timer = next;
+      }
+      head = null;
+      tail = null;
+      return removed;
+    }
+  }
+}
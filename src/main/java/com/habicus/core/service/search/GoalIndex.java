@@ -0,0 +1,400 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over goal titles and descriptions. Every term maps to the sorted ids of the goals
+ * containing it, and the terms are kept sorted so a prefix is a range of the dictionary. A query
+ * matches goals containing every one of its terms, each either exactly, within a few edits, or,
+ * for the last term, as a prefix so results follow the user while they type.
+ *
+ * <p>Not thread safe, {@link GoalSearchService} guards the instance.
+ */
+class GoalIndex {
+
+  // Shortest last term expanded as a prefix, a single letter would match most of the dictionary
+  static final int MIN_PREFIX_LENGTH = 2;
+
+  // Dictionary terms a single query term may expand to, only counting terms of goals in scope
+  static final int MAX_EXPANSIONS = 64;
+
+  private static final double EXACT_WEIGHT = 1.0;
+  private static final double PREFIX_WEIGHT = 0.75;
+  private static final double FUZZY_WEIGHT = 0.5;
+  private static final double TITLE_BOOST = 2.0;
+
+  private final TreeMap<String, Postings> terms = new TreeMap<>();
+  private final Map<Integer, Postings> goalsByUser = new HashMap<>();
+  private final Map<Integer, Document> documents = new HashMap<>();
+
+  /**
+   * Indexes a goal, replacing what was indexed for it before
+   *
+   * @param goal
+   */
+  void put(SearchableGoal goal) {
+    int goalId = goal.getGoalId();
+    List<String> titleTerms = SearchTerms.of(goal.getTitle());
+    Map<String, Boolean> inTitle = new LinkedHashMap<>();
+    titleTerms.forEach(term -> inTitle.put(term, true));
+    SearchTerms.of(goal.getDescription()).forEach(term -> inTitle.putIfAbsent(term, false));
+
+    Document previous = documents.remove(goalId);
+    if (previous != null) {
+      for (Postings postings : previous.terms) {
+        // Only terms the goal no longer has, the rest keep their place
+        if (!inTitle.containsKey(postings.term)) {
+          unindex(postings, goalId);
+        }
+      }
+      if (previous.userId != goal.getUserId()) {
+        unindex(goalsByUser, previous.userId, goalId);
+      }
+    }
+
+    Postings[] documentTerms = new Postings[inTitle.size()];
+    Postings[] documentTitleTerms = new Postings[titleTerms.size()];
+    int i = 0;
+    int t = 0;
+    for (Map.Entry<String, Boolean> term : inTitle.entrySet()) {
+      Postings postings = terms.computeIfAbsent(term.getKey(), Postings::new);
+      postings.add(goalId);
+      documentTerms[i++] = postings;
+      if (term.getValue()) {
+        documentTitleTerms[t++] = postings;
+      }
+    }
+    goalsByUser.computeIfAbsent(goal.getUserId(), userId -> new Postings(null)).add(goalId);
+    documents.put(goalId, new Document(goal.getUserId(), documentTerms, documentTitleTerms));
+  }
+
+  /**
+   * Drops a goal from the index
+   *
+   * @param goalId
+   */
+  void remove(int goalId) {
+    Document document = documents.remove(goalId);
+    if (document == null) {
+      return;
+    }
+    for (Postings postings : document.terms) {
+      unindex(postings, goalId);
+    }
+    unindex(goalsByUser, document.userId, goalId);
+  }
+
+  /**
+   * Goals matching every term of a query, best match first. Title matches weigh more than
+   * description matches, exact matches more than prefix and fuzzy ones.
+   *
+   * @param query
+   * @param userId restricts results to the goals of this user, null searches every goal
+   * @param limit
+   * @return goal ids
+   */
+  List<Integer> search(String query, Integer userId, int limit) {
+    List<String> queryTerms = SearchTerms.of(query);
+    Postings userGoals = userId == null ? null : goalsByUser.get(userId);
+    if (queryTerms.isEmpty() || (userId != null && userGoals == null)) {
+      return Collections.emptyList();
+    }
+
+    List<List<Postings>> expansions = new ArrayList<>(queryTerms.size());
+    List<double[]> weights = new ArrayList<>(queryTerms.size());
+    for (int i = 0; i < queryTerms.size(); i++) {
+      List<Postings> matches = new ArrayList<>();
+      double[] matchWeights = new double[MAX_EXPANSIONS];
+      expand(queryTerms.get(i), i == queryTerms.size() - 1, userGoals, matches, matchWeights);
+      if (matches.isEmpty()) {
+        return Collections.emptyList();
+      }
+      expansions.add(matches);
+      weights.add(matchWeights);
+    }
+
+    // Start from the rarest term so the other terms only check its candidates
+    Integer[] order = new Integer[queryTerms.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparingLong(i -> postingsCount(expansions.get(i))));
+
+    Map<Integer, Double> scores =
+        candidates(expansions.get(order[0]), weights.get(order[0]), userId, userGoals);
+    for (int o = 1; o < order.length && !scores.isEmpty(); o++) {
+      List<Postings> matches = expansions.get(order[o]);
+      double[] matchWeights = weights.get(order[o]);
+      Iterator<Map.Entry<Integer, Double>> candidates = scores.entrySet().iterator();
+      while (candidates.hasNext()) {
+        Map.Entry<Integer, Double> candidate = candidates.next();
+        double weight = weight(candidate.getKey(), matches, matchWeights);
+        if (weight == 0) {
+          candidates.remove();
+        } else {
+          candidate.setValue(candidate.getValue() + weight);
+        }
+      }
+    }
+    return best(scores, limit);
+  }
+
+  int goals() {
+    return documents.size();
+  }
+
+  int terms() {
+    return terms.size();
+  }
+
+  // Dictionary terms a query term matches within scope, with the weight of each match
+  private void expand(
+      String term, boolean prefix, Postings scope, List<Postings> matches, double[] weights) {
+    Postings exact = terms.get(term);
+    if (exact != null && inScope(exact, scope)) {
+      weights[matches.size()] = EXACT_WEIGHT;
+      matches.add(exact);
+    }
+    if (prefix && term.length() >= MIN_PREFIX_LENGTH) {
+      for (Postings postings :
+          terms.subMap(term, false, term + Character.MAX_VALUE, false).values()) {
+        if (matches.size() == MAX_EXPANSIONS) {
+          return;
+        }
+        if (!inScope(postings, scope)) {
+          continue;
+        }
+        weights[matches.size()] = PREFIX_WEIGHT;
+        matches.add(postings);
+      }
+    }
+    int maxEdits = SearchTerms.maxEdits(term);
+    if (maxEdits == 0) {
+      return;
+    }
+    // Typos rarely hit the first letter, which keeps the scan to a small part of the dictionary
+    char first = term.charAt(0);
+    for (Postings postings :
+        terms
+            .subMap(String.valueOf(first), true, String.valueOf((char) (first + 1)), false)
+            .values()) {
+      if (matches.size() == MAX_EXPANSIONS) {
+        return;
+      }
+      if (postings == exact
+          || (prefix && postings.term.startsWith(term))
+          || !inScope(postings, scope)) {
+        continue;
+      }
+      int edits = SearchTerms.distance(term, postings.term, maxEdits);
+      if (edits <= maxEdits) {
+        weights[matches.size()] = FUZZY_WEIGHT / edits;
+        matches.add(postings);
+      }
+    }
+  }
+
+  private Map<Integer, Double> candidates(
+      List<Postings> matches, double[] weights, Integer userId, Postings userGoals) {
+    Map<Integer, Double> scores = new HashMap<>();
+    if (userGoals != null && userGoals.size() < postingsCount(matches)) {
+      for (int i = 0; i < userGoals.size(); i++) {
+        int goalId = userGoals.get(i);
+        double weight = weight(goalId, matches, weights);
+        if (weight > 0) {
+          scores.put(goalId, weight);
+        }
+      }
+      return scores;
+    }
+    for (int m = 0; m < matches.size(); m++) {
+      Postings postings = matches.get(m);
+      for (int i = 0; i < postings.size(); i++) {
+        int goalId = postings.get(i);
+        Document document = documents.get(goalId);
+        if (userId != null && document.userId != userId) {
+          continue;
+        }
+        scores.merge(goalId, weights[m] * document.boost(postings), Math::max);
+      }
+    }
+    return scores;
+  }
+
+  // Best weight of a goal among the matches of one query term, 0 when it has none
+  private double weight(int goalId, List<Postings> matches, double[] weights) {
+    double best = 0;
+    Document document = null;
+    for (int m = 0; m < matches.size(); m++) {
+      if (weights[m] * TITLE_BOOST > best && matches.get(m).contains(goalId)) {
+        document = document == null ? documents.get(goalId) : document;
+        best = Math.max(best, weights[m] * document.boost(matches.get(m)));
+      }
+    }
+    return best;
+  }
+
+  private static List<Integer> best(Map<Integer, Double> scores, int limit) {
+    Comparator<Map.Entry<Integer, Double>> ranking =
+        Comparator.<Map.Entry<Integer, Double>>comparingDouble(Map.Entry::getValue)
+            .thenComparing(Map.Entry::getKey);
+    PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(limit + 1, ranking);
+    for (Map.Entry<Integer, Double> score : scores.entrySet()) {
+      top.add(score);
+      if (top.size() > limit) {
+        top.poll();
+      }
+    }
+    List<Integer> goalIds = new ArrayList<>(top.size());
+    while (!top.isEmpty()) {
+      goalIds.add(top.poll().getKey());
+    }
+    // Newer goals first among equal scores
+    Collections.reverse(goalIds);
+    return goalIds;
+  }
+
+  // Whether a term has any goal in scope, a null scope being every goal
+  private static boolean inScope(Postings postings, Postings scope) {
+    if (scope == null) {
+      return true;
+    }
+    Postings smaller = postings.size() < scope.size() ? postings : scope;
+    Postings larger = smaller == postings ? scope : postings;
+    for (int i = 0; i < smaller.size(); i++) {
+      if (larger.contains(smaller.get(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long postingsCount(List<Postings> matches) {
+    long count = 0;
+    for (Postings postings : matches) {
+      count += postings.size();
+    }
+    return count;
+  }
+
+  private void unindex(Postings postings, int goalId) {
+    postings.remove(goalId);
+    if (postings.size() == 0) {
+      terms.remove(postings.term);
+    }
+  }
+
+  private static void unindex(Map<Integer, Postings> goalsByUser, int userId, int goalId) {
+    Postings userGoals = goalsByUser.get(userId);
+    if (userGoals != null) {
+      userGoals.remove(goalId);
+      if (userGoals.size() == 0) {
+        goalsByUser.remove(userId);
+      }
+    }
+  }
+
+  private static final class Document {
+    private final int userId;
+
+    // Shared with the dictionary, so a goal costs a reference per term rather than a string
+    private final Postings[] terms;
+    private final Postings[] titleTerms;
+
+    private Document(int userId, Postings[] terms, Postings[] titleTerms) {
+      this.userId = userId;
+      this.terms = terms;
+      this.titleTerms = titleTerms;
+    }
+
+    private double boost(Postings term) {
+      for (Postings titleTerm : titleTerms) {
+        if (titleTerm == term) {
+          return TITLE_BOOST;
+        }
+      }
+      return 1.0;
+    }
+  }
+
+  /** Sorted goal ids, appends are cheap since new goals get the highest ids */
+  private static final class Postings {
+    private final String term;
+    private int[] goalIds = new int[2];
+    private int size;
+
+    private Postings(String term) {
+      this.term = term;
+    }
+
+    private void add(int goalId) {
+      int index = Arrays.binarySearch(goalIds, 0, size, goalId);
+      if (index >= 0) {
+        return;
+      }
+      index = -index - 1;
+      if (size == goalIds.length) {
+        goalIds = Arrays.copyOf(goalIds, size * 2);
+      }
+      System.arraycopy(goalIds, index, goalIds, index + 1, size - index);
+      goalIds[index] = goalId;
+      size++;
+    }
+
+    private void remove(int goalId) {
+      int index = Arrays.binarySearch(goalIds, 0, size, goalId);
+      if (index < 0) {
+        return;
+      }
+      System.arraycopy(goalIds, index + 1, goalIds, index, size - index - 1);
+      size--;
+      if (goalIds.length > 8 && size < goalIds.length / 4) {
+        goalIds = Arrays.copyOf(goalIds, goalIds.length / 2);
+      }
+    }
+
+    private boolean contains(int goalId) {
+      return Arrays.binarySearch(goalIds, 0, size, goalId) >= 0;
+    }
+
+    private int size() {
+      return size;
+    }
+
+    private int get(int index) {
+      return goalIds[index];
+    }
+  }
+}
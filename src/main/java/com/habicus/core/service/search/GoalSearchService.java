@@ -0,0 +1,271 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.search;
+
+import com.habicus.core.dao.repository.GoalRepository;
+import com.habicus.core.event.GoalChangedEvent;
+import com.habicus.core.exception.API.InvalidRequestException;
+import com.habicus.core.model.Goal;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Full-text search over goal titles and descriptions, served from a {@link GoalIndex} held in
+ * memory so queries never scan the goal table.
+ *
+ * <p>The index is loaded from the goal table in the background once the application is ready and
+ * kept current from every committed {@link GoalChangedEvent}. Goals changed while it loads keep
+ * the state of their event rather than the possibly older row read by the load. Searches made
+ * before the load finishes are refused rather than answered from a partial index.
+ */
+@Service
+public class GoalSearchService implements MeterBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(GoalSearchService.class);
+
+  private static final int LOAD_CHUNK_SIZE = 1000;
+
+  @Autowired private GoalRepository goalRepository;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Value("${habicus.search.max-limit:50}")
+  private int maxLimit;
+
+  private final GoalIndex index = new GoalIndex();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // Guarded by lock
+  private boolean ready;
+  private Set<Integer> changedWhileLoading;
+
+  private final AtomicLong searches = new AtomicLong();
+  private final AtomicLong searchNanos = new AtomicLong();
+
+  /**
+   * Goals matching every term of a query, best match first. The last term also matches as a
+   * prefix and longer terms tolerate typos.
+   *
+   * @param query
+   * @param userId restricts results to the goals of this user, null searches every goal
+   * @param limit
+   * @return
+   */
+  public List<Goal> search(String query, Integer userId, int limit) {
+    if (limit < 1 || limit > maxLimit) {
+      throw new InvalidRequestException(
+          "Limit must be between 1 and " + maxLimit, HttpStatus.BAD_REQUEST);
+    }
+    if (query == null || query.trim().isEmpty()) {
+      throw new InvalidRequestException("Search query must not be empty", HttpStatus.BAD_REQUEST);
+    }
+
+    long started = System.nanoTime();
+    List<Integer> goalIds;
+    lock.readLock().lock();
+    try {
+      if (!ready) {
+        throw new InvalidRequestException(
+            "Goal search is still loading, try again shortly", HttpStatus.SERVICE_UNAVAILABLE);
+      }
+      goalIds = index.search(query, userId, limit);
+    } finally {
+      lock.readLock().unlock();
+    }
+    searches.incrementAndGet();
+    searchNanos.addAndGet(System.nanoTime() - started);
+
+    if (goalIds.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Map<Integer, Goal> goals = new HashMap<>();
+    goalRepository.findByGoalIdIn(goalIds).forEach(goal -> goals.put(goal.getGoalId(), goal));
+    List<Goal> ranked = new ArrayList<>(goalIds.size());
+    for (Integer goalId : goalIds) {
+      Goal goal = goals.get(goalId);
+      // Removed since the index lookup
+      if (goal != null) {
+        ranked.add(goal);
+      }
+    }
+    return ranked;
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onGoalChanged(GoalChangedEvent event) {
+    lock.writeLock().lock();
+    try {
+      if (event.isRemoved()) {
+        index.remove(event.getGoalId());
+      } else {
+        Goal goal = event.getGoal();
+        index.put(
+            new SearchableGoal(
+                goal.getGoalId(), goal.getUsersUserId(), goal.getTitle(), goal.getDescription()));
+      }
+      if (changedWhileLoading != null) {
+        changedWhileLoading.add(event.getGoalId());
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Loads the index in the background so startup does not wait for it */
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadOnStartup() {
+    ExecutorService loader =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "goal-search-load");
+              thread.setDaemon(true);
+              return thread;
+            });
+    loader.execute(
+        () -> {
+          try {
+            load();
+          } catch (RuntimeException e) {
+            LOGGER.error("Failed loading the goal search index", e);
+          }
+        });
+    loader.shutdown();
+  }
+
+  /** Indexes every goal in the goal table */
+  public void load() {
+    lock.writeLock().lock();
+    try {
+      changedWhileLoading = new HashSet<>();
+    } finally {
+      lock.writeLock().unlock();
+    }
+    long started = System.currentTimeMillis();
+    try {
+      TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+      readOnly.setReadOnly(true);
+      readOnly.execute(
+          status -> {
+            List<SearchableGoal> chunk = new ArrayList<>(LOAD_CHUNK_SIZE);
+            try (Stream<SearchableGoal> goals = goalRepository.streamSearchableGoals()) {
+              goals.forEach(
+                  goal -> {
+                    chunk.add(goal);
+                    if (chunk.size() == LOAD_CHUNK_SIZE) {
+                      index(chunk);
+                    }
+                  });
+            }
+            index(chunk);
+            return null;
+          });
+      lock.writeLock().lock();
+      try {
+        ready = true;
+        LOGGER.info(
+            "Indexed {} goals for search in {}ms",
+            index.goals(),
+            System.currentTimeMillis() - started);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    } finally {
+      lock.writeLock().lock();
+      try {
+        changedWhileLoading = null;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  // Takes the write lock per chunk so changes and searches are not held up for the whole load
+  private void index(List<SearchableGoal> chunk) {
+    lock.writeLock().lock();
+    try {
+      for (SearchableGoal goal : chunk) {
+        if (!changedWhileLoading.contains(goal.getGoalId())) {
+          index.put(goal);
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+    chunk.clear();
+  }
+
+  private <T> T read(Supplier<T> reader) {
+    lock.readLock().lock();
+    try {
+      return reader.get();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("habicus.search.goals", this, service -> service.read(index::goals))
+        .description("Goals in the search index")
+        .register(registry);
+    Gauge.builder("habicus.search.terms", this, service -> service.read(index::terms))
+        .description("Distinct terms in the search index")
+        .register(registry);
+    FunctionTimer.builder(
+            "habicus.search.queries",
+            this,
+            service -> service.searches.get(),
+            service -> service.searchNanos.get(),
+            TimeUnit.NANOSECONDS)
+        .description("Index lookups, excluding loading the matched goals")
+        .register(registry);
+  }
+}
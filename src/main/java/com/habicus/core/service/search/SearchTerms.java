@@ -0,0 +1,119 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Splits text into index terms: lower cased, accents removed, broken on anything that is not a
+ * letter or digit. Goals and queries go through the same rules so their terms line up.
+ */
+final class SearchTerms {
+
+  // Longer runs are cut, nobody searches by a 200 character token
+  static final int MAX_TERM_LENGTH = 32;
+
+  private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+  private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private SearchTerms() {}
+
+  /**
+   * Distinct terms of a text in the order they first appear
+   *
+   * @param text may be null
+   * @return
+   */
+  static List<String> of(String text) {
+    if (text == null || text.isEmpty()) {
+      return new ArrayList<>();
+    }
+    String folded =
+        MARKS
+            .matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+            .replaceAll("")
+            .toLowerCase(Locale.ROOT);
+    Set<String> terms = new LinkedHashSet<>();
+    for (String term : SEPARATORS.split(folded)) {
+      if (!term.isEmpty()) {
+        terms.add(term.length() > MAX_TERM_LENGTH ? term.substring(0, MAX_TERM_LENGTH) : term);
+      }
+    }
+    return new ArrayList<>(terms);
+  }
+
+  /**
+   * Edits allowed when fuzzy matching a query term, fewer for short terms where a single edit
+   * already changes the word
+   *
+   * @param term
+   * @return
+   */
+  static int maxEdits(String term) {
+    if (term.length() < 4) {
+      return 0;
+    }
+    return term.length() < 8 ? 1 : 2;
+  }
+
+  /**
+   * Levenshtein distance, giving up early once it exceeds {@code max}
+   *
+   * @param a
+   * @param b
+   * @param max
+   * @return the distance, or {@code max + 1} when it is larger than {@code max}
+   */
+  static int distance(String a, String b, int max) {
+    if (Math.abs(a.length() - b.length()) > max) {
+      return max + 1;
+    }
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      int rowMin = current[0];
+      for (int j = 1; j <= b.length(); j++) {
+        int substitute = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+        current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+        rowMin = Math.min(rowMin, current[j]);
+      }
+      if (rowMin > max) {
+        return max + 1;
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return Math.min(previous[b.length()], max + 1);
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.search;
+
+/** The text of a goal as it is indexed for search */
+public class SearchableGoal {
+
+  private final int goalId;
+  private final int userId;
+  private final String title;
+  private final String description;
+
+  /** Also used by JPQL constructor expressions */
+  public SearchableGoal(int goalId, int userId, String title, String description) {
+    this.goalId = goalId;
+    this.userId = userId;
+    this.title = title;
+    this.description = description;
+  }
+
+  public int getGoalId() {
+    return goalId;
+  }
+
+  public int getUserId() {
+    return userId;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.settlement;
+
+import java.math.BigDecimal;
+
+/** Outcome of a pledge settlement run */
+public class PledgeSettlementReport {
+
+  private final long goalsRead;
+  private final long ledgerRows;
+  private final BigDecimal amountSettled;
+  private final int chunks;
+  private final long elapsedMillis;
+
+  public PledgeSettlementReport(
+      long goalsRead, long ledgerRows, BigDecimal amountSettled, int chunks, long elapsedMillis) {
+    this.goalsRead = goalsRead;
+    this.ledgerRows = ledgerRows;
+    this.amountSettled = amountSettled;
+    this.chunks = chunks;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public long getGoalsRead() {
+    return goalsRead;
+  }
+
+  public long getLedgerRows() {
+    return ledgerRows;
+  }
+
+  public BigDecimal getAmountSettled() {
+    return amountSettled;
+  }
+
+  public int getChunks() {
+    return chunks;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  /**
+   * Ledger rows written per second of wall clock time
+   *
+   * @return
+   */
+  public double getRowsPerSecond() {
+    return elapsedMillis == 0 ? ledgerRows * 1000.0 : ledgerRows * 1000.0 / elapsedMillis;
+  }
+}
@@ -0,0 +1,319 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.settlement;
+
+import com.habicus.core.dao.repository.GoalMetricsRepository;
+import com.habicus.core.dao.repository.GoalRepository;
+import com.habicus.core.dao.repository.PledgeLedgerRepository;
+import com.habicus.core.model.Goal;
+import com.habicus.core.model.GoalEvent;
+import com.habicus.core.model.PledgeLedgerEntry;
+import com.habicus.core.service.Goal.GoalInterval;
+import com.habicus.core.service.Goal.RecurrenceService;
+import com.habicus.core.service.checkin.CheckInService;
+import com.habicus.core.service.metrics.MetricsService;
+import com.habicus.core.service.progress.ProgressService;
+import com.habicus.core.service.schedule.DueGoal;
+import com.habicus.core.service.schedule.GoalDueHandler;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Settles the pledges of goals that passed their due date incomplete.
+ *
+ * <p>Unsettled goals are read in keyset chunks of {@code habicus.settlement.chunk-size}. Each
+ * chunk is read, written to {@code pledge_ledger} and reflected in {@code
+ * goal_metrics.money_made_on_goal} using JDBC batches inside its own transaction, so a failure
+ * only rolls back one chunk. A goal is settled at most once per due date: the read skips cycles
+ * that already have a ledger entry and the ledger's unique key drops any duplicate insert, so runs
+ * can be repeated safely.
+ *
+ * <p>Occurrences of a recurring goal that were never stored are settled by expanding the series
+ * template over the lookback window, skipping due dates that are already settled or stored.
+ *
+ * <p>Goals are settled as the {@link com.habicus.core.service.schedule.GoalDueScheduler} reports
+ * them due, and a daily sweep over the last {@code habicus.settlement.lookback-seconds} catches
+ * anything missed while the application was down.
+ */
+@Service
+public class PledgeSettlementService implements GoalDueHandler, MeterBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PledgeSettlementService.class);
+
+  @Autowired private PledgeLedgerRepository pledgeLedgerRepository;
+  @Autowired private GoalRepository goalRepository;
+  @Autowired private GoalMetricsRepository goalMetricsRepository;
+  @Autowired private MetricsService metricsService;
+  @Autowired private CheckInService checkInService;
+  @Autowired private ProgressService progressService;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Value("${habicus.settlement.chunk-size:1000}")
+  private int chunkSize;
+
+  @Value("${habicus.settlement.lookback-seconds:604800}")
+  private long lookbackSeconds;
+
+  private final AtomicLong settledRows = new AtomicLong();
+  private final AtomicLong skippedRows = new AtomicLong();
+
+  /** Daily sweep once the previous goal cycle has closed */
+  @Scheduled(cron = "${habicus.settlement.cron:0 5 0 * * *}", zone = "UTC")
+  public void settleScheduled() {
+    try {
+      settleMissed();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Scheduled pledge settlement failed", e);
+    }
+  }
+
+  /**
+   * Settles every missed goal due within the lookback window
+   *
+   * @return
+   */
+  public synchronized PledgeSettlementReport settleMissed() {
+    long start = System.currentTimeMillis();
+    long now = start / 1000;
+    Run run = new Run();
+    // Buffered check-ins may complete goals that would otherwise be settled as missed
+    checkInService.flush();
+
+    long afterDue = now - lookbackSeconds;
+    int afterGoalId = Integer.MAX_VALUE;
+    while (true) {
+      long fromDue = afterDue;
+      int fromGoalId = afterGoalId;
+      List<UnsettledPledge> chunk =
+          settleChunk(
+              run, () -> pledgeLedgerRepository.findUnsettled(fromDue, fromGoalId, now, chunkSize));
+      if (chunk.size() < chunkSize) {
+        break;
+      }
+      UnsettledPledge last = chunk.get(chunk.size() - 1);
+      afterDue = last.getDueDate();
+      afterGoalId = last.getGoalId();
+    }
+    settleVirtualOccurrences(run, now - lookbackSeconds, now);
+
+    PledgeSettlementReport report = run.report(System.currentTimeMillis() - start);
+    LOGGER.info(
+        "Settled {} pledges of {} missed goals in {} chunks, {}ms ({} rows/s)",
+        report.getLedgerRows(),
+        report.getGoalsRead(),
+        report.getChunks(),
+        report.getElapsedMillis(),
+        Math.round(report.getRowsPerSecond()));
+    return report;
+  }
+
+  /** Settles goals as soon as the due scheduler reports them */
+  @Override
+  public synchronized void onGoalsDue(List<DueGoal> goals) {
+    long now = System.currentTimeMillis() / 1000;
+    Run run = new Run();
+    checkInService.flush();
+    for (int from = 0; from < goals.size(); from += chunkSize) {
+      List<Integer> goalIds =
+          goals
+              .subList(from, Math.min(goals.size(), from + chunkSize))
+              .stream()
+              .map(DueGoal::getGoalId)
+              .collect(Collectors.toList());
+      settleChunk(run, () -> pledgeLedgerRepository.findUnsettledByGoalIds(goalIds, now));
+    }
+  }
+
+  /** Settles occurrences due within {@code (from, until]} that only exist virtually */
+  private void settleVirtualOccurrences(Run run, long from, long until) {
+    int afterGoalId = 0;
+    while (true) {
+      List<Goal> templates =
+          goalRepository.findPledgedTemplatesAfter(
+              afterGoalId,
+              RecurrenceService.INTERVAL_VALUES,
+              until,
+              PageRequest.of(0, chunkSize));
+      if (templates.isEmpty()) {
+        break;
+      }
+      settleChunk(run, () -> virtualOccurrences(templates, from, until));
+      afterGoalId = templates.get(templates.size() - 1).getGoalId();
+    }
+  }
+
+  private List<UnsettledPledge> virtualOccurrences(List<Goal> templates, long from, long until) {
+    Map<Integer, Set<Long>> recorded =
+        pledgeLedgerRepository.findRecordedCycles(
+            templates.stream().map(Goal::getGoalId).collect(Collectors.toList()), from, until);
+    List<UnsettledPledge> pledges = new ArrayList<>();
+    for (Goal template : templates) {
+      Optional<GoalInterval> interval = RecurrenceService.templateInterval(template);
+      if (!interval.isPresent()) {
+        continue;
+      }
+      long anchor = template.getDueDate();
+      Set<Long> skip = recorded.getOrDefault(template.getGoalId(), Collections.emptySet());
+      for (long dueDate :
+          interval.get().dueDatesBetween(anchor, from + 1, until + 1, Integer.MAX_VALUE)) {
+        // The template row is the first occurrence and settles like any stored goal
+        if (dueDate != anchor && !skip.contains(dueDate)) {
+          pledges.add(
+              new UnsettledPledge(
+                  template.getGoalId(),
+                  template.getGoalId(),
+                  template.getUsersUserId(),
+                  dueDate,
+                  template.getPledgeAmount(),
+                  false));
+        }
+      }
+    }
+    return pledges;
+  }
+
+  private List<UnsettledPledge> settleChunk(Run run, ChunkReader reader) {
+    long settledAt = System.currentTimeMillis() / 1000;
+    // Tells this chunk's ledger rows apart from those of an overlapping run
+    long settlementRun = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    List<UnsettledPledge> forfeited = new ArrayList<>();
+    List<PledgeLedgerEntry> written = new ArrayList<>();
+    List<UnsettledPledge> chunk =
+        new TransactionTemplate(transactionManager)
+            .execute(
+                status -> {
+                  List<UnsettledPledge> pledges = reader.read();
+                  List<PledgeLedgerEntry> entries = new ArrayList<>(pledges.size());
+                  for (UnsettledPledge pledge : pledges) {
+                    entries.add(toEntry(pledge, settledAt, settlementRun));
+                  }
+
+                  boolean[] inserted = pledgeLedgerRepository.insertIgnoringSettled(entries);
+                  Map<Integer, String> moneyMade = new HashMap<>();
+                  List<GoalEvent> events = new ArrayList<>();
+                  for (int i = 0; i < inserted.length; i++) {
+                    if (!inserted[i]) {
+                      continue;
+                    }
+                    PledgeLedgerEntry entry = entries.get(i);
+                    written.add(entry);
+                    events.add(settledEvent(pledges.get(i), entry));
+                    // Virtual occurrences have no goal row, hence no metrics row either
+                    if (pledges.get(i).isStored()) {
+                      forfeited.add(pledges.get(i));
+                      moneyMade.put(
+                          pledges.get(i).getGoalId(), MetricsService.forfeited(entry.getAmount()));
+                    }
+                  }
+                  goalMetricsRepository.updateMoneyMade(moneyMade);
+                  progressService.record(events);
+                  return pledges;
+                });
+
+    for (UnsettledPledge pledge : forfeited) {
+      metricsService.onPledgeForfeited(
+          pledge.getUserId(), pledge.getGoalId(), BigDecimal.valueOf(pledge.getPledgeAmount()));
+    }
+    run.add(chunk.size(), written);
+    settledRows.addAndGet(written.size());
+    skippedRows.addAndGet(chunk.size() - written.size());
+    return chunk;
+  }
+
+  private static GoalEvent settledEvent(UnsettledPledge pledge, PledgeLedgerEntry entry) {
+    GoalEvent event =
+        GoalEvent.of(
+            GoalEvent.SETTLED, pledge.getUserId(), pledge.getGoalId(), pledge.getDueDate());
+    event.setAmount(entry.getAmount());
+    return event;
+  }
+
+  private static PledgeLedgerEntry toEntry(
+      UnsettledPledge pledge, long settledAt, long settlementRun) {
+    PledgeLedgerEntry entry = new PledgeLedgerEntry();
+    entry.setGoalGoalId(pledge.getSeriesGoalId());
+    entry.setUsersUserId(pledge.getUserId());
+    entry.setCycleDueDate(pledge.getDueDate());
+    // The whole pledge is owed for a missed cycle
+    entry.setAmount(BigDecimal.valueOf(pledge.getPledgeAmount()));
+    entry.setSettledAt(settledAt);
+    entry.setSettlementRun(settlementRun);
+    return entry;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("habicus.settlement.ledger.rows", settledRows, AtomicLong::get)
+        .description("Pledge ledger rows written")
+        .register(registry);
+    FunctionCounter.builder("habicus.settlement.ledger.duplicates", skippedRows, AtomicLong::get)
+        .description("Pledges dropped because their goal cycle was already settled")
+        .register(registry);
+  }
+
+  private interface ChunkReader {
+    List<UnsettledPledge> read();
+  }
+
+  /** Running totals of a single settlement run */
+  private static class Run {
+    private long goalsRead;
+    private long ledgerRows;
+    private BigDecimal amount = BigDecimal.ZERO;
+    private int chunks;
+
+    void add(int read, List<PledgeLedgerEntry> written) {
+      goalsRead += read;
+      ledgerRows += written.size();
+      for (PledgeLedgerEntry entry : written) {
+        amount = amount.add(entry.getAmount());
+      }
+      chunks++;
+    }
+
+    PledgeSettlementReport report(long elapsedMillis) {
+      return new PledgeSettlementReport(goalsRead, ledgerRows, amount, chunks, elapsedMillis);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.settlement;
+
+/** Pledge of a missed goal cycle that has no ledger entry yet */
+public class UnsettledPledge {
+
+  // Stored goal row, or the series template when the occurrence only exists virtually
+  private final int goalId;
+
+  // Template of the series for recurring goals, the goal itself otherwise
+  private final int seriesGoalId;
+
+  private final int userId;
+
+  // UTC Time
+  private final long dueDate;
+
+  private final double pledgeAmount;
+  private final boolean stored;
+
+  public UnsettledPledge(
+      int goalId,
+      int seriesGoalId,
+      int userId,
+      long dueDate,
+      double pledgeAmount,
+      boolean stored) {
+    this.goalId = goalId;
+    this.seriesGoalId = seriesGoalId;
+    this.userId = userId;
+    this.dueDate = dueDate;
+    this.pledgeAmount = pledgeAmount;
+    this.stored = stored;
+  }
+
+  public int getGoalId() {
+    return goalId;
+  }
+
+  public int getSeriesGoalId() {
+    return seriesGoalId;
+  }
+
+  public int getUserId() {
+    return userId;
+  }
+
+  public long getDueDate() {
+    return dueDate;
+  }
+
+  public double getPledgeAmount() {
+    return pledgeAmount;
+  }
+
+  /**
+   * Whether the occurrence is backed by a goal row, virtual occurrences of a recurring goal have no
+   * row and no metrics
+   *
+   * @return
+   */
+  public boolean isStored() {
+    return stored;
+  }
+}
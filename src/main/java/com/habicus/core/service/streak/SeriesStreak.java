@@ -0,0 +1,78 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.streak;
+
+/** Streaks of a recurring goal series, counted in consecutive completed cycles */
+public class SeriesStreak {
+
+  private final int seriesGoalId;
+  private final String goalInterval;
+
+  // Due date of the first cycle, UTC Time
+  private final long firstDueDate;
+
+  private final int currentStreak;
+  private final int longestStreak;
+
+  // Due date of the last completed or missed cycle counted, UTC Time, 0 before the first one
+  private final long lastCycleDue;
+
+  public SeriesStreak(
+      int seriesGoalId,
+      String goalInterval,
+      long firstDueDate,
+      int currentStreak,
+      int longestStreak,
+      long lastCycleDue) {
+    this.seriesGoalId = seriesGoalId;
+    this.goalInterval = goalInterval;
+    this.firstDueDate = firstDueDate;
+    this.currentStreak = currentStreak;
+    this.longestStreak = longestStreak;
+    this.lastCycleDue = lastCycleDue;
+  }
+
+  public int getSeriesGoalId() {
+    return seriesGoalId;
+  }
+
+  public String getGoalInterval() {
+    return goalInterval;
+  }
+
+  public long getFirstDueDate() {
+    return firstDueDate;
+  }
+
+  public int getCurrentStreak() {
+    return currentStreak;
+  }
+
+  public int getLongestStreak() {
+    return longestStreak;
+  }
+
+  public long getLastCycleDue() {
+    return lastCycleDue;
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.streak;
+
+/** Outcome of a full {@link StreakService#backfill()} */
+public class StreakBackfillReport {
+
+  private final int users;
+  private final long series;
+  private final int failedUsers;
+  private final long elapsedMillis;
+
+  public StreakBackfillReport(int users, long series, int failedUsers, long elapsedMillis) {
+    this.users = users;
+    this.series = series;
+    this.failedUsers = failedUsers;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public int getUsers() {
+    return users;
+  }
+
+  public long getSeries() {
+    return series;
+  }
+
+  public int getFailedUsers() {
+    return failedUsers;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+}
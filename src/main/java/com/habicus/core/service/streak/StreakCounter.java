@@ -0,0 +1,86 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.streak;
+
+/**
+ * Current and longest streak of a series, folded one decided cycle at a time. Cycles must be fed
+ * in due date order, a cycle due at or before the last one folded is ignored. {@code
+ * GoalMetricsRepositoryImpl} applies the same rule in SQL.
+ */
+class StreakCounter {
+
+  private int current;
+  private int longest;
+
+  // UTC Time, 0 before the first cycle
+  private long lastCycleDue;
+
+  StreakCounter() {}
+
+  StreakCounter(int current, int longest, long lastCycleDue) {
+    this.current = current;
+    this.longest = longest;
+    this.lastCycleDue = lastCycleDue;
+  }
+
+  /**
+   * Counts a completed cycle. The streak only continues when the cycle before it was the last one
+   * folded, cycles skipped in between were missed.
+   *
+   * @param cycleDue UTC Time
+   * @param previousCycleDue UTC Time, 0 for the first cycle of the series
+   */
+  void complete(long cycleDue, long previousCycleDue) {
+    if (cycleDue <= lastCycleDue) {
+      return;
+    }
+    current = lastCycleDue == previousCycleDue ? current + 1 : 1;
+    longest = Math.max(longest, current);
+    lastCycleDue = cycleDue;
+  }
+
+  /**
+   * Ends the current streak with a missed cycle
+   *
+   * @param cycleDue UTC Time
+   */
+  void miss(long cycleDue) {
+    if (cycleDue <= lastCycleDue) {
+      return;
+    }
+    current = 0;
+    lastCycleDue = cycleDue;
+  }
+
+  int getCurrent() {
+    return current;
+  }
+
+  int getLongest() {
+    return longest;
+  }
+
+  long getLastCycleDue() {
+    return lastCycleDue;
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.streak;
+
+/** A cycle of a recurring goal series that was completed or missed */
+public class StreakOutcome {
+
+  // The occurrence, or the template for the series' first cycle
+  private final int goalId;
+
+  private final int seriesGoalId;
+
+  // UTC Time
+  private final long cycleDue;
+
+  // Due date of the cycle before, UTC Time, 0 for the first cycle of the series
+  private final long previousCycleDue;
+
+  private final boolean completed;
+
+  public StreakOutcome(
+      int goalId, int seriesGoalId, long cycleDue, long previousCycleDue, boolean completed) {
+    this.goalId = goalId;
+    this.seriesGoalId = seriesGoalId;
+    this.cycleDue = cycleDue;
+    this.previousCycleDue = previousCycleDue;
+    this.completed = completed;
+  }
+
+  public int getGoalId() {
+    return goalId;
+  }
+
+  public int getSeriesGoalId() {
+    return seriesGoalId;
+  }
+
+  public long getCycleDue() {
+    return cycleDue;
+  }
+
+  public long getPreviousCycleDue() {
+    return previousCycleDue;
+  }
+
+  public boolean isCompleted() {
+    return completed;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.streak;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides how a batch of cycles reaches the stored streaks. The incremental upsert is only right
+ * for cycles that follow the last one folded into their series, the rest would make the stored
+ * streak depend on the order they arrive in and disagree with {@link StreakService#count}.
+ */
+class StreakPlan {
+
+  // Cycles to fold with the conditional upsert, in due date order
+  private final List<StreakOutcome> inOrder = new ArrayList<>();
+
+  // Series that got a cycle at or before their last folded one and are counted again in full
+  private final Set<Integer> recount = new HashSet<>();
+
+  // Completions of cycles whose predecessor is not decided yet, re-checked on a later flush
+  private final List<Integer> deferredGoalIds = new ArrayList<>();
+
+  /**
+   * Splits decided cycles by how they can be applied
+   *
+   * @param outcomes
+   * @param stored streaks as stored before this batch, by series goal id
+   * @param now UTC Time
+   * @return
+   */
+  static StreakPlan of(List<StreakOutcome> outcomes, Map<Integer, SeriesStreak> stored, long now) {
+    List<StreakOutcome> sorted = new ArrayList<>(outcomes);
+    sorted.sort(Comparator.comparingLong(StreakOutcome::getCycleDue));
+
+    StreakPlan plan = new StreakPlan();
+    Map<Integer, StreakCounter> folded = new HashMap<>();
+    for (StreakOutcome outcome : sorted) {
+      int seriesId = outcome.getSeriesGoalId();
+      StreakCounter counter =
+          folded.computeIfAbsent(
+              seriesId,
+              id -> {
+                SeriesStreak streak = stored.get(id);
+                return streak == null
+                    ? new StreakCounter()
+                    : new StreakCounter(
+                        streak.getCurrentStreak(),
+                        streak.getLongestStreak(),
+                        streak.getLastCycleDue());
+              });
+      long last = counter.getLastCycleDue();
+
+      if (outcome.getCycleDue() <= last) {
+        // A replayed completion of the last cycle counted changes nothing, nor does a late miss
+        boolean replayed = outcome.getCycleDue() == last && counter.getCurrent() > 0;
+        if (outcome.isCompleted() && !replayed) {
+          plan.recount.add(seriesId);
+        }
+        continue;
+      }
+      if (outcome.isCompleted()
+          && outcome.getPreviousCycleDue() != last
+          && outcome.getPreviousCycleDue() > now) {
+        // Completed early, whether the streak goes on depends on the cycle before it
+        plan.deferredGoalIds.add(outcome.getGoalId());
+        continue;
+      }
+      if (outcome.isCompleted()) {
+        counter.complete(outcome.getCycleDue(), outcome.getPreviousCycleDue());
+      } else {
+        counter.miss(outcome.getCycleDue());
+      }
+      plan.inOrder.add(outcome);
+    }
+    // A recount covers every cycle of the series
+    plan.inOrder.removeIf(outcome -> plan.recount.contains(outcome.getSeriesGoalId()));
+    return plan;
+  }
+
+  List<StreakOutcome> getInOrder() {
+    return inOrder;
+  }
+
+  Set<Integer> getRecount() {
+    return recount;
+  }
+
+  List<Integer> getDeferredGoalIds() {
+    return deferredGoalIds;
+  }
+}
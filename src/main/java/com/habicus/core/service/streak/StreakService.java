@@ -0,0 +1,433 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.streak;
+
+import com.habicus.core.dao.repository.GoalMetricsRepository;
+import com.habicus.core.dao.repository.GoalRepository;
+import com.habicus.core.event.GoalChangedEvent;
+import com.habicus.core.model.Goal;
+import com.habicus.core.service.Goal.GoalInterval;
+import com.habicus.core.service.Goal.RecurrenceService;
+import com.habicus.core.service.schedule.DueGoal;
+import com.habicus.core.service.schedule.GoalDueHandler;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the current and longest streak of every recurring goal series in the series template's
+ * {@code goal_metrics} row.
+ *
+ * <p>Completed occurrences (from {@link GoalChangedEvent}) and missed ones (from the {@link
+ * com.habicus.core.service.schedule.GoalDueScheduler}) are queued by goal id and folded into the
+ * row in JDBC batches, each cycle costing a single conditional upsert however long the series'
+ * history is. Cycles that do not follow the last one counted are not folded that way: an early
+ * completion waits until the cycle before it is decided, and a completion arriving after a later
+ * cycle was counted recounts its series from the goal table, so the stored streaks match {@link
+ * #backfill()} whatever order cycles arrive in. Occurrences that were never stored have no row to
+ * miss, so reads end a streak whose next cycle has passed without being counted. {@link
+ * #backfill()} recomputes every series from the goal table.
+ */
+@Service
+public class StreakService implements GoalDueHandler, MeterBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StreakService.class);
+
+  @Autowired private GoalRepository goalRepository;
+  @Autowired private GoalMetricsRepository goalMetricsRepository;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Value("${habicus.streaks.batch-size:500}")
+  private int batchSize;
+
+  @Value("${habicus.streaks.backfill-threads:4}")
+  private int backfillThreads;
+
+  // Goals whose completion or miss is not folded in yet, re-checked against the goal table
+  private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+
+  private final AtomicLong completions = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong recounts = new AtomicLong();
+
+  /**
+   * Streaks of every recurring series of a user. Cycles completed within the last flush interval
+   * may not be counted yet.
+   *
+   * @param userId
+   * @return
+   */
+  public List<SeriesStreak> retrieveStreaks(int userId) {
+    long now = nowSeconds();
+    List<SeriesStreak> streaks = new ArrayList<>();
+    for (SeriesStreak stored :
+        goalMetricsRepository.findSeriesStreaks(userId, RecurrenceService.INTERVAL_VALUES)) {
+      streaks.add(asOf(stored, now));
+    }
+    return streaks;
+  }
+
+  /** Queues completed occurrences of recurring series */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onGoalChanged(GoalChangedEvent event) {
+    if (event.isRemoved()) {
+      return;
+    }
+    Goal goal = event.getGoal();
+    boolean inSeries =
+        goal.getParentGoalId() != null || RecurrenceService.templateInterval(goal).isPresent();
+    if (inSeries && Goal.GOAL_COMPLETE.equals(goal.getGoalComplete())) {
+      pending.add(goal.getGoalId());
+      if (pending.size() >= batchSize) {
+        flush();
+      }
+    }
+  }
+
+  /** Queues missed goals, the ones that are not part of a series are dropped on flush */
+  @Override
+  public void onGoalsDue(List<DueGoal> goals) {
+    for (DueGoal goal : goals) {
+      pending.add(goal.getGoalId());
+    }
+  }
+
+  /** Folds every queued completion and miss into the stored streaks */
+  @Scheduled(fixedDelayString = "${habicus.streaks.flush-interval-ms:5000}")
+  public synchronized void flush() {
+    // Queued again once the pass is over, or the iterator could hand them out again right away
+    List<Integer> retry = new ArrayList<>();
+    List<Integer> batch = new ArrayList<>(batchSize);
+    Iterator<Integer> goalIds = pending.iterator();
+    while (goalIds.hasNext()) {
+      batch.add(goalIds.next());
+      goalIds.remove();
+      if (batch.size() >= batchSize) {
+        retry.addAll(write(batch));
+        batch = new ArrayList<>(batchSize);
+      }
+    }
+    retry.addAll(write(batch));
+    pending.addAll(retry);
+  }
+
+  /**
+   * Recomputes the streaks of every series from the goal table, spreading users across {@code
+   * habicus.streaks.backfill-threads} workers
+   *
+   * @return
+   */
+  public StreakBackfillReport backfill() {
+    long start = System.currentTimeMillis();
+    List<Integer> userIds = goalRepository.findDistinctUsersUserIds();
+    AtomicLong series = new AtomicLong();
+    AtomicInteger failed = new AtomicInteger();
+
+    ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, backfillThreads));
+    try {
+      List<Future<?>> tasks = new ArrayList<>(userIds.size());
+      for (Integer userId : userIds) {
+        tasks.add(
+            workers.submit(
+                () -> {
+                  try {
+                    series.addAndGet(backfillUser(userId));
+                  } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    LOGGER.warn("Failed backfilling streaks for user {}", userId, e);
+                  }
+                }));
+      }
+      for (Future<?> task : tasks) {
+        task.get();
+      }
+    } catch (Exception e) {
+      throw new IllegalStateException("Streak backfill was interrupted", e);
+    } finally {
+      workers.shutdownNow();
+    }
+
+    StreakBackfillReport report =
+        new StreakBackfillReport(
+            userIds.size(), series.get(), failed.get(), System.currentTimeMillis() - start);
+    LOGGER.info(
+        "Backfilled streaks for {} users and {} series in {}ms",
+        report.getUsers(),
+        report.getSeries(),
+        report.getElapsedMillis());
+    return report;
+  }
+
+  private int backfillUser(int userId) {
+    long now = nowSeconds();
+    Map<Integer, Goal> templates = new HashMap<>();
+    Map<Integer, Set<Long>> completed = new HashMap<>();
+
+    TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+    readOnly.execute(
+        status -> {
+          try (Stream<Goal> goals = goalRepository.streamGoalsByUsersUserId(userId)) {
+            goals.forEach(
+                goal -> {
+                  if (RecurrenceService.templateInterval(goal).isPresent()) {
+                    templates.put(goal.getGoalId(), goal);
+                  }
+                  if (Goal.GOAL_COMPLETE.equals(goal.getGoalComplete())) {
+                    int seriesId =
+                        goal.getParentGoalId() == null
+                            ? goal.getGoalId()
+                            : goal.getParentGoalId();
+                    completed
+                        .computeIfAbsent(seriesId, id -> new HashSet<>())
+                        .add(goal.getDueDate());
+                  }
+                });
+          }
+          return null;
+        });
+
+    List<SeriesStreak> streaks = new ArrayList<>(templates.size());
+    for (Goal template : templates.values()) {
+      streaks.add(
+          count(
+              template,
+              RecurrenceService.templateInterval(template).get(),
+              completed.getOrDefault(template.getGoalId(), new HashSet<>()),
+              now));
+    }
+    for (int from = 0; from < streaks.size(); from += batchSize) {
+      List<SeriesStreak> chunk = streaks.subList(from, Math.min(streaks.size(), from + batchSize));
+      new TransactionTemplate(transactionManager)
+          .execute(status -> goalMetricsRepository.replaceStreaks(chunk));
+    }
+    return streaks.size();
+  }
+
+  // Returns the goals to check again on the next flush
+  private List<Integer> write(List<Integer> goalIds) {
+    if (goalIds.isEmpty()) {
+      return goalIds;
+    }
+    long now = nowSeconds();
+    try {
+      Map<Integer, Goal> templates = new HashMap<>();
+      List<StreakOutcome> outcomes =
+          outcomes(goalRepository.findByGoalIdIn(goalIds), templates, now);
+      Set<Integer> seriesIds = new HashSet<>();
+      outcomes.forEach(outcome -> seriesIds.add(outcome.getSeriesGoalId()));
+      StreakPlan plan =
+          StreakPlan.of(outcomes, goalMetricsRepository.findStreaksBySeries(seriesIds), now);
+      List<SeriesStreak> recounted = recount(plan.getRecount(), templates, now);
+
+      new TransactionTemplate(transactionManager)
+          .execute(
+              status -> {
+                goalMetricsRepository.applyStreakOutcomes(plan.getInOrder());
+                return goalMetricsRepository.replaceStreaks(recounted);
+              });
+      for (StreakOutcome outcome : plan.getInOrder()) {
+        (outcome.isCompleted() ? completions : misses).incrementAndGet();
+      }
+      recounts.addAndGet(recounted.size());
+      return plan.getDeferredGoalIds();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Failed updating streaks for {} goals", goalIds.size(), e);
+      return goalIds;
+    }
+  }
+
+  // Series counted again in full from their completed cycles
+  private List<SeriesStreak> recount(
+      Set<Integer> seriesIds, Map<Integer, Goal> templates, long now) {
+    if (seriesIds.isEmpty()) {
+      return new ArrayList<>();
+    }
+    Map<Integer, Set<Long>> completed = new HashMap<>();
+    for (Goal goal : goalRepository.findCompletedInSeries(seriesIds, Goal.GOAL_COMPLETE)) {
+      int seriesId = goal.getParentGoalId() == null ? goal.getGoalId() : goal.getParentGoalId();
+      completed.computeIfAbsent(seriesId, id -> new HashSet<>()).add(goal.getDueDate());
+    }
+    List<SeriesStreak> streaks = new ArrayList<>(seriesIds.size());
+    for (Integer seriesId : seriesIds) {
+      Goal template = templates.get(seriesId);
+      streaks.add(
+          count(
+              template,
+              RecurrenceService.templateInterval(template).get(),
+              completed.getOrDefault(seriesId, new HashSet<>()),
+              now));
+    }
+    return streaks;
+  }
+
+  /**
+   * Decides each goal from its current row, goals re-opened or not due yet are dropped
+   *
+   * @param goals
+   * @param templates filled with the template of every series the goals belong to
+   * @param now UTC Time
+   * @return
+   */
+  private List<StreakOutcome> outcomes(List<Goal> goals, Map<Integer, Goal> templates, long now) {
+    Set<Integer> missing = new HashSet<>();
+    for (Goal goal : goals) {
+      if (goal.getParentGoalId() == null) {
+        templates.put(goal.getGoalId(), goal);
+      }
+    }
+    for (Goal goal : goals) {
+      if (goal.getParentGoalId() != null && !templates.containsKey(goal.getParentGoalId())) {
+        missing.add(goal.getParentGoalId());
+      }
+    }
+    if (!missing.isEmpty()) {
+      goalRepository.findByGoalIdIn(missing).forEach(t -> templates.put(t.getGoalId(), t));
+    }
+
+    List<StreakOutcome> outcomes = new ArrayList<>(goals.size());
+    for (Goal goal : goals) {
+      int seriesId = goal.getParentGoalId() == null ? goal.getGoalId() : goal.getParentGoalId();
+      Goal template = templates.get(seriesId);
+      Optional<GoalInterval> interval =
+          template == null ? Optional.empty() : RecurrenceService.templateInterval(template);
+      if (!interval.isPresent()) {
+        continue;
+      }
+      boolean complete = Goal.GOAL_COMPLETE.equals(goal.getGoalComplete());
+      if (!complete && goal.getDueDate() > now) {
+        continue;
+      }
+      long anchor = template.getDueDate();
+      long index = interval.get().firstIndexAtOrAfter(anchor, goal.getDueDate());
+      long previous = index == 0 ? 0 : interval.get().occurrence(anchor, index - 1);
+      outcomes.add(
+          new StreakOutcome(goal.getGoalId(), seriesId, goal.getDueDate(), previous, complete));
+    }
+    return outcomes;
+  }
+
+  /**
+   * Streaks of a series walked cycle by cycle up to {@code now}
+   *
+   * @param template
+   * @param interval
+   * @param completedDueDates due dates of the completed occurrences, the template's included
+   * @param now UTC Time
+   * @return
+   */
+  static SeriesStreak count(
+      Goal template, GoalInterval interval, Set<Long> completedDueDates, long now) {
+    long anchor = template.getDueDate();
+    StreakCounter counter = new StreakCounter();
+    long previous = 0;
+    for (long index = 0; ; index++) {
+      long due = interval.occurrence(anchor, index);
+      if (completedDueDates.contains(due)) {
+        counter.complete(due, previous);
+      } else if (due <= now) {
+        counter.miss(due);
+      } else {
+        break;
+      }
+      previous = due;
+    }
+    return new SeriesStreak(
+        template.getGoalId(),
+        template.getGoalInterval(),
+        anchor,
+        counter.getCurrent(),
+        counter.getLongest(),
+        counter.getLastCycleDue());
+  }
+
+  /**
+   * A stored streak as of {@code now}: once the cycle after the last one counted has passed, it
+   * was missed without a stored occurrence and the current streak is over.
+   *
+   * @param stored
+   * @param now UTC Time
+   * @return
+   */
+  static SeriesStreak asOf(SeriesStreak stored, long now) {
+    Optional<GoalInterval> interval = GoalInterval.parse(stored.getGoalInterval());
+    if (stored.getCurrentStreak() == 0 || !interval.isPresent()) {
+      return stored;
+    }
+    long anchor = stored.getFirstDueDate();
+    long last = interval.get().firstIndexAtOrAfter(anchor, stored.getLastCycleDue());
+    long next = interval.get().occurrence(anchor, last + 1);
+    if (next > now) {
+      return stored;
+    }
+    return new SeriesStreak(
+        stored.getSeriesGoalId(),
+        stored.getGoalInterval(),
+        anchor,
+        0,
+        stored.getLongestStreak(),
+        stored.getLastCycleDue());
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("habicus.streaks.cycles.completed", completions, AtomicLong::get)
+        .register(registry);
+    FunctionCounter.builder("habicus.streaks.cycles.missed", misses, AtomicLong::get)
+        .register(registry);
+    FunctionCounter.builder("habicus.streaks.series.recounted", recounts, AtomicLong::get)
+        .description("Series counted again because a cycle arrived out of order")
+        .register(registry);
+    Gauge.builder("habicus.streaks.pending.goals", pending, Set::size).register(registry);
+  }
+
+  private static long nowSeconds() {
+    return System.currentTimeMillis() / 1000;
+  }
+}
@@ -0,0 +1,2 @@
+-- Users and goals are generated on startup (see PerfDataGenerator)
+INSERT INTO goal_id_sequence (sequence_id, next_id) VALUES (1, 1);
@@ -5,3 +5,5 @@ INSERT INTO `user` (`user_id`,`dob`,`email`,`gender`,`password`,`username`) VALU
 INSERT INTO `goal` (`users_user_id`,`goal_id`,`due_date`,`description`,`goal_complete`,`goal_interval`,`label_color`,`pledge_amount`,`task_unit_count`,`title`) VALUES (1,1,'1525136658','Tester Description','0','daily','green',5,1,'Running');
 INSERT INTO `goal` (`users_user_id`,`goal_id`,`due_date`,`description`,`goal_complete`,`goal_interval`,`label_color`,`pledge_amount`,`task_unit_count`,`title`) VALUES (2,2,'1525136658','Tester Description User 2','0','daily','purple',5,1,'Reading Books');
 INSERT INTO `goal` (`users_user_id`,`goal_id`,`due_date`,`description`,`goal_complete`,`goal_interval`,`label_color`,`pledge_amount`,`task_unit_count`,`title`) VALUES (3,3,'1525136658','Tester Description User 3','0','daily','yellow',5,1,'Kayaking');
+
+INSERT INTO `goal_id_sequence` (`sequence_id`,`next_id`) VALUES (1,20);
@@ -0,0 +1,131 @@
+-- H2 (MySQL mode) copy of schema.sql for the perf profile, keep the two in sync
+DROP TABLE IF EXISTS goal_id_sequence;
+DROP TABLE IF EXISTS leaderboard_snapshot;
+DROP TABLE IF EXISTS goal_event_snapshot;
+DROP TABLE IF EXISTS goal_event;
+DROP TABLE IF EXISTS check_in_checkpoint;
+DROP TABLE IF EXISTS pledge_ledger;
+DROP TABLE IF EXISTS goal_metrics;
+DROP TABLE IF EXISTS refresh_token;
+DROP TABLE IF EXISTS goal;
+DROP TABLE IF EXISTS user;
+
+CREATE TABLE user (
+  user_id int NOT NULL AUTO_INCREMENT,
+  username varchar(45) DEFAULT NULL,
+  password varchar(255) DEFAULT NULL,
+  email varchar(255) NOT NULL,
+  dob timestamp DEFAULT NULL,
+  gender varchar(25) DEFAULT NULL,
+  PRIMARY KEY (user_id),
+  CONSTRAINT email_UNIQUE UNIQUE (email)
+);
+
+
+CREATE TABLE goal (
+  goal_id int NOT NULL AUTO_INCREMENT,
+  users_user_id int NOT NULL,
+  due_date decimal(10,0) NOT NULL,
+  description varchar(255) DEFAULT NULL,
+  goal_complete varchar(255) DEFAULT NULL,
+  goal_interval varchar(255) DEFAULT NULL,
+  label_color varchar(255) DEFAULT NULL,
+  pledge_amount double DEFAULT NULL,
+  task_unit_count int DEFAULT NULL,
+  task_units_done int NOT NULL DEFAULT 0,
+  title varchar(255) DEFAULT NULL,
+  parent_goal_id int DEFAULT NULL,
+  PRIMARY KEY (goal_id, due_date),
+  CONSTRAINT goal_id_UNIQUE UNIQUE (goal_id),
+  CONSTRAINT goal_parent_due_UNIQUE UNIQUE (parent_goal_id, due_date),
+  CONSTRAINT user_id FOREIGN KEY (users_user_id) REFERENCES user (user_id)
+);
+CREATE INDEX goal_user_due_idx ON goal (users_user_id, due_date, goal_id);
+CREATE INDEX goal_due_idx ON goal (due_date, goal_id);
+
+
+CREATE TABLE refresh_token (
+  token_hash char(64) NOT NULL,
+  users_user_id int NOT NULL,
+  username varchar(45) DEFAULT NULL,
+  expires_at bigint NOT NULL,
+  PRIMARY KEY (token_hash),
+  CONSTRAINT refresh_token_user_id FOREIGN KEY (users_user_id) REFERENCES user (user_id)
+    ON DELETE CASCADE
+);
+CREATE INDEX refresh_token_expires_idx ON refresh_token (expires_at);
+
+
+CREATE TABLE goal_metrics (
+  goal_metrics_id int NOT NULL,
+  goals_goal_id int NOT NULL,
+  goal_complete varchar(255) DEFAULT NULL,
+  goal_in_progress varchar(255) DEFAULT NULL,
+  money_made_on_goal varchar(255) DEFAULT NULL,
+  time_until_due_date int DEFAULT NULL,
+  current_streak int NOT NULL DEFAULT 0,
+  longest_streak int NOT NULL DEFAULT 0,
+  streak_cycle_due decimal(10,0) NOT NULL DEFAULT 0,
+  PRIMARY KEY (goal_metrics_id, goals_goal_id),
+  CONSTRAINT goals_goal_id_UNIQUE UNIQUE (goals_goal_id)
+);
+
+
+CREATE TABLE pledge_ledger (
+  ledger_id bigint NOT NULL AUTO_INCREMENT,
+  goals_goal_id int NOT NULL,
+  users_user_id int NOT NULL,
+  cycle_due_date decimal(10,0) NOT NULL,
+  amount decimal(12,2) NOT NULL,
+  settled_at bigint NOT NULL,
+  settlement_run bigint NOT NULL DEFAULT 0,
+  PRIMARY KEY (ledger_id),
+  CONSTRAINT pledge_ledger_goal_cycle_UNIQUE UNIQUE (goals_goal_id, cycle_due_date)
+);
+CREATE INDEX pledge_ledger_user_idx ON pledge_ledger (users_user_id, cycle_due_date);
+
+
+CREATE TABLE check_in_checkpoint (
+  node_id varchar(64) NOT NULL,
+  applied_segment bigint NOT NULL,
+  PRIMARY KEY (node_id)
+);
+
+
+CREATE TABLE goal_event (
+  event_id bigint NOT NULL AUTO_INCREMENT,
+  users_user_id int NOT NULL,
+  goals_goal_id int NOT NULL,
+  event_type varchar(16) NOT NULL,
+  due_date decimal(10,0) NOT NULL,
+  units int DEFAULT NULL,
+  amount decimal(12,2) DEFAULT NULL,
+  occurred_at bigint NOT NULL,
+  PRIMARY KEY (event_id)
+);
+CREATE INDEX goal_event_user_idx ON goal_event (users_user_id, event_id);
+
+
+CREATE TABLE goal_event_snapshot (
+  users_user_id int NOT NULL,
+  last_event_id bigint NOT NULL,
+  state clob NOT NULL,
+  created_at bigint NOT NULL,
+  PRIMARY KEY (users_user_id)
+);
+
+
+CREATE TABLE leaderboard_snapshot (
+  period_start decimal(10,0) NOT NULL,
+  goals int NOT NULL,
+  state blob NOT NULL,
+  created_at bigint NOT NULL,
+  PRIMARY KEY (period_start)
+);
+
+
+CREATE TABLE goal_id_sequence (
+  sequence_id tinyint NOT NULL,
+  next_id int NOT NULL,
+  PRIMARY KEY (sequence_id)
+);
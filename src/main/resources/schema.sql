@@ -1,3 +1,11 @@
+DROP TABLE IF EXISTS `habicus`.`goal_id_sequence`;
+DROP TABLE IF EXISTS `habicus`.`leaderboard_snapshot`;
+DROP TABLE IF EXISTS `habicus`.`goal_event_snapshot`;
+DROP TABLE IF EXISTS `habicus`.`goal_event`;
+DROP TABLE IF EXISTS `habicus`.`check_in_checkpoint`;
+DROP TABLE IF EXISTS `habicus`.`pledge_ledger`;
+DROP TABLE IF EXISTS `habicus`.`goal_metrics`;
+DROP TABLE IF EXISTS `habicus`.`refresh_token`;
 DROP TABLE IF EXISTS `habicus`.`goal`;
 DROP TABLE IF EXISTS `habicus`.`user`;
 
@@ -23,11 +31,100 @@ CREATE TABLE IF NOT EXISTS `goal` (
   `label_color` varchar(255) DEFAULT NULL,
   `pledge_amount` double DEFAULT NULL,
   `task_unit_count` int(11) DEFAULT NULL,
+  `task_units_done` int(11) NOT NULL DEFAULT '0',
   `title` varchar(255) DEFAULT NULL,
+  `parent_goal_id` int(11) DEFAULT NULL,
   PRIMARY KEY (`goal_id`,`due_date`),
   UNIQUE KEY `goal_id_UNIQUE` (`goal_id`),
   KEY `user_id_idx` (`label_color`),
-  KEY `user_id_idx1` (`users_user_id`),
+  KEY `goal_user_due_idx` (`users_user_id`,`due_date`,`goal_id`),
+  KEY `goal_due_idx` (`due_date`,`goal_id`),
+  UNIQUE KEY `goal_parent_due_UNIQUE` (`parent_goal_id`,`due_date`),
   CONSTRAINT `user_id` FOREIGN KEY (`users_user_id`) REFERENCES `user` (`user_id`) ON DELETE NO ACTION ON UPDATE NO ACTION
 ) ENGINE=InnoDB AUTO_INCREMENT=20 DEFAULT CHARSET=latin1;
 
+
+CREATE TABLE IF NOT EXISTS `refresh_token` (
+  `token_hash` char(64) NOT NULL,
+  `users_user_id` int(11) unsigned NOT NULL,
+  `username` varchar(45) DEFAULT NULL,
+  `expires_at` bigint(20) NOT NULL,
+  PRIMARY KEY (`token_hash`),
+  KEY `refresh_token_expires_idx` (`expires_at`),
+  CONSTRAINT `refresh_token_user_id` FOREIGN KEY (`users_user_id`) REFERENCES `user` (`user_id`) ON DELETE CASCADE ON UPDATE NO ACTION
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+
+CREATE TABLE IF NOT EXISTS `goal_metrics` (
+  `goal_metrics_id` int(11) NOT NULL,
+  `goals_goal_id` int(11) NOT NULL,
+  `goal_complete` varchar(255) DEFAULT NULL,
+  `goal_in_progress` varchar(255) DEFAULT NULL,
+  `money_made_on_goal` varchar(255) DEFAULT NULL,
+  `time_until_due_date` int(11) DEFAULT NULL,
+  `current_streak` int(11) NOT NULL DEFAULT '0',
+  `longest_streak` int(11) NOT NULL DEFAULT '0',
+  `streak_cycle_due` decimal(10,0) NOT NULL DEFAULT '0',
+  PRIMARY KEY (`goal_metrics_id`,`goals_goal_id`),
+  UNIQUE KEY `goals_goal_id_UNIQUE` (`goals_goal_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+
+CREATE TABLE IF NOT EXISTS `pledge_ledger` (
+  `ledger_id` bigint(20) unsigned NOT NULL AUTO_INCREMENT,
+  `goals_goal_id` int(11) NOT NULL,
+  `users_user_id` int(11) unsigned NOT NULL,
+  `cycle_due_date` decimal(10,0) NOT NULL,
+  `amount` decimal(12,2) NOT NULL,
+  `settled_at` bigint(20) NOT NULL,
+  `settlement_run` bigint(20) NOT NULL DEFAULT 0,
+  PRIMARY KEY (`ledger_id`),
+  UNIQUE KEY `pledge_ledger_goal_cycle_UNIQUE` (`goals_goal_id`,`cycle_due_date`),
+  KEY `pledge_ledger_user_idx` (`users_user_id`,`cycle_due_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+
+CREATE TABLE IF NOT EXISTS `check_in_checkpoint` (
+  `node_id` varchar(64) NOT NULL,
+  `applied_segment` bigint(20) NOT NULL,
+  PRIMARY KEY (`node_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+
+CREATE TABLE IF NOT EXISTS `goal_event` (
+  `event_id` bigint(20) unsigned NOT NULL AUTO_INCREMENT,
+  `users_user_id` int(11) unsigned NOT NULL,
+  `goals_goal_id` int(11) NOT NULL,
+  `event_type` varchar(16) NOT NULL,
+  `due_date` decimal(10,0) NOT NULL,
+  `units` int(11) DEFAULT NULL,
+  `amount` decimal(12,2) DEFAULT NULL,
+  `occurred_at` bigint(20) NOT NULL,
+  PRIMARY KEY (`event_id`),
+  KEY `goal_event_user_idx` (`users_user_id`,`event_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+
+CREATE TABLE IF NOT EXISTS `goal_event_snapshot` (
+  `users_user_id` int(11) unsigned NOT NULL,
+  `last_event_id` bigint(20) unsigned NOT NULL,
+  `state` mediumtext NOT NULL,
+  `created_at` bigint(20) NOT NULL,
+  PRIMARY KEY (`users_user_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+
+CREATE TABLE IF NOT EXISTS `leaderboard_snapshot` (
+  `period_start` decimal(10,0) NOT NULL,
+  `goals` int(11) NOT NULL,
+  `state` longblob NOT NULL,
+  `created_at` bigint(20) NOT NULL,
+  PRIMARY KEY (`period_start`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+
+CREATE TABLE IF NOT EXISTS `goal_id_sequence` (
+  `sequence_id` tinyint(4) NOT NULL,
+  `next_id` int(11) NOT NULL,
+  PRIMARY KEY (`sequence_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
@@ -0,0 +1,74 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.perf;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/** Latencies of one operation, recorded from many threads */
+final class LatencyStats {
+
+  // Anything slower is recorded as this, well past the driver's read timeout
+  private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+  private final Histogram micros = new ConcurrentHistogram(MAX_MICROS, 3);
+  private final LongAdder errors = new LongAdder();
+
+  void record(long nanos, boolean ok) {
+    if (!ok) {
+      errors.increment();
+    }
+    micros.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_MICROS));
+  }
+
+  void add(LatencyStats other) {
+    micros.add(other.micros);
+    errors.add(other.errors.sum());
+  }
+
+  /**
+   * Counts, throughput and percentiles in milliseconds
+   *
+   * @param seconds length of the measured period
+   * @return
+   */
+  Map<String, Object> summary(int seconds) {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("count", micros.getTotalCount());
+    summary.put("errors", errors.sum());
+    summary.put("throughput", micros.getTotalCount() / (double) seconds);
+    summary.put("p50Millis", millis(micros.getValueAtPercentile(50)));
+    summary.put("p99Millis", millis(micros.getValueAtPercentile(99)));
+    summary.put("p999Millis", millis(micros.getValueAtPercentile(99.9)));
+    summary.put("maxMillis", millis(micros.getMaxValue()));
+    return summary;
+  }
+
+  private static double millis(long micros) {
+    return micros / 1000.0;
+  }
+}
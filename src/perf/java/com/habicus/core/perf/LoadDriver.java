@@ -0,0 +1,327 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open loop load driver for a server running the perf profile. Logs in {@code --users} of the
+ * generated users, then sends {@code --rate} requests per second split between {@code GET
+ * /api/v1/goals} and check-ins ({@code --check-in-ratio}), and reports latency percentiles and
+ * throughput per operation.
+ *
+ * <p>Requests are started on a fixed schedule whether or not earlier ones have returned, and
+ * latency is measured from the scheduled start. A server that falls behind therefore shows up as
+ * queueing in the percentiles instead of as a lower request rate.
+ *
+ * <p>Options, all {@code --name=value}: base-url, users, rate, warmup-seconds, duration-seconds,
+ * check-in-ratio, threads, password, report (JSON file).
+ */
+public final class LoadDriver {
+
+  private static final ObjectMapper MAPPER =
+      new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+  private final String baseUrl;
+  private final String password;
+  private final List<Session> sessions = new ArrayList<>();
+
+  private LoadDriver(String baseUrl, String password) {
+    this.baseUrl = baseUrl;
+    this.password = password;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = parse(args);
+    String baseUrl = options.getOrDefault("base-url", "http://localhost:7777");
+    int users = Integer.parseInt(options.getOrDefault("users", "100"));
+    int rate = Integer.parseInt(options.getOrDefault("rate", "200"));
+    int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup-seconds", "10"));
+    int durationSeconds = Integer.parseInt(options.getOrDefault("duration-seconds", "60"));
+    double checkInRatio = Double.parseDouble(options.getOrDefault("check-in-ratio", "0.2"));
+    int threads = Integer.parseInt(options.getOrDefault("threads", "64"));
+    String password = options.getOrDefault("password", "perf-password");
+    String report = options.get("report");
+
+    // Keep-alive connections the JDK pools per host, the default of 5 would reconnect constantly
+    System.setProperty("http.maxConnections", String.valueOf(threads));
+
+    LoadDriver driver = new LoadDriver(baseUrl, password);
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    try {
+      driver.logIn(users, workers);
+      Map<String, LatencyStats> stats =
+          driver.run(workers, rate, warmupSeconds, durationSeconds, checkInRatio);
+      Map<String, Object> summary = summary(stats, rate, durationSeconds);
+      print(summary);
+      if (report != null) {
+        File file = new File(report);
+        if (file.getParentFile() != null) {
+          file.getParentFile().mkdirs();
+        }
+        MAPPER.writeValue(file, summary);
+        System.out.println("Report written to " + file.getAbsolutePath());
+      }
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+
+  // Logs every user in and learns their goal ids, login is BCrypt bound so it runs in parallel
+  private void logIn(int users, ExecutorService workers) throws Exception {
+    long started = System.currentTimeMillis();
+    List<Future<Session>> pending = new ArrayList<>(users);
+    for (int i = 1; i <= users; i++) {
+      Session session = new Session("perfUser" + i);
+      pending.add(
+          workers.submit(
+              () -> {
+                logIn(session);
+                Response goals = request("GET", "/api/v1/goals", session.token, null);
+                if (goals.status != 200) {
+                  throw new IllegalStateException(
+                      "Fetching goals of " + session.username + " returned " + goals.status);
+                }
+                for (JsonNode goal : MAPPER.readTree(goals.body)) {
+                  session.goalIds.add(goal.get("goalId").asInt());
+                }
+                return session;
+              }));
+    }
+    for (Future<Session> session : pending) {
+      sessions.add(session.get());
+    }
+    System.out.println(
+        "Logged in "
+            + users
+            + " users in "
+            + (System.currentTimeMillis() - started)
+            + "ms, starting load");
+  }
+
+  private Map<String, LatencyStats> run(
+      ExecutorService workers,
+      int rate,
+      int warmupSeconds,
+      int durationSeconds,
+      double checkInRatio)
+      throws InterruptedException {
+    Map<String, LatencyStats> stats = new LinkedHashMap<>();
+    stats.put("goals", new LatencyStats());
+    stats.put("check-in", new LatencyStats());
+
+    long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+    long start = System.nanoTime();
+    long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+    long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+    for (long i = 0; ; i++) {
+      long scheduled = start + i * interval;
+      if (scheduled >= end) {
+        break;
+      }
+      long wait = scheduled - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      Session session = sessions.get((int) (i % sessions.size()));
+      boolean checkIn =
+          !session.goalIds.isEmpty() && ThreadLocalRandom.current().nextDouble() < checkInRatio;
+      LatencyStats operation = stats.get(checkIn ? "check-in" : "goals");
+      boolean measured = scheduled >= measureFrom;
+      workers.execute(() -> send(session, checkIn, operation, scheduled, measured));
+    }
+    workers.shutdown();
+    workers.awaitTermination(1, TimeUnit.MINUTES);
+    return stats;
+  }
+
+  private void send(
+      Session session, boolean checkIn, LatencyStats stats, long scheduled, boolean measured) {
+    boolean ok;
+    try {
+      Response response;
+      if (checkIn) {
+        int goalId =
+            session.goalIds.get(ThreadLocalRandom.current().nextInt(session.goalIds.size()));
+        response =
+            request("POST", "/api/v1/goals/" + goalId + "/check-ins", session.token, new byte[0]);
+      } else {
+        response = request("GET", "/api/v1/goals", session.token, null);
+      }
+      ok = response.status < 400;
+      if (response.status == 401 || response.status == 403) {
+        // Access tokens last 15 minutes, longer runs log in again
+        logIn(session);
+      }
+    } catch (IOException e) {
+      ok = false;
+    }
+    if (measured) {
+      stats.record(System.nanoTime() - scheduled, ok);
+    }
+  }
+
+  private void logIn(Session session) throws IOException {
+    Map<String, String> credentials = new HashMap<>();
+    credentials.put("username", session.username);
+    credentials.put("password", password);
+    Response response = request("POST", "/login", null, MAPPER.writeValueAsBytes(credentials));
+    if (response.status != 200 || response.authorization == null) {
+      throw new IllegalStateException(
+          "Login of " + session.username + " returned " + response.status);
+    }
+    session.token = response.authorization;
+  }
+
+  private Response request(String method, String path, String token, byte[] body)
+      throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+    connection.setRequestMethod(method);
+    connection.setConnectTimeout(5_000);
+    connection.setReadTimeout(30_000);
+    if (token != null) {
+      connection.setRequestProperty("Authorization", token);
+    }
+    if (body != null) {
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/json");
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body);
+      }
+    }
+    int status = connection.getResponseCode();
+    // The body has to be read to the end for the connection to go back to the keep-alive pool
+    InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+    byte[] bytes = new byte[0];
+    if (in != null) {
+      try (InputStream stream = in) {
+        bytes = readAll(stream);
+      }
+    }
+    return new Response(status, connection.getHeaderField("Authorization"), bytes);
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  private static Map<String, Object> summary(
+      Map<String, LatencyStats> stats, int rate, int durationSeconds) {
+    LatencyStats all = new LatencyStats();
+    stats.values().forEach(all::add);
+    Map<String, Object> operations = new LinkedHashMap<>();
+    stats.forEach((name, operation) -> operations.put(name, operation.summary(durationSeconds)));
+    operations.put("all", all.summary(durationSeconds));
+
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("targetRate", rate);
+    summary.put("durationSeconds", durationSeconds);
+    summary.put("operations", operations);
+    return summary;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void print(Map<String, Object> summary) {
+    System.out.println(
+        String.format(
+            "%-10s %9s %7s %9s %9s %9s %9s %9s",
+            "operation", "count", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+    Map<String, Object> operations = (Map<String, Object>) summary.get("operations");
+    operations.forEach(
+        (name, values) -> {
+          Map<String, Object> row = (Map<String, Object>) values;
+          System.out.println(
+              String.format(
+                  "%-10s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f",
+                  name,
+                  row.get("count"),
+                  row.get("errors"),
+                  row.get("throughput"),
+                  row.get("p50Millis"),
+                  row.get("p99Millis"),
+                  row.get("p999Millis"),
+                  row.get("maxMillis")));
+        });
+  }
+
+  private static Map<String, String> parse(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+      }
+      int split = arg.indexOf('=');
+      options.put(arg.substring(2, split), arg.substring(split + 1));
+    }
+    return options;
+  }
+
+  private static final class Session {
+    private final String username;
+    private final List<Integer> goalIds = Collections.synchronizedList(new ArrayList<>());
+    private volatile String token;
+
+    private Session(String username) {
+      this.username = username;
+    }
+  }
+
+  private static final class Response {
+    private final int status;
+    private final String authorization;
+    private final byte[] body;
+
+    private Response(int status, String authorization, byte[] body) {
+      this.status = status;
+      this.authorization = authorization;
+      this.body = body;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.habicus.core.security.VerifiedTokenCache.VerifiedToken;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import java.util.Date;
+import org.junit.Test;
+
+public class VerifiedTokenCacheTest {
+
+  private static VerifiedToken tokenExpiringAt(long expiresAtMillis) {
+    Claims claims =
+        Jwts.claims().setSubject("testerUser1").setExpiration(new Date(expiresAtMillis));
+    return new VerifiedToken(new AuthenticatedUser("testerUser1", 1), claims);
+  }
+
+  @Test
+  public void servesVerifiedTokenUntilItExpires() {
+    VerifiedTokenCache cache = new VerifiedTokenCache(10);
+    cache.put("a", tokenExpiringAt(2_000), 1_000);
+
+    assertNotNull(cache.get("a", 1_999));
+    assertNull(cache.get("a", 2_000));
+    assertEquals(0, cache.size());
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void neverGrowsBeyondMaximumSize() {
+    VerifiedTokenCache cache = new VerifiedTokenCache(2);
+    cache.put("a", tokenExpiringAt(5_000), 1_000);
+    cache.put("b", tokenExpiringAt(5_000), 1_000);
+    cache.put("c", tokenExpiringAt(5_000), 1_000);
+
+    assertEquals(2, cache.size());
+    assertNotNull(cache.get("c", 1_000));
+    assertEquals(1, cache.getEvictions());
+  }
+
+  @Test
+  public void prefersEvictingExpiredTokensWhenFull() {
+    VerifiedTokenCache cache = new VerifiedTokenCache(2);
+    cache.put("a", tokenExpiringAt(1_500), 1_000);
+    cache.put("b", tokenExpiringAt(5_000), 1_000);
+    cache.put("c", tokenExpiringAt(5_000), 2_000);
+
+    assertNotNull(cache.get("b", 2_000));
+    assertNotNull(cache.get("c", 2_000));
+  }
+
+  @Test
+  public void doesNotCacheTokensWithoutExpiration() {
+    VerifiedTokenCache cache = new VerifiedTokenCache(2);
+    Claims claims = Jwts.claims().setSubject("testerUser1");
+    cache.put("a", new VerifiedToken(new AuthenticatedUser("testerUser1", 1), claims), 1_000);
+
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void keysAreDigestsOfTheRawToken() {
+    assertEquals(VerifiedTokenCache.keyOf("token"), VerifiedTokenCache.keyOf("token"));
+    assertNotEquals(VerifiedTokenCache.keyOf("token"), VerifiedTokenCache.keyOf("token2"));
+    assertNotEquals("token", VerifiedTokenCache.keyOf("token"));
+  }
+}
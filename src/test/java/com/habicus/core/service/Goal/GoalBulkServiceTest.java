@@ -0,0 +1,117 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.habicus.core.model.Goal;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class GoalBulkServiceTest {
+
+  private static final int USER_ID = 7;
+  private static final long DUE_DATE = 1525136658L;
+
+  @Test
+  public void acceptsAMinimalGoal() {
+    assertNull(GoalBulkService.validate(goal(0)));
+  }
+
+  @Test
+  public void rejectsInvalidGoals() {
+    assertEquals("Goal must not be null", GoalBulkService.validate(null));
+
+    Goal goal = goal(0);
+    goal.setTitle(" ");
+    assertEquals("title is required", GoalBulkService.validate(goal));
+
+    goal = goal(0);
+    goal.setTitle(String.join("", Collections.nCopies(256, "a")));
+    assertEquals("title is longer than 255 characters", GoalBulkService.validate(goal));
+
+    goal = goal(0);
+    goal.setDueDate(0);
+    assertEquals("dueDate is required", GoalBulkService.validate(goal));
+
+    goal = goal(0);
+    goal.setTaskUnitCount(-1);
+    assertEquals("taskUnitCount must not be negative", GoalBulkService.validate(goal));
+
+    goal = goal(0);
+    goal.setPledgeAmount(-0.5);
+    assertEquals("pledgeAmount must not be negative", GoalBulkService.validate(goal));
+
+    goal = goal(0);
+    goal.setGoalInterval("hourly");
+    assertEquals("Unknown goalInterval: hourly", GoalBulkService.validate(goal));
+  }
+
+  @Test
+  public void acceptsKnownIntervalsInAnyCase() {
+    Goal goal = goal(0);
+    goal.setGoalInterval("Weekly");
+    assertNull(GoalBulkService.validate(goal));
+  }
+
+  @Test
+  public void createsOnlyValidGoalsWithoutId() {
+    Goal invalid = goal(0);
+    invalid.setTitle(null);
+    assertEquals(
+        Arrays.asList(0, 3),
+        GoalBulkService.creatable(Arrays.asList(goal(0), goal(12), invalid, goal(-1), null)));
+  }
+
+  @Test
+  public void updatesOnlyGoalsOfTheUser() {
+    Goal target = goal(12);
+    target.setUsersUserId(USER_ID);
+    assertNull(GoalBulkService.checkUpdate(USER_ID, goal(12), target));
+    assertEquals(
+        "No goal found for id: 12", GoalBulkService.checkUpdate(USER_ID + 1, goal(12), target));
+    assertEquals("No goal found for id: 12", GoalBulkService.checkUpdate(USER_ID, goal(12), null));
+  }
+
+  @Test
+  public void keepsTheDueDateOfExistingGoals() {
+    Goal target = goal(12);
+    target.setUsersUserId(USER_ID);
+    Goal moved = goal(12);
+    moved.setDueDate(DUE_DATE + 1);
+    assertEquals(
+        "dueDate of an existing goal cannot change",
+        GoalBulkService.checkUpdate(USER_ID, moved, target));
+  }
+
+  private static Goal goal(int goalId) {
+    Goal goal = new Goal();
+    goal.setGoalId(goalId);
+    goal.setTitle("Run");
+    goal.setDueDate(DUE_DATE);
+    goal.setTaskUnitCount(3);
+    return goal;
+  }
+}
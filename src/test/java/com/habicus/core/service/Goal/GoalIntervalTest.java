@@ -0,0 +1,93 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class GoalIntervalTest {
+
+  private static final long ANCHOR = 1525136658L;
+
+  @Test
+  public void parsesStoredValues() {
+    assertEquals(GoalInterval.DAILY, GoalInterval.parse("daily").get());
+    assertEquals(GoalInterval.WEEKLY, GoalInterval.parse(" Weekly ").get());
+    assertFalse(GoalInterval.parse("once").isPresent());
+    assertFalse(GoalInterval.parse(null).isPresent());
+  }
+
+  @Test
+  public void dailyWindowStartsAtFirstOccurrenceInside() {
+    long day = 86_400L;
+    assertEquals(
+        Arrays.asList(ANCHOR + 3 * day, ANCHOR + 4 * day),
+        GoalInterval.DAILY.dueDatesBetween(ANCHOR, ANCHOR + 2 * day + 1, ANCHOR + 4 * day + 1, 10));
+    assertEquals(
+        Collections.singletonList(ANCHOR),
+        GoalInterval.DAILY.dueDatesBetween(ANCHOR, 0, ANCHOR + 1, 10));
+  }
+
+  @Test
+  public void windowEndIsExclusiveAndLimited() {
+    long week = 604_800L;
+    assertEquals(
+        Arrays.asList(ANCHOR, ANCHOR + week),
+        GoalInterval.WEEKLY.dueDatesBetween(ANCHOR, ANCHOR, ANCHOR + 2 * week, 10));
+    assertEquals(
+        Collections.singletonList(ANCHOR),
+        GoalInterval.WEEKLY.dueDatesBetween(ANCHOR, ANCHOR, ANCHOR + 10 * week, 1));
+  }
+
+  @Test
+  public void monthlyClampsToShortMonths() {
+    long anchor = utc(2018, 1, 31);
+    assertEquals(utc(2018, 2, 28), GoalInterval.MONTHLY.occurrence(anchor, 1));
+    assertEquals(utc(2018, 3, 31), GoalInterval.MONTHLY.occurrence(anchor, 2));
+    assertEquals(
+        Arrays.asList(utc(2018, 4, 30), utc(2018, 5, 31)),
+        GoalInterval.MONTHLY.dueDatesBetween(anchor, utc(2018, 4, 1), utc(2018, 6, 1), 10));
+  }
+
+  @Test
+  public void firstIndexMatchesLinearScan() {
+    long anchor = utc(2018, 1, 31);
+    for (long time = anchor - 5; time < utc(2020, 1, 1); time += 86_400L * 3 + 7) {
+      long index = 0;
+      while (GoalInterval.MONTHLY.occurrence(anchor, index) < time) {
+        index++;
+      }
+      assertEquals(index, GoalInterval.MONTHLY.firstIndexAtOrAfter(anchor, time));
+    }
+  }
+
+  private static long utc(int year, int month, int day) {
+    return LocalDateTime.of(year, month, day, 12, 0).toEpochSecond(ZoneOffset.UTC);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.habicus.core.event.GoalChangedEvent;
+import org.junit.Test;
+import org.springframework.transaction.event.ApplicationListenerMethodTransactionalAdapter;
+
+public class GoalVersionTrackerTest {
+
+  @Test
+  public void bumpChangesOnlyThatUsersEtag() {
+    GoalVersionTracker tracker = new GoalVersionTracker();
+    String before = tracker.etagFor(1);
+    String other = tracker.etagFor(2);
+
+    tracker.bump(1);
+
+    assertNotEquals(before, tracker.etagFor(1));
+    assertEquals(other, tracker.etagFor(2));
+  }
+
+  @Test
+  public void readsInFlightAreForgottenBeforeTheVersionMoves() throws Exception {
+    // The order Spring sorts the after-commit synchronizations of both listeners by
+    assertTrue(listenerOrder(GoalService.class) < listenerOrder(GoalVersionTracker.class));
+  }
+
+  private static int listenerOrder(Class<?> type) throws NoSuchMethodException {
+    return new ApplicationListenerMethodTransactionalAdapter(
+            type.getSimpleName(), type, type.getMethod("onGoalChanged", GoalChangedEvent.class))
+        .getOrder();
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.Goal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class IdBlocksTest {
+
+  // Sizes of the blocks reserved, in order
+  private final List<Integer> reserved = new ArrayList<>();
+
+  // Hands out blocks back to back starting at 1
+  private final IdBlocks blocks =
+      new IdBlocks(
+          4,
+          size -> {
+            int first = 1 + reserved.stream().mapToInt(Integer::intValue).sum();
+            reserved.add(size);
+            return first;
+          });
+
+  @Test
+  public void takesFromOneBlockUntilItRunsOut() {
+    assertArrayEquals(new int[] {1, 2, 3}, blocks.take(3));
+    assertArrayEquals(new int[] {4}, blocks.take(1));
+    assertEquals(1, reserved.size());
+
+    assertArrayEquals(new int[] {5}, blocks.take(1));
+    assertEquals(2, reserved.size());
+  }
+
+  @Test
+  public void carriesLeftoverIdsIntoTheNextBlock() {
+    blocks.take(3);
+    assertArrayEquals(new int[] {4, 5, 6}, blocks.take(3));
+    assertEquals(2, reserved.size());
+    assertEquals(4, (int) reserved.get(1));
+  }
+
+  @Test
+  public void largeRequestReservesWhatItNeedsInOneCall() {
+    blocks.take(1);
+    int[] ids = blocks.take(13);
+    assertEquals(13, ids.length);
+    assertEquals(2, reserved.size());
+    // Three ids were left, the new block covers the other ten
+    assertEquals(10, (int) reserved.get(1));
+    for (int i = 0; i < ids.length; i++) {
+      assertEquals(2 + i, ids[i]);
+    }
+    // The new block is used up exactly
+    assertArrayEquals(new int[] {15}, blocks.take(1));
+    assertEquals(3, reserved.size());
+  }
+
+  @Test
+  public void emptyRequestReservesNothing() {
+    assertEquals(0, blocks.take(0).length);
+    assertEquals(0, reserved.size());
+  }
+}
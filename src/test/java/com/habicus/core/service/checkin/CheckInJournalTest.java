@@ -0,0 +1,149 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.checkin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class CheckInJournalTest {
+
+  private final Path directory;
+
+  public CheckInJournalTest() throws IOException {
+    directory = Files.createTempDirectory("checkins");
+  }
+
+  @After
+  public void cleanUp() throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void replaysSegmentsAfterCheckpoint() throws IOException {
+    CheckInJournal journal = new CheckInJournal(directory, false);
+    journal.open(0, checkIn -> {});
+    journal.append(new CheckIn(1, 10, 1525136658L, 1));
+    long applied = journal.rotate();
+    journal.append(new CheckIn(2, 20, 1525136659L, 3));
+    journal.append(new CheckIn(2, 20, 1525136659L, 2));
+    journal.close();
+
+    List<CheckIn> replayed = new ArrayList<>();
+    CheckInJournal reopened = new CheckInJournal(directory, false);
+    assertEquals(2, reopened.open(applied, replayed::add));
+    reopened.close();
+
+    assertEquals(2, replayed.get(0).getGoalId());
+    assertEquals(20, replayed.get(0).getUserId());
+    assertEquals(1525136659L, replayed.get(0).getDueDate());
+    assertEquals(5, replayed.get(0).getUnits() + replayed.get(1).getUnits());
+  }
+
+  @Test
+  public void skipsRecordTornByCrash() throws IOException {
+    CheckInJournal journal = new CheckInJournal(directory, true);
+    journal.open(0, checkIn -> {});
+    journal.append(new CheckIn(1, 10, 1525136658L, 1));
+    journal.append(new CheckIn(1, 10, 1525136658L, 1));
+    journal.close();
+
+    Path segment;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      segment = files.iterator().next();
+    }
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.truncate(CheckInJournal.RECORD_SIZE + 5);
+    }
+
+    List<CheckIn> replayed = new ArrayList<>();
+    CheckInJournal reopened = new CheckInJournal(directory, true);
+    assertEquals(1, reopened.open(0, replayed::add));
+    reopened.close();
+  }
+
+  @Test
+  public void deletesSegmentsCoveredByFlush() throws IOException {
+    CheckInJournal journal = new CheckInJournal(directory, false);
+    journal.open(0, checkIn -> {});
+    journal.append(new CheckIn(1, 10, 1525136658L, 1));
+    long flushed = journal.rotate();
+    journal.deleteThrough(flushed);
+    journal.close();
+
+    CheckInJournal reopened = new CheckInJournal(directory, false);
+    assertEquals(0, reopened.open(0, checkIn -> {}));
+    reopened.close();
+  }
+
+  @Test
+  public void concurrentAppendsShareForces() throws Exception {
+    CheckInJournal journal = new CheckInJournal(directory, true);
+    journal.open(0, checkIn -> {});
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> appenders = new ArrayList<>();
+      for (int thread = 0; thread < 8; thread++) {
+        int goalId = thread;
+        appenders.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 50; i++) {
+                    journal.append(new CheckIn(goalId, 10, 1525136658L, 1));
+                  }
+                  return null;
+                }));
+      }
+      for (Future<?> appender : appenders) {
+        appender.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(journal.getForces() <= 400);
+    journal.close();
+
+    CheckInJournal reopened = new CheckInJournal(directory, true);
+    assertEquals(400, reopened.open(0, checkIn -> {}));
+    reopened.close();
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void concurrentCallersShareOneLoad() throws Exception {
+    SingleFlight<Integer, String> flight = new SingleFlight<>(5_000);
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger loads = new AtomicInteger();
+
+    Future<String> leader =
+        executor.submit(
+            () ->
+                flight.load(
+                    1,
+                    () -> {
+                      loads.incrementAndGet();
+                      loading.countDown();
+                      await(release);
+                      return "goals";
+                    }));
+    loading.await(5, TimeUnit.SECONDS);
+    Future<String> follower = executor.submit(() -> flight.load(1, () -> "unexpected"));
+
+    waitForCoalesced(flight, 1);
+    release.countDown();
+
+    assertEquals("goals", leader.get(5, TimeUnit.SECONDS));
+    assertEquals("goals", follower.get(5, TimeUnit.SECONDS));
+    assertEquals(1, loads.get());
+    assertEquals(0, flight.getInFlight());
+  }
+
+  @Test
+  public void failureIsSharedAndNotCached() throws Exception {
+    SingleFlight<Integer, String> flight = new SingleFlight<>(5_000);
+    try {
+      flight.load(
+          1,
+          () -> {
+            throw new IllegalStateException("database down");
+          });
+      fail("Expected the loader failure to propagate");
+    } catch (IllegalStateException expected) {
+      assertEquals("database down", expected.getMessage());
+    }
+
+    assertEquals("recovered", flight.load(1, () -> "recovered"));
+  }
+
+  @Test
+  public void waitingCallerLoadsItselfAfterTimeout() throws Exception {
+    SingleFlight<Integer, String> flight = new SingleFlight<>(10);
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    executor.submit(
+        () ->
+            flight.load(
+                1,
+                () -> {
+                  loading.countDown();
+                  await(release);
+                  return "slow";
+                }));
+    loading.await(5, TimeUnit.SECONDS);
+
+    assertEquals("fallback", flight.load(1, () -> "fallback"));
+    assertEquals(1, flight.getTimedOut());
+    release.countDown();
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void waitForCoalesced(SingleFlight<?, ?> flight, long expected)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (flight.getCoalesced() < expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.leaderboard;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class RankedScoresTest {
+
+  @Test
+  public void ranksHighestScoreFirstAndBreaksTiesByUserId() {
+    RankedScores scores = new RankedScores();
+    scores.put(3, 5);
+    scores.put(1, 9);
+    scores.put(2, 5);
+
+    assertEquals(1, scores.rank(1));
+    assertEquals(2, scores.rank(2));
+    assertEquals(3, scores.rank(3));
+    assertEquals(0, scores.rank(4));
+
+    List<LeaderboardEntry> top = scores.top(2);
+    assertEquals(2, top.size());
+    assertEquals(1, top.get(0).getUserId());
+    assertEquals(9, top.get(0).getScore());
+    assertEquals(2, top.get(1).getUserId());
+  }
+
+  @Test
+  public void scoresDroppingToZeroLeaveTheRanking() {
+    RankedScores scores = new RankedScores();
+    scores.add(1, 2);
+    scores.add(2, 1);
+    scores.add(1, -2);
+
+    assertEquals(1, scores.size());
+    assertEquals(0, scores.rank(1));
+    assertEquals(1, scores.rank(2));
+  }
+
+  @Test
+  public void matchesASortedReferenceUnderRandomUpdates() {
+    Random random = new Random(42);
+    RankedScores scores = new RankedScores();
+    Map<Integer, Long> reference = new HashMap<>();
+
+    for (int step = 0; step < 20_000; step++) {
+      int userId = random.nextInt(500);
+      long delta = random.nextInt(7) - 2;
+      scores.add(userId, delta);
+      long updated = reference.getOrDefault(userId, 0L) + delta;
+      if (updated > 0) {
+        reference.put(userId, updated);
+      } else {
+        reference.remove(userId);
+      }
+
+      if (step % 1000 == 0) {
+        List<Integer> expected = new ArrayList<>(reference.keySet());
+        expected.sort(
+            (a, b) ->
+                reference.get(a).equals(reference.get(b))
+                    ? Integer.compare(a, b)
+                    : Long.compare(reference.get(b), reference.get(a)));
+        assertEquals(expected.size(), scores.size());
+        List<LeaderboardEntry> top = scores.top(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+          assertEquals((int) expected.get(i), top.get(i).getUserId());
+          assertEquals(i + 1, scores.rank(expected.get(i)));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.habicus.core.model.Goal;
+import com.habicus.core.model.GoalMetrics;
+import org.junit.Test;
+
+public class UserGoalMetricsTest {
+
+  private static final long NOW = 1525136658L;
+
+  @Test
+  public void goalLeavesProgressOnceDue() {
+    UserGoalMetrics state = new UserGoalMetrics(1);
+    state.put(goal(10, NOW + 60, 5.0, Goal.GOAL_INCOMPLETE), NOW);
+    assertEquals(1, state.snapshot().getGoalsInProgress());
+    assertNull(state.expire(10, NOW + 59));
+
+    GoalMetrics expired = state.expire(10, NOW + 60);
+
+    assertEquals(MetricsService.FLAG_UNSET, expired.getGoalInProgress());
+    assertEquals("-5.0", expired.getMoneyMadeOnGoal());
+    assertEquals(0, state.snapshot().getGoalsInProgress());
+    assertEquals(-5.0, state.snapshot().getMoneyMade(), 0);
+    assertNull(state.expire(10, NOW + 61));
+  }
+
+  @Test
+  public void completedGoalKeepsItsPledge() {
+    UserGoalMetrics state = new UserGoalMetrics(1);
+    state.put(goal(10, NOW + 60, 5.0, Goal.GOAL_COMPLETE), NOW);
+
+    assertNull(state.expire(10, NOW + 120));
+    assertEquals(5.0, state.snapshot().getMoneyMade(), 0);
+    assertEquals(1, state.snapshot().getCompletedGoals());
+  }
+
+  @Test
+  public void readsTakeTimeUntilDueAtReadTime() {
+    UserGoalMetrics state = new UserGoalMetrics(1);
+    state.put(goal(10, NOW + 60, null, Goal.GOAL_INCOMPLETE), NOW);
+
+    assertEquals(40, (int) state.get(10, NOW + 20).getTimeUntilDueDate());
+    assertEquals(60, (int) state.stored(10).getTimeUntilDueDate());
+
+    GoalMetrics due = state.get(10, NOW + 90);
+    assertEquals(0, (int) due.getTimeUntilDueDate());
+    assertEquals(MetricsService.FLAG_UNSET, due.getGoalInProgress());
+  }
+
+  @Test
+  public void expireAllReturnsOnlyChangedGoals() {
+    UserGoalMetrics state = new UserGoalMetrics(1);
+    state.put(goal(10, NOW + 60, null, Goal.GOAL_INCOMPLETE), NOW);
+    state.put(goal(11, NOW + 600, null, Goal.GOAL_INCOMPLETE), NOW);
+
+    assertEquals(1, state.expireAll(NOW + 300).size());
+    assertEquals(1, state.snapshot().getGoalsInProgress());
+  }
+
+  private static Goal goal(int goalId, long dueDate, Double pledge, String complete) {
+    Goal goal = new Goal();
+    goal.setGoalId(goalId);
+    goal.setUsersUserId(1);
+    goal.setDueDate(dueDate);
+    goal.setPledgeAmount(pledge);
+    goal.setGoalComplete(complete);
+    return goal;
+  }
+}
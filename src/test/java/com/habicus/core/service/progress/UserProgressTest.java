@@ -0,0 +1,92 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.progress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.habicus.core.model.GoalEvent;
+import java.math.BigDecimal;
+import org.junit.Test;
+
+public class UserProgressTest {
+
+  private static final long DUE = 1525136658L;
+
+  private long nextEventId;
+
+  @Test
+  public void foldsCheckInsUntilCompletion() {
+    UserProgress progress = new UserProgress(7);
+    progress.apply(event(GoalEvent.CREATED, 3));
+    progress.apply(checkIn(3, 2));
+    progress.apply(checkIn(3, 1));
+
+    GoalProgress goal = progress.getGoals().get(3);
+    assertEquals(3, goal.getUnitsDone());
+    assertEquals(2, goal.getCheckIns());
+    assertFalse(goal.isCompleted());
+
+    progress.apply(event(GoalEvent.COMPLETED, 3));
+    assertTrue(goal.isCompleted());
+    assertEquals(4L, progress.getLastEventId());
+  }
+
+  @Test
+  public void addsUpSettledCycles() {
+    UserProgress progress = new UserProgress(7);
+    progress.apply(settled(5, "2.50"));
+    progress.apply(settled(5, "2.50"));
+
+    assertEquals(new BigDecimal("5.00"), progress.getGoals().get(5).getSettledAmount());
+  }
+
+  @Test
+  public void skipsUnknownEventTypes() {
+    UserProgress progress = new UserProgress(7);
+    progress.apply(checkIn(3, 1));
+    progress.apply(event("ARCHIVED", 3));
+
+    assertEquals(1, progress.getGoals().get(3).getUnitsDone());
+    assertEquals(2L, progress.getLastEventId());
+  }
+
+  private GoalEvent event(String type, int goalId) {
+    GoalEvent event = GoalEvent.of(type, 7, goalId, DUE);
+    event.setEventId(++nextEventId);
+    return event;
+  }
+
+  private GoalEvent checkIn(int goalId, int units) {
+    GoalEvent event = event(GoalEvent.CHECKED_IN, goalId);
+    event.setUnits(units);
+    return event;
+  }
+
+  private GoalEvent settled(int goalId, String amount) {
+    GoalEvent event = event(GoalEvent.SETTLED, goalId);
+    event.setAmount(new BigDecimal(amount));
+    return event;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.push;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class GoalPushOutboxTest {
+
+  private static final long DUE = 1525136658L;
+
+  @Test
+  public void changesToTheSameGoalCoalesce() {
+    GoalPushOutbox outbox = new GoalPushOutbox(7, 10);
+    assertEquals(GoalPushOutbox.Offer.QUEUED, outbox.offer(delta(1)));
+    assertEquals(GoalPushOutbox.Offer.QUEUED, outbox.offer(delta(2)));
+    GoalDelta latest = delta(1);
+    assertEquals(GoalPushOutbox.Offer.COALESCED, outbox.offer(latest));
+
+    GoalDeltaBatch batch = outbox.drain(10);
+    assertFalse(batch.isResync());
+    assertEquals(2, batch.getDeltas().size());
+    assertEquals(2, batch.getDeltas().get(0).getGoalId());
+    assertTrue(latest == batch.getDeltas().get(1));
+    assertNull(outbox.drain(10));
+  }
+
+  @Test
+  public void drainsOldestFirstInBoundedBatches() {
+    GoalPushOutbox outbox = new GoalPushOutbox(7, 10);
+    for (int goalId = 1; goalId <= 5; goalId++) {
+      outbox.offer(delta(goalId));
+    }
+
+    assertEquals(1, outbox.drain(3).getDeltas().get(0).getGoalId());
+    assertEquals(2, outbox.size());
+    assertEquals(4, outbox.drain(3).getDeltas().get(0).getGoalId());
+  }
+
+  @Test
+  public void overflowTurnsIntoASingleResync() {
+    GoalPushOutbox outbox = new GoalPushOutbox(7, 2);
+    outbox.offer(delta(1));
+    outbox.offer(delta(2));
+    assertEquals(GoalPushOutbox.Offer.OVERFLOWED, outbox.offer(delta(3)));
+    assertEquals(GoalPushOutbox.Offer.COALESCED, outbox.offer(delta(4)));
+    assertEquals(0, outbox.size());
+
+    GoalDeltaBatch batch = outbox.drain(10);
+    assertTrue(batch.isResync());
+    assertTrue(batch.getDeltas().isEmpty());
+    assertNull(outbox.drain(10));
+
+    assertEquals(GoalPushOutbox.Offer.QUEUED, outbox.offer(delta(5)));
+  }
+
+  private static GoalDelta delta(int goalId) {
+    return new GoalDelta(goalId, DUE, null);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class HierarchicalTimingWheelTest {
+
+  @Test
+  public void firesOnlyOnceDeadlinePassed() {
+    HierarchicalTimingWheel<Integer, String> wheel = new HierarchicalTimingWheel<>(1, 8, 0);
+    wheel.schedule(1, "a", 5);
+    wheel.schedule(2, "b", 500);
+
+    assertTrue(wheel.advance(4).isEmpty());
+    assertEquals(Collections.singletonList("a"), wheel.advance(5));
+    assertTrue(wheel.advance(499).isEmpty());
+    assertEquals(Collections.singletonList("b"), wheel.advance(500));
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void rescheduleAndCancelReplaceEntry() {
+    HierarchicalTimingWheel<Integer, String> wheel = new HierarchicalTimingWheel<>(1, 8, 0);
+    wheel.schedule(1, "early", 3);
+    wheel.schedule(1, "late", 100);
+    wheel.schedule(2, "cancelled", 10);
+
+    assertTrue(wheel.cancel(2));
+    assertFalse(wheel.contains(2));
+    assertTrue(wheel.advance(99).isEmpty());
+    assertEquals(Collections.singletonList("late"), wheel.advance(100));
+  }
+
+  @Test
+  public void pastDeadlinesFireOnNextAdvance() {
+    HierarchicalTimingWheel<Integer, String> wheel = new HierarchicalTimingWheel<>(1, 8, 50);
+    wheel.schedule(1, "overdue", 10);
+
+    assertEquals(Collections.singletonList("overdue"), wheel.advance(50));
+  }
+
+  @Test
+  public void randomDeadlinesAllFireAndNeverEarly() {
+    Random random = new Random(42);
+    HierarchicalTimingWheel<Integer, Long> wheel = new HierarchicalTimingWheel<>(10, 16, 0);
+    Map<Integer, Long> deadlines = new HashMap<>();
+    for (int key = 0; key < 5_000; key++) {
+      long deadline = random.nextInt(1_000_000);
+      wheel.schedule(key, deadline, deadline);
+      deadlines.put(key, deadline);
+    }
+
+    List<Long> fired = new ArrayList<>();
+    for (long now = 0; now <= 1_000_010; now += 1 + random.nextInt(5_000)) {
+      for (Long deadline : wheel.advance(now)) {
+        assertTrue(deadline <= now);
+        fired.add(deadline);
+      }
+    }
+    fired.addAll(wheel.advance(1_000_010));
+
+    List<Long> expected = new ArrayList<>(deadlines.values());
+    Collections.sort(expected);
+    Collections.sort(fired);
+    assertEquals(expected, fired);
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void sameTickEntriesFireTogether() {
+    HierarchicalTimingWheel<Integer, String> wheel = new HierarchicalTimingWheel<>(1, 4, 0);
+    wheel.schedule(1, "a", 70);
+    wheel.schedule(2, "b", 70);
+
+    List<String> fired = wheel.advance(70);
+    Collections.sort(fired);
+    assertEquals(Arrays.asList("a", "b"), fired);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class GoalIndexTest {
+
+  @Test
+  public void matchesEveryTermWithTheLastAsPrefix() {
+    GoalIndex index = new GoalIndex();
+    index.put(new SearchableGoal(1, 7, "Run a marathon", "Train every morning"));
+    index.put(new SearchableGoal(2, 7, "Read books", "One per month, mornings only"));
+    index.put(new SearchableGoal(3, 7, "Marathon swimming", null));
+
+    assertEquals(Arrays.asList(3, 1), index.search("marathon", 7, 10));
+    assertEquals(Collections.singletonList(1), index.search("marathon mor", 7, 10));
+    assertEquals(Arrays.asList(2, 1), index.search("morn", 7, 10));
+  }
+
+  @Test
+  public void toleratesTyposAndAccents() {
+    GoalIndex index = new GoalIndex();
+    index.put(new SearchableGoal(1, 7, "Caf\u00e9 visits", "Meditation practice"));
+
+    assertEquals(Collections.singletonList(1), index.search("cafe", 7, 10));
+    assertEquals(Collections.singletonList(1), index.search("meditaton", 7, 10));
+    assertEquals(Collections.singletonList(1), index.search("practise meditation", 7, 10));
+    assertTrue(index.search("medicine", 7, 10).isEmpty());
+  }
+
+  @Test
+  public void ranksTitleMatchesFirstAndScopesToTheUser() {
+    GoalIndex index = new GoalIndex();
+    index.put(new SearchableGoal(1, 7, "Groceries", "Buy vegetables"));
+    index.put(new SearchableGoal(2, 7, "Vegetables garden", null));
+    index.put(new SearchableGoal(3, 8, "Vegetables", null));
+
+    assertEquals(Arrays.asList(2, 1), index.search("vegetables", 7, 10));
+    assertEquals(Collections.singletonList(3), index.search("vegetables", 8, 10));
+    assertEquals(Arrays.asList(3, 2), index.search("vegetables", null, 2));
+    assertTrue(index.search("vegetables", 9, 10).isEmpty());
+  }
+
+  @Test
+  public void updatesAndRemovalsReplaceIndexedTerms() {
+    GoalIndex index = new GoalIndex();
+    index.put(new SearchableGoal(1, 7, "Learn guitar", null));
+    index.put(new SearchableGoal(1, 7, "Learn piano", null));
+
+    assertTrue(index.search("guitar", 7, 10).isEmpty());
+    assertEquals(Collections.singletonList(1), index.search("piano", 7, 10));
+    assertEquals(2, index.terms());
+
+    index.remove(1);
+    assertTrue(index.search("learn", 7, 10).isEmpty());
+    assertEquals(0, index.goals());
+    assertEquals(0, index.terms());
+  }
+
+  @Test
+  public void expansionLimitOnlyCountsTheUsersTerms() {
+    GoalIndex index = new GoalIndex();
+    // Other users' terms sort before the user's own under the same prefix
+    for (int i = 0; i < GoalIndex.MAX_EXPANSIONS * 2; i++) {
+      index.put(new SearchableGoal(100 + i, 8, String.format("Run%03d", i), null));
+    }
+    index.put(new SearchableGoal(1, 7, "Runway show", null));
+    index.put(new SearchableGoal(2, 7, "Runner club", null));
+
+    assertEquals(Arrays.asList(2, 1), index.search("run", 7, 10));
+    assertEquals(10, index.search("run", null, 10).size());
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.streak;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class StreakCounterTest {
+
+  private static final long DAY = 86_400L;
+  private static final long ANCHOR = 1525136658L;
+
+  @Test
+  public void consecutiveCompletionsExtendTheStreak() {
+    StreakCounter counter = new StreakCounter();
+    counter.complete(cycle(0), 0);
+    counter.complete(cycle(1), cycle(0));
+    counter.complete(cycle(2), cycle(1));
+
+    assertEquals(3, counter.getCurrent());
+    assertEquals(3, counter.getLongest());
+    assertEquals(cycle(2), counter.getLastCycleDue());
+  }
+
+  @Test
+  public void missEndsTheStreakButKeepsTheLongest() {
+    StreakCounter counter = new StreakCounter();
+    counter.complete(cycle(0), 0);
+    counter.complete(cycle(1), cycle(0));
+    counter.miss(cycle(2));
+    counter.complete(cycle(3), cycle(2));
+
+    assertEquals(1, counter.getCurrent());
+    assertEquals(2, counter.getLongest());
+  }
+
+  @Test
+  public void skippedCyclesCountAsMissed() {
+    StreakCounter counter = new StreakCounter(4, 4, cycle(3));
+    counter.complete(cycle(6), cycle(5));
+
+    assertEquals(1, counter.getCurrent());
+    assertEquals(4, counter.getLongest());
+  }
+
+  @Test
+  public void replayedAndOlderCyclesAreIgnored() {
+    StreakCounter counter = new StreakCounter();
+    counter.complete(cycle(0), 0);
+    counter.complete(cycle(1), cycle(0));
+    counter.complete(cycle(1), cycle(0));
+    counter.miss(cycle(0));
+
+    assertEquals(2, counter.getCurrent());
+    assertEquals(cycle(1), counter.getLastCycleDue());
+  }
+
+  private static long cycle(int index) {
+    return ANCHOR + index * DAY;
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ _   _       _     _
+| | | | __ _| |__ (_) ___ _   _ ___
+| |_| |/ _` | '_ \| |/ __| | | / __|
+|  _  | (_| | |_) | | (__| |_| \__ \
+|_| |_|\__,_|_.__/|_|\___|\__,_|___/
+
+ * This file is part of the Habicus Core Platform (https://github.com/Habicus/Habicus-Core).
+ * Copyright (c) 2018 Habicus Core
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.habicus.core.service.streak;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.habicus.core.model.Goal;
+import com.habicus.core.service.Goal.GoalInterval;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class StreakPlanTest {
+
+  private static final long DAY = 86_400L;
+  private static final long ANCHOR = 1525136658L;
+  private static final int SERIES = 1;
+
+  @Test
+  public void earlyCompletionWaitsForTheCycleBefore() {
+    // Cycles 0 and 1 are counted, cycle 2 is due later today and cycle 3 tomorrow
+    long now = cycle(2) - 3_600;
+    Map<Integer, SeriesStreak> stored = stored(2, 2, cycle(1));
+
+    StreakPlan early = StreakPlan.of(Collections.singletonList(completed(3)), stored, now);
+    assertTrue(early.getInOrder().isEmpty());
+    assertEquals(Collections.singletonList(103), early.getDeferredGoalIds());
+
+    StreakPlan later = StreakPlan.of(Arrays.asList(completed(3), completed(2)), stored, now);
+    assertTrue(later.getDeferredGoalIds().isEmpty());
+    StreakCounter counter = fold(stored, later.getInOrder());
+    SeriesStreak backfilled = count(now, 0, 1, 2, 3);
+    assertEquals(4, counter.getCurrent());
+    assertEquals(backfilled.getCurrentStreak(), counter.getCurrent());
+    assertEquals(backfilled.getLongestStreak(), counter.getLongest());
+  }
+
+  @Test
+  public void completionAfterItsMissWasCountedRecountsTheSeries() {
+    // Cycle 2 was counted as missed, then completed late
+    long now = cycle(2) + 3_600;
+    Map<Integer, SeriesStreak> stored = stored(0, 2, cycle(2));
+
+    StreakPlan plan = StreakPlan.of(Collections.singletonList(completed(2)), stored, now);
+
+    assertTrue(plan.getInOrder().isEmpty());
+    assertEquals(Collections.singleton(SERIES), plan.getRecount());
+    assertEquals(3, count(now, 0, 1, 2).getCurrentStreak());
+  }
+
+  @Test
+  public void recountReplacesInOrderCyclesOfTheSameSeries() {
+    long now = cycle(3) + 3_600;
+    Map<Integer, SeriesStreak> stored = stored(0, 2, cycle(2));
+
+    StreakPlan plan = StreakPlan.of(Arrays.asList(completed(3), completed(2)), stored, now);
+
+    assertTrue(plan.getInOrder().isEmpty());
+    assertEquals(Collections.singleton(SERIES), plan.getRecount());
+  }
+
+  @Test
+  public void replayedCompletionChangesNothing() {
+    long now = cycle(2) + 3_600;
+    Map<Integer, SeriesStreak> stored = stored(2, 2, cycle(1));
+
+    StreakPlan plan = StreakPlan.of(Collections.singletonList(completed(1)), stored, now);
+
+    assertTrue(plan.getInOrder().isEmpty());
+    assertTrue(plan.getRecount().isEmpty());
+    assertTrue(plan.getDeferredGoalIds().isEmpty());
+  }
+
+  @Test
+  public void completionAfterPassedCyclesStartsOver() {
+    // Cycle 1 passed without being stored, so cycle 2 starts a new streak
+    long now = cycle(2) + 3_600;
+    Map<Integer, SeriesStreak> stored = stored(1, 1, cycle(0));
+
+    StreakPlan plan = StreakPlan.of(Collections.singletonList(completed(2)), stored, now);
+
+    StreakCounter counter = fold(stored, plan.getInOrder());
+    assertEquals(1, counter.getCurrent());
+    assertEquals(count(now, 0, 2).getCurrentStreak(), counter.getCurrent());
+  }
+
+  private static StreakCounter fold(Map<Integer, SeriesStreak> stored, List<StreakOutcome> cycles) {
+    SeriesStreak streak = stored.get(SERIES);
+    StreakCounter counter =
+        new StreakCounter(
+            streak.getCurrentStreak(), streak.getLongestStreak(), streak.getLastCycleDue());
+    for (StreakOutcome cycle : cycles) {
+      if (cycle.isCompleted()) {
+        counter.complete(cycle.getCycleDue(), cycle.getPreviousCycleDue());
+      } else {
+        counter.miss(cycle.getCycleDue());
+      }
+    }
+    return counter;
+  }
+
+  private static SeriesStreak count(long now, int... completedCycles) {
+    Goal template = new Goal();
+    template.setGoalId(SERIES);
+    template.setGoalInterval("daily");
+    template.setDueDate(ANCHOR);
+    HashSet<Long> completed = new HashSet<>();
+    for (int index : completedCycles) {
+      completed.add(cycle(index));
+    }
+    return StreakService.count(template, GoalInterval.DAILY, completed, now);
+  }
+
+  private static Map<Integer, SeriesStreak> stored(int current, int longest, long lastCycleDue) {
+    return Collections.singletonMap(
+        SERIES, new SeriesStreak(SERIES, "daily", ANCHOR, current, longest, lastCycleDue));
+  }
+
+  // Goal ids of occurrences are 100 plus their cycle index
+  private static StreakOutcome completed(int index) {
+    return new StreakOutcome(
+        100 + index, SERIES, cycle(index), index == 0 ? 0 : cycle(index - 1), true);
+  }
+
+  private static long cycle(int index) {
+    return ANCHOR + index * DAY;
+  }
+}